@@ -17,55 +17,102 @@ package android.content.res;
 
 import android.content.res.chunk.ChunkType;
 import android.content.res.chunk.ChunkUtil;
+import android.content.res.chunk.NamespaceStack;
+import android.content.res.chunk.TypedValue;
 import android.content.res.chunk.sections.ResourceSection;
 import android.content.res.chunk.sections.StringSection;
 import android.content.res.chunk.types.AXMLHeader;
 import android.content.res.chunk.types.Attribute;
 import android.content.res.chunk.types.Chunk;
+import android.content.res.chunk.types.GenericChunk;
 import android.content.res.chunk.types.NameSpace;
 import android.content.res.chunk.types.StartTag;
 import android.content.res.chunk.types.EndTag;
+import android.content.res.chunk.types.TextTag;
+import android.content.res.jfr.ChunkEvent;
+import android.content.res.jfr.ParseEvent;
+import android.content.res.jfr.WriteEvent;
+import android.content.res.metrics.MetricsListener;
+import android.content.res.metrics.Phase;
+import android.content.res.xml.FrameStack;
+import android.content.res.xml.XmlEventHandler;
+import android.content.res.xml.XmlEventSource;
+import android.content.res.xml.XmlSerializer;
+
+import jdk.jfr.EventType;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.List;
 
 /**
  * Main AXMLResource object
  *
  * @author tstrazzere
  */
-public class AXMLResource {
+public class AXMLResource implements XmlEventSource {
 
     AXMLHeader header;
     StringSection stringSection;
     ResourceSection resourceSection;
-    List<NameSpace> nameSpaces;
-    LinkedHashSet<Chunk> chunks;
+    ArrayList<Chunk> chunks;
+
+    // Kept between reads so parsing many documents with one resource does not allocate a parser per document
+    private final IntReader reader;
+    private final EnumMap<ChunkType, ArrayList<GenericChunk>> spareChunks;
+
+    // Best effort unless a hardened read is asked for
+    private ParseLimits limits;
+    private AnomalyListener anomalyListener;
+    // Parallel decoding is off unless a threshold is set, most documents have a few hundred strings at most
+    private int parallelThreshold = Integer.MAX_VALUE;
+
+    private static final ChunkType[] CHUNK_TYPES = ChunkType.values();
+    private static final EventType CHUNK_EVENT = EventType.getEventType(ChunkEvent.class);
+    private static final Phase[] READ_PHASES = {Phase.HEADER, Phase.STRING_POOL, Phase.RESOURCE_MAP, Phase.ELEMENTS};
+
+    private MetricsListener metrics = MetricsListener.NOOP;
+    // Per document totals of the last read, for the metrics and the stats
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final int[] chunkCounts = new int[CHUNK_TYPES.length];
+    private int chunksReused;
+    private int maxDepth;
+    private ParseStats parseStats;
+    // Built on first use, dropped whenever the chunks or the pool change
+    private AttributeIndex attributeIndex;
 
     public AXMLResource() {
-        chunks = new LinkedHashSet<Chunk>();
-        nameSpaces = new ArrayList<NameSpace>();
+        chunks = new ArrayList<Chunk>();
+        reader = new IntReader(null, false);
+        spareChunks = new EnumMap<ChunkType, ArrayList<GenericChunk>>(ChunkType.class);
     }
 
     public AXMLResource(InputStream stream) throws IOException {
-        chunks = new LinkedHashSet<Chunk>();
-        nameSpaces = new ArrayList<NameSpace>();
+        this();
         if (!read(stream)) {
             throw new IOException();
         }
     }
 
+    /**
+     * Add or replace an attribute of the application element of the document in memory. To apply many edits without
+     * building the whole document, see {@link EditSet}.
+     *
+     * @param attribute
+     */
     public void injectApplicationAttribute(Attribute attribute) {
         StartTag tag = getApplicationTag();
 
         tag.insertOrReplaceAttribute(attribute);
+        attributeIndex = null;
     }
 
     public StartTag getApplicationTag() {
@@ -81,20 +128,264 @@ public class AXMLResource {
         return null;
     }
 
+    /**
+     * Harden the following reads, e.g. with {@link ParseLimits#DEFAULT}. Without limits, which is the default, a
+     * damaged or truncated document is decoded as far as it goes and what is wrong with it only reported to the
+     * {@link AnomalyListener}; with limits it fails with a {@link ParseLimitException} instead.
+     *
+     * @param limits bounds enforced by the following reads, null to enforce nothing at all
+     */
+    public void setLimits(ParseLimits limits) {
+        this.limits = limits;
+    }
+
+    public ParseLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * Decode string pools with at least this many strings on the common ForkJoin pool, which only pays off for pools
+     * of many thousands of strings.
+     *
+     * @param minimumStrings pool size from which the following reads decode in parallel, {@link Integer#MAX_VALUE}
+     *                       (the default) to always decode serially
+     */
+    public void setParallelThreshold(int minimumStrings) {
+        parallelThreshold = minimumStrings;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * @param listener receives what looks wrong with the documents read from now on, null (the default) to ignore it
+     */
+    public void setAnomalyListener(AnomalyListener listener) {
+        anomalyListener = listener;
+    }
+
+    public AnomalyListener getAnomalyListener() {
+        return anomalyListener;
+    }
+
+    /**
+     * @param listener receives timings and counts of the following reads, renders and writes, null for none
+     */
+    public void setMetricsListener(MetricsListener listener) {
+        metrics = (listener != null) ? listener : MetricsListener.NOOP;
+    }
+
+    public MetricsListener getMetricsListener() {
+        return metrics;
+    }
+
     public StringSection getStringSection() {
         return stringSection;
     }
 
-    public boolean read(InputStream stream) throws IOException {
+    /**
+     * @return every attribute of the document by the resource id of its name, built on the first call after a read.
+     * Changes made directly to the attributes of a tag are not seen by an index built before them.
+     */
+    public AttributeIndex getAttributeIndex() {
+        if (attributeIndex == null) {
+            attributeIndex = AttributeIndex.build(chunks, resourceSection);
+        }
+        return attributeIndex;
+    }
+
+    /**
+     * Drop the current document so this resource can read another one. The chunks of the current document are kept
+     * aside and refilled by the next {@link #read(InputStream)}, so any chunk, section or tag obtained from this
+     * resource before the reset must not be used afterwards.
+     */
+    public void reset() {
+        for (Chunk chunk : chunks) {
+            recycle(chunk);
+        }
+        chunks.clear();
+
+        recycle(header);
+        recycle(stringSection);
+        recycle(resourceSection);
+        header = null;
+        stringSection = null;
+        resourceSection = null;
+        attributeIndex = null;
+    }
+
+    private void recycle(Chunk chunk) {
+        if (chunk instanceof GenericChunk) {
+            ArrayList<GenericChunk> spares = spareChunks.get(chunk.getChunkType());
+            if (spares == null) {
+                spares = new ArrayList<GenericChunk>();
+                spareChunks.put(chunk.getChunkType(), spares);
+            }
+            spares.add((GenericChunk) chunk);
+        }
+    }
+
+    /**
+     * Read the next chunk, refilling a spare chunk of the same type when one was left over from a previous document.
+     */
+    private Chunk nextChunk(ChunkType chunkType) throws IOException {
+        int offset = reader.getBytesRead() - 4;
+
+        // Only create the event when a recording wants it, so reading does not depend on the JIT to drop it
+        ChunkEvent event = CHUNK_EVENT.isEnabled() ? new ChunkEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
+        Chunk chunk;
+        ArrayList<GenericChunk> spares = spareChunks.get(chunkType);
+        boolean reused = (spares != null) && !spares.isEmpty();
+        if (reused) {
+            GenericChunk spare = spares.remove(spares.size() - 1);
+            spare.reset(reader);
+            chunksReused++;
+            chunk = spare;
+        } else {
+            chunk = ChunkUtil.createChunk(chunkType, reader);
+        }
+
+        if ((event != null) && event.shouldCommit()) {
+            event.chunkType = chunkType.name();
+            event.offset = offset;
+            event.size = chunk.getSize();
+            event.reused = reused;
+            event.commit();
+        }
+        return chunk;
+    }
 
-        IntReader reader = new IntReader(stream, false);
+    /**
+     * Read a document, replacing whatever this resource held before (see {@link #reset()}).
+     *
+     * @param stream
+     * @return true if a complete document was read
+     * @throws ParseLimitException if the document goes over the {@link #getLimits() limits}
+     * @throws IOException
+     */
+    public boolean read(InputStream stream) throws IOException {
+        reset();
+        reader.reset(stream, false);
 
         // Get an attempted size until we know the read size
         int size = stream.available();
+        reader.setLimits(limits, size);
+        reader.setAnomalyListener(anomalyListener);
+        reader.setParallelThreshold(parallelThreshold);
+
+        ParseEvent event = new ParseEvent();
+        event.begin();
+
+        Arrays.fill(phaseNanos, 0);
+        Arrays.fill(chunkCounts, 0);
+        chunksReused = 0;
+        maxDepth = 0;
+        parseStats = null;
+
+        try {
+            readChunks(size);
+        } catch (UncheckedIOException exception) {
+            // Limits are hit inside the chunk constructors, which can only pass them on unchecked
+            if (exception.getCause() instanceof ParseLimitException) {
+                throw (ParseLimitException) exception.getCause();
+            }
+            throw exception;
+        }
+
+        boolean complete = (header != null) && (stringSection != null) && (resourceSection != null);
+        if (complete) {
+            long start = System.nanoTime();
+            repairMangledTags();
+            phaseNanos[Phase.ELEMENTS.ordinal()] += System.nanoTime() - start;
+
+            if (header.getSize() != reader.getBytesRead()) {
+                reader.reportAnomaly(AnomalyListener.Kind.SIZE_MISMATCH, header.getStartPosition(),
+                        reader.getBytesRead());
+            }
+            if (anomalyListener != null) {
+                checkIndexes();
+            }
+        }
+
+        parseStats = new ParseStats(complete, reader.getBytesRead(), (header != null) ? header.getSize() : -1,
+                chunkCounts, stringSection, maxDepth, phaseNanos);
+        if (metrics != MetricsListener.NOOP) {
+            reportReadMetrics();
+        }
+        if (event.shouldCommit()) {
+            event.bytes = reader.getBytesRead();
+            event.chunks = chunks.size();
+            event.strings = (stringSection != null) ? stringSection.getStringCount() : 0;
+            event.complete = complete;
+            event.commit();
+        }
+        return complete;
+    }
+
+    private void reportReadMetrics() {
+        for (Phase phase : READ_PHASES) {
+            metrics.phaseTime(phase, phaseNanos[phase.ordinal()]);
+        }
+        for (int i = 0; i < chunkCounts.length; i++) {
+            if (chunkCounts[i] > 0) {
+                metrics.chunksRead(CHUNK_TYPES[i], chunkCounts[i]);
+            }
+        }
+        metrics.bytesRead(reader.getBytesRead());
+        metrics.stringsDecoded(parseStats.getStringsDecoded());
+        metrics.chunksReused(chunksReused);
+    }
+
+    /**
+     * @return what was learned about the document by the last {@link #read(InputStream)}, null if there was none or
+     * it failed
+     */
+    public ParseStats getParseStats() {
+        return parseStats;
+    }
+
+    /**
+     * @return the phase the time spent reading a chunk of the type goes to
+     */
+    private static Phase getPhase(ChunkType type) {
+        switch (type) {
+            case AXML_HEADER:
+                return Phase.HEADER;
+            case STRING_SECTION:
+                return Phase.STRING_POOL;
+            case RESOURCE_SECTION:
+                return Phase.RESOURCE_MAP;
+            default:
+                return Phase.ELEMENTS;
+        }
+    }
+
+    private void readChunks(int size) throws IOException {
+        int depth = 0;
+        // The clock is only read when the phase changes, which happens a handful of times per document as the chunks
+        // of each phase come together
+        Phase phase = null;
+        long last = System.nanoTime();
 
         while ((size - reader.getBytesRead()) > 4) {
+            ChunkType chunkType = ChunkUtil.readChunkType(reader);
+            if (getPhase(chunkType) != phase) {
+                long now = System.nanoTime();
+                if (phase != null) {
+                    phaseNanos[phase.ordinal()] += now - last;
+                }
+                phase = getPhase(chunkType);
+                last = now;
+            }
+
             // This should just read all the chunks
-            Chunk chunk = ChunkUtil.createChunk(reader);
+            Chunk chunk = nextChunk(chunkType);
+            chunkCounts[chunkType.ordinal()]++;
 
             switch (chunk.getChunkType()) {
                 case AXML_HEADER:
@@ -110,32 +401,68 @@ public class AXMLResource {
                 case RESOURCE_SECTION:
                     resourceSection = (ResourceSection) chunk;
                     break;
-                case START_NAMESPACE:
-                case END_NAMESPACE:
                 case START_TAG:
+                    depth++;
+                    maxDepth = Math.max(maxDepth, depth);
+                    if (limits != null) {
+                        limits.checkDepth(depth);
+                    }
+                    chunks.add(chunk);
+                    break;
                 case END_TAG:
+                    depth = Math.max(depth - 1, 0);
+                    chunks.add(chunk);
+                    break;
+                case START_NAMESPACE:
+                case END_NAMESPACE:
                 case TEXT_TAG:
                     chunks.add(chunk);
                     break;
                 case BUFFER:
                     // Do nothing right now, not even add it to the chunk stuff
+                    reader.reportAnomaly(AnomalyListener.Kind.PADDING, reader.getBytesRead() - 4, chunk.getSize());
                     break;
                 default:
                     throw new IOException("Hit an unknown chunk type!");
             }
         }
 
-        if ((header != null) && (stringSection != null) && (resourceSection != null)) {
-            if (header.getSize() != reader.getBytesRead()) {
-                System.out.println("Potential issue as the bytes read is not equal to the amount of bytes in the file");
-            }
-            return true;
+        if (phase != null) {
+            phaseNanos[phase.ordinal()] += System.nanoTime() - last;
         }
+    }
 
-        return false;
+    /**
+     * Drop the strings no chunk refers to any more, deduplicate the others and point every chunk at their new place,
+     * so that what obfuscators and edits left in the pool is not written again and repeated edits do not keep growing
+     * the document. Attribute names without a chunk left using them are dropped from the resource map as well.
+     *
+     * @param sort whether to also sort the strings which are not attribute names
+     * @return the number of strings dropped, 0 for a pool with styles which is left as it is
+     */
+    public int compactStrings(boolean sort) {
+        int count = stringSection.getStringCount();
+        BitSet referenced = new BitSet(count);
+        for (Chunk chunk : chunks) {
+            chunk.markStrings(referenced);
+        }
+
+        int[] mapping = stringSection.compact(referenced, resourceSection.getResourceCount(), sort);
+        if (mapping == null) {
+            return 0;
+        }
+        for (Chunk chunk : chunks) {
+            chunk.remapStrings(mapping);
+        }
+        resourceSection.retain(mapping);
+        attributeIndex = null;
+        return count - stringSection.getStringCount();
     }
 
     public void write(OutputStream outputStream) throws IOException {
+        long start = System.nanoTime();
+        WriteEvent event = new WriteEvent();
+        event.begin();
 
         int chunkSizes = 0;
         Iterator<Chunk> iterator = chunks.iterator();
@@ -144,131 +471,218 @@ public class AXMLResource {
             chunkSizes += chunk.getSize();
         }
 
-        System.out.println("String section size: " + stringSection.getSize());
-        System.out.println("Resource section size: " + resourceSection.getSize());
-        System.out.println("chunk section size: " + chunkSizes);
-        System.out.println("Size was " + ((2 * 4) + stringSection.getSize() + resourceSection.getSize() + chunkSizes));
-
+        long written = 8;
         outputStream.write(ByteBuffer.allocate(8)
                 .order(ByteOrder.LITTLE_ENDIAN)
                 .putInt(ChunkType.AXML_HEADER.getIntType())
                 .putInt(((2 * 4) + stringSection.getSize() + resourceSection.getSize() + chunkSizes))
                 .array());
-        outputStream.write(stringSection.toBytes());
-        outputStream.write(resourceSection.toBytes());
+        written += write(outputStream, stringSection.toBytes());
+        written += write(outputStream, resourceSection.toBytes());
         iterator = chunks.iterator();
         while (iterator.hasNext()) {
             Chunk chunk = iterator.next();
-            outputStream.write(chunk.toBytes());
+            written += write(outputStream, chunk.toBytes());
         }
 
+        if (metrics != MetricsListener.NOOP) {
+            metrics.phaseTime(Phase.WRITE, System.nanoTime() - start);
+            metrics.bytesWritten(written);
+        }
+        if (event.shouldCommit()) {
+            event.bytes = written;
+            event.chunks = chunks.size() + 2;
+            event.commit();
+        }
+    }
+
+    private static int write(OutputStream outputStream, byte[] bytes) throws IOException {
+        outputStream.write(bytes);
+        return bytes.length;
     }
 
     public void print() {
-        log("%s", header.toXML(stringSection, resourceSection, nameSpaces, 0));
-        Iterator<Chunk> iterator = chunks.iterator();
-        int indents = 0;
-        List<String> namespaceXmlList = new ArrayList<String>();
-        int lastStartNameIndex = -1;
+        long start = System.nanoTime();
+        XmlSerializer.print(this, System.out);
+        reportRender(start);
+    }
 
-        while (iterator.hasNext()) {
-            Chunk chunk = iterator.next();
-            if (chunk.getChunkType() == ChunkType.END_TAG) {
-                indents--;
-            }
+    public String toXML() {
+        long start = System.nanoTime();
+        String xml = XmlSerializer.toXML(this);
+        reportRender(start);
+        return xml;
+    }
+
+    private void reportRender(long start) {
+        if (metrics != MetricsListener.NOOP) {
+            metrics.phaseTime(Phase.RENDER, System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see android.content.res.xml.XmlEventSource#accept(android.content.res.xml.XmlEventHandler)
+     */
+    @Override
+    public void accept(XmlEventHandler handler) throws IOException {
+        handler.startDocument();
+
+        NamespaceStack namespaces = new NamespaceStack();
+        // The open elements, so stray end tags can be dropped and unclosed ones closed at the end of the document
+        FrameStack<OpenElement> openElements = new FrameStack<OpenElement>(OpenElement::new);
 
-            if (chunk.getChunkType() == ChunkType.START_NAMESPACE) {
-                namespaceXmlList.add(chunk.toXML(stringSection, resourceSection, nameSpaces, indents));
-                nameSpaces.add((NameSpace)chunk);
-            } else if (chunk.getChunkType() == ChunkType.END_NAMESPACE) {
-                // ignore
-            } else {
-                if (chunk.getChunkType() == ChunkType.START_TAG && ((StartTag)chunk).isMangled(stringSection)) {
-                    ((StartTag)chunk).fixMangle(stringSection);
-                    lastStartNameIndex = stringSection.getStringIndex(((StartTag)chunk).getName(stringSection));
+        for (Chunk chunk : chunks) {
+            switch (chunk.getChunkType()) {
+                case START_NAMESPACE: {
+                    NameSpace nameSpace = (NameSpace) chunk;
+                    namespaces.push(nameSpace.getUri(), nameSpace.getPrefix());
+                    handler.startNamespace(stringSection.getString(nameSpace.getPrefix()),
+                            stringSection.getString(nameSpace.getUri()));
+                    break;
                 }
-                if (chunk.getChunkType() == ChunkType.END_TAG && ((EndTag)chunk).isMangled(stringSection)) {
-                    ((EndTag)chunk).setName(lastStartNameIndex);
-                    lastStartNameIndex = -1;
+                case END_NAMESPACE: {
+                    NameSpace nameSpace = (NameSpace) chunk;
+                    namespaces.pop(nameSpace.getUri());
+                    handler.endNamespace(stringSection.getString(nameSpace.getPrefix()),
+                            stringSection.getString(nameSpace.getUri()));
+                    break;
                 }
-
-                if (namespaceXmlList.isEmpty()) {
-                    log("%s", chunk.toXML(stringSection, resourceSection, nameSpaces, indents));
-                } else {
-                    log("%s", appendNameSpace(chunk.toXML(stringSection, resourceSection, nameSpaces, indents), namespaceXmlList));
-                    namespaceXmlList.clear();
+                case START_TAG: {
+                    StartTag startTag = (StartTag) chunk;
+                    OpenElement element = openElements.push();
+                    element.namespaceUri = stringSection.getString(startTag.getNamespaceUriIndex());
+                    element.prefix = getPrefix(namespaces, startTag.getNamespaceUriIndex());
+                    element.name = stringSection.getString(startTag.getNameIndex());
+                    handler.startElement(element.namespaceUri, element.prefix, element.name,
+                            startTag.getLineNumber());
+
+                    for (Attribute attribute : startTag.getAttributes()) {
+                        int dataType = TypedValue.getDataType(attribute.getAttributeType());
+                        handler.attribute(stringSection.getString(attribute.getUriIndex()),
+                                getPrefix(namespaces, attribute.getUriIndex()),
+                                stringSection.getString(attribute.getNameIndex()),
+                                getResourceId(attribute.getNameIndex()),
+                                dataType,
+                                attribute.getData(),
+                                (dataType == TypedValue.TYPE_STRING) ?
+                                        stringSection.getString(attribute.getStringDataIndex()) : null);
+                    }
+                    break;
+                }
+                case END_TAG: {
+                    // Close whatever element is open, even if a protector put another name on its end tag
+                    OpenElement element = openElements.pop();
+                    if (element != null) {
+                        handler.endElement(element.namespaceUri, element.prefix, element.name);
+                    }
+                    break;
                 }
+                case TEXT_TAG: {
+                    TextTag textTag = (TextTag) chunk;
+                    handler.text(stringSection.getString(textTag.getNameIndex()), textTag.getLineNumber());
+                    break;
+                }
+                default:
+                    break;
             }
+        }
 
-            if (chunk.getChunkType() == ChunkType.START_TAG) {
-                indents++;
-            }
+        // Close anything left dangling by a truncated document
+        while (!openElements.isEmpty()) {
+            OpenElement element = openElements.pop();
+            handler.endElement(element.namespaceUri, element.prefix, element.name);
         }
 
+        handler.endDocument();
     }
 
-    public String toXML() {
-        StringBuilder xmlStrbui = new StringBuilder();
-        xmlStrbui.append(header.toXML(stringSection, resourceSection, nameSpaces, 0)).append('\n');
-        Iterator<Chunk> iterator = chunks.iterator();
-        int indents = 0;
-        List<String> namespaceXmlList = new ArrayList<String>();
+    /**
+     * An element started but not yet ended during {@link #accept(XmlEventHandler)}.
+     */
+    private static final class OpenElement {
+        String namespaceUri;
+        String prefix;
+        String name;
+    }
 
+    /**
+     * Guess the names of start and end tags which were blanked out by a protector. This is done once while reading so
+     * that rendering never has to modify the chunks, which keeps it safe to render from multiple threads.
+     */
+    private void repairMangledTags() {
         int lastStartNameIndex = -1;
 
-        while (iterator.hasNext()) {
-            Chunk chunk = iterator.next();
-            if (chunk.getChunkType() == ChunkType.END_TAG) {
-                indents--;
+        for (Chunk chunk : chunks) {
+            if (chunk.getChunkType() == ChunkType.START_TAG && ((StartTag) chunk).isMangled(stringSection)) {
+                ((StartTag) chunk).fixMangle(stringSection);
+                lastStartNameIndex = ((StartTag) chunk).getNameIndex();
+                reader.reportAnomaly(AnomalyListener.Kind.MANGLED_NAME, ((StartTag) chunk).getStartPosition(),
+                        lastStartNameIndex);
+            } else if (chunk.getChunkType() == ChunkType.END_TAG && ((EndTag) chunk).isMangled(stringSection)) {
+                ((EndTag) chunk).setName(lastStartNameIndex);
+                reader.reportAnomaly(AnomalyListener.Kind.MANGLED_NAME, ((EndTag) chunk).getStartPosition(),
+                        lastStartNameIndex);
+                lastStartNameIndex = -1;
             }
+        }
+    }
 
-            if (chunk.getChunkType() == ChunkType.START_NAMESPACE) {
-                namespaceXmlList.add(chunk.toXML(stringSection, resourceSection, nameSpaces, indents));
-                nameSpaces.add((NameSpace) chunk);
-            } else if (chunk.getChunkType() == ChunkType.END_NAMESPACE) {
-                // ignore
-            } else {
-                if (chunk.getChunkType() == ChunkType.START_TAG && ((StartTag)chunk).isMangled(stringSection)) {
-                    ((StartTag)chunk).fixMangle(stringSection);
-                    lastStartNameIndex = stringSection.getStringIndex(((StartTag)chunk).getName(stringSection));
-                }
-                if (chunk.getChunkType() == ChunkType.END_TAG && ((EndTag)chunk).isMangled(stringSection)) {
-                    ((EndTag)chunk).setName(lastStartNameIndex);
-                    lastStartNameIndex = -1;
-                }
-                if (namespaceXmlList.isEmpty()) {
-                    xmlStrbui.append(chunk.toXML(stringSection, resourceSection, nameSpaces, indents)).append('\n');
-                } else {
-                    xmlStrbui.append(appendNameSpace(chunk.toXML(stringSection, resourceSection, nameSpaces, indents), namespaceXmlList)).append('\n');
-                    namespaceXmlList.clear();
-                }
-            }
+    /**
+     * Report every string index of the tags which points outside of the string pool, -1 being the valid "none".
+     */
+    private void checkIndexes() {
+        int stringCount = stringSection.getStringCount();
 
-            if (chunk.getChunkType() == ChunkType.START_TAG) {
-                indents++;
+        for (Chunk chunk : chunks) {
+            int offset = ((GenericChunk) chunk).getStartPosition();
+            switch (chunk.getChunkType()) {
+                case START_NAMESPACE:
+                case END_NAMESPACE:
+                    checkIndex(((NameSpace) chunk).getPrefix(), stringCount, offset);
+                    checkIndex(((NameSpace) chunk).getUri(), stringCount, offset);
+                    break;
+                case START_TAG: {
+                    StartTag startTag = (StartTag) chunk;
+                    checkIndex(startTag.getNamespaceUriIndex(), stringCount, offset);
+                    checkIndex(startTag.getNameIndex(), stringCount, offset);
+                    for (Attribute attribute : startTag.getAttributes()) {
+                        checkIndex(attribute.getUriIndex(), stringCount, offset);
+                        checkIndex(attribute.getNameIndex(), stringCount, offset);
+                        checkIndex(attribute.getStringDataIndex(), stringCount, offset);
+                    }
+                    break;
+                }
+                case END_TAG:
+                    checkIndex(((EndTag) chunk).getNamespaceUriIndex(), stringCount, offset);
+                    checkIndex(((EndTag) chunk).getNameIndex(), stringCount, offset);
+                    break;
+                case TEXT_TAG:
+                    checkIndex(((TextTag) chunk).getNameIndex(), stringCount, offset);
+                    break;
+                default:
+                    break;
             }
         }
-        return xmlStrbui.toString();
     }
 
-    private String appendNameSpace(String preChunkXml, List<String> namespaceXmlList) {
-        StringBuilder strbui = new StringBuilder(preChunkXml);
-        int index;
-        if ((index = strbui.indexOf("\n")) == -1 && (index = strbui.indexOf(" ")) == -1
-                && (index = strbui.indexOf("/>")) == -1 && (index = strbui.indexOf(">")) == -1) {
-            throw new RuntimeException("Append name space fail. chunk xml: " + preChunkXml);
-        }
-        StringBuilder namespaceStrbui = new StringBuilder();
-        for (String namespaceXml : namespaceXmlList) {
-            namespaceStrbui.append("\n\t");
-            namespaceStrbui.append(namespaceXml);
+    private void checkIndex(int index, int count, int offset) {
+        if (index < -1 || index >= count) {
+            reader.reportAnomaly(AnomalyListener.Kind.INDEX_OUT_OF_RANGE, offset, index);
         }
-        strbui.insert(index, namespaceStrbui.toString());
-        return strbui.toString();
     }
 
-    private static void log(String format, Object... arguments) {
-        System.out.printf(format, arguments);
-        System.out.println();
+    private String getPrefix(NamespaceStack namespaces, int uriIndex) {
+        int prefixIndex = namespaces.getPrefix(uriIndex);
+        return (prefixIndex != NamespaceStack.NO_PREFIX) ? stringSection.getString(prefixIndex) : "";
+    }
+
+    private int getResourceId(int nameIndex) {
+        if ((resourceSection != null) && (nameIndex >= 0) && (nameIndex < resourceSection.getResourceCount())) {
+            return resourceSection.getResourceID(nameIndex);
+        }
+
+        return 0;
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res;
+
+/**
+ * Receives whatever looked wrong with an AXML document while it was read, instead of having it printed, so that
+ * obfuscation and corruption can be triaged over many samples. Reporting never throws and never builds a message or a
+ * stack trace, a listener only pays for what it records.
+ *
+ * @author tstrazzere
+ */
+public interface AnomalyListener {
+
+    public enum Kind {
+        /**
+         * A size disagrees with what was read: the file header against the bytes read, or a section against its
+         * content. The value is the number of bytes actually read for it.
+         */
+        SIZE_MISMATCH,
+        /**
+         * A start or end tag with a blank name, which was guessed. The value is the string index it was given, -1 if
+         * none could be guessed.
+         */
+        MANGLED_NAME,
+        /**
+         * A chunk type which is not known, the document can not be read further. The value is the type.
+         */
+        UNKNOWN_CHUNK,
+        /**
+         * A padding chunk, which is skipped. The value is its size.
+         */
+        PADDING,
+        /**
+         * A string starting before the previous one in the pool ends, it is read from where the previous one ended.
+         * The value is the index of the string.
+         */
+        OVERLAPPING_STRING_OFFSETS,
+        /**
+         * A string or resource index which is neither -1 nor inside the pool, and reads as an empty string. The value is
+         * the index.
+         */
+        INDEX_OUT_OF_RANGE,
+        /**
+         * A chunk which could not be read completely, the rest of it was skipped. The value is the number of bytes of
+         * it which were read.
+         */
+        READ_ERROR
+    }
+
+    /**
+     * @param kind   what was found
+     * @param offset byte offset in the file of the chunk it was found in, or of the attribute for read errors inside
+     *               one
+     * @param value  detail depending on the kind
+     */
+    public void onAnomaly(Kind kind, int offset, int value);
+}
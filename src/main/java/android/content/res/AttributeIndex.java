@@ -0,0 +1,225 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res;
+
+import android.content.res.chunk.sections.ResourceSection;
+import android.content.res.chunk.types.Attribute;
+import android.content.res.chunk.types.Chunk;
+import android.content.res.chunk.types.StartTag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Every attribute of a document by the resource id of its name, e.g. 0x0101000f for android:debuggable.
+ * <p>
+ * Protectors blank out or duplicate attribute names in the string pool, but the resource map still gives the framework
+ * id of each name index, so detection which goes through ids cannot be fooled by the names. Looking an id up is a
+ * single probe of an open addressing table; the occurrences of each id are chained in document order.
+ *
+ * @author tstrazzere
+ */
+public final class AttributeIndex {
+
+    private static final int EMPTY = 0;
+    private static final int NONE = -1;
+
+    // Resource id to first and last occurrence; 0 is never a resource id so it marks a free slot
+    private int[] keys;
+    private int[] firsts;
+    private int[] lasts;
+    private int[] counts;
+    private int keyCount;
+
+    // Occurrences in document order, chained per id
+    private StartTag[] tags;
+    private Attribute[] attributes;
+    private int[] next;
+    private int size;
+
+    private AttributeIndex() {
+        keys = new int[64];
+        firsts = new int[64];
+        lasts = new int[64];
+        counts = new int[64];
+        tags = new StartTag[64];
+        attributes = new Attribute[64];
+        next = new int[64];
+    }
+
+    /**
+     * @param chunks          the chunks of a document
+     * @param resourceSection its resource map, null if it has none
+     * @return the index of every attribute whose name has a resource id
+     */
+    public static AttributeIndex build(List<Chunk> chunks, ResourceSection resourceSection) {
+        AttributeIndex index = new AttributeIndex();
+        if (resourceSection == null) {
+            return index;
+        }
+        for (Chunk chunk : chunks) {
+            if (chunk instanceof StartTag) {
+                StartTag tag = (StartTag) chunk;
+                for (Attribute attribute : tag.getAttributes()) {
+                    int resourceId = getResourceId(resourceSection, attribute);
+                    if (resourceId != 0) {
+                        index.add(resourceId, tag, attribute);
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the resource id of the attribute's name, 0 if the resource map does not cover it
+     */
+    static int getResourceId(ResourceSection resourceSection, Attribute attribute) {
+        int name = attribute.getNameIndex();
+        return (name >= 0 && name < resourceSection.getResourceCount()) ? resourceSection.getResourceID(name) : 0;
+    }
+
+    /**
+     * @param resourceId
+     * @return true if any element has the attribute
+     */
+    public boolean contains(int resourceId) {
+        return slot(resourceId) >= 0;
+    }
+
+    /**
+     * @param resourceId
+     * @return the number of elements with the attribute
+     */
+    public int count(int resourceId) {
+        int slot = slot(resourceId);
+        return (slot < 0) ? 0 : counts[slot];
+    }
+
+    /**
+     * @param resourceId
+     * @return the first occurrence of the attribute in the document, null if there is none
+     */
+    public Attribute getAttribute(int resourceId) {
+        int slot = slot(resourceId);
+        return (slot < 0) ? null : attributes[firsts[slot]];
+    }
+
+    /**
+     * @param resourceId
+     * @return every occurrence of the attribute, in document order
+     */
+    public List<Attribute> getAttributes(int resourceId) {
+        int slot = slot(resourceId);
+        List<Attribute> found = new ArrayList<Attribute>((slot < 0) ? 0 : counts[slot]);
+        for (int i = (slot < 0) ? NONE : firsts[slot]; i != NONE; i = next[i]) {
+            found.add(attributes[i]);
+        }
+        return found;
+    }
+
+    /**
+     * @param resourceId
+     * @return the elements carrying the attribute, in document order and matching {@link #getAttributes(int)}
+     */
+    public List<StartTag> getTags(int resourceId) {
+        int slot = slot(resourceId);
+        List<StartTag> found = new ArrayList<StartTag>((slot < 0) ? 0 : counts[slot]);
+        for (int i = (slot < 0) ? NONE : firsts[slot]; i != NONE; i = next[i]) {
+            found.add(tags[i]);
+        }
+        return found;
+    }
+
+    private void add(int resourceId, StartTag tag, Attribute attribute) {
+        if (size == tags.length) {
+            tags = Arrays.copyOf(tags, size * 2);
+            attributes = Arrays.copyOf(attributes, size * 2);
+            next = Arrays.copyOf(next, size * 2);
+        }
+        tags[size] = tag;
+        attributes[size] = attribute;
+        next[size] = NONE;
+
+        int slot = slot(resourceId);
+        if (slot < 0) {
+            if ((keyCount + 1) * 2 > keys.length) {
+                grow();
+            }
+            slot = freeSlot(resourceId);
+            keys[slot] = resourceId;
+            firsts[slot] = size;
+            keyCount++;
+        } else {
+            next[lasts[slot]] = size;
+        }
+        lasts[slot] = size;
+        counts[slot]++;
+        size++;
+    }
+
+    /**
+     * @return the slot of the id, or -1 if it has none
+     */
+    private int slot(int resourceId) {
+        if (resourceId == EMPTY) {
+            return -1;
+        }
+        int mask = keys.length - 1;
+        for (int slot = mix(resourceId) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == resourceId) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int freeSlot(int resourceId) {
+        int mask = keys.length - 1;
+        int slot = mix(resourceId) & mask;
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldFirsts = firsts;
+        int[] oldLasts = lasts;
+        int[] oldCounts = counts;
+        keys = new int[oldKeys.length * 2];
+        firsts = new int[oldKeys.length * 2];
+        lasts = new int[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = freeSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                firsts[slot] = oldFirsts[i];
+                lasts[slot] = oldLasts[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res;
+
+import android.content.res.chunk.TypedValue;
+import android.content.res.chunk.types.Attribute;
+import android.content.res.chunk.types.Chunk;
+import android.content.res.chunk.types.StartTag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Rewrites the value of an attribute directly in the bytes of the document it was read from, e.g. to flip
+ * android:debuggable, instead of a full read, edit and {@link AXMLResource#write(java.io.OutputStream) write}.
+ * <p>
+ * An attribute is a 20 byte record (namespace, name, raw value, type and data) and its value is a fixed size, so a new
+ * value only replaces the last 12 bytes of the record and every other byte of the document stays as it was. The cost
+ * does not depend on the size of the document. Only values which fit the record can be written this way: ints,
+ * booleans, references and any string which is already in the string pool.
+ * <p>
+ * Framework attributes such as android:debuggable, android:allowBackup or android:extractNativeLibs are best found by
+ * their resource id with {@link #find(String, int)}, which still works on protected manifests whose attribute names are
+ * blanked or duplicated in the string pool. Finding them by name is only for attributes without a resource id.
+ * <p>
+ * The resource is only used to locate records, it keeps describing the document as it was read.
+ *
+ * @author tstrazzere
+ */
+public final class AttributePatcher {
+
+    public static final int RECORD_SIZE = 20;
+
+    // The raw value, type and data words, which together are the value of the attribute
+    private static final int VALUE_OFFSET = 8;
+    private static final int VALUE_SIZE = 12;
+
+    // Res_value size in the low half of the type word
+    private static final int RES_VALUE_SIZE = 8;
+    private static final int NO_STRING = -1;
+
+    private final AXMLResource resource;
+
+    /**
+     * @param resource the document, read from the same bytes that will be patched
+     */
+    public AttributePatcher(AXMLResource resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * @param tagName    name of the element, the first one with that name is used
+     * @param resourceId of the attribute name, e.g. 0x0101000f for android:debuggable
+     * @return the offset of the attribute record, or -1 if there is no such element or attribute
+     */
+    public int find(String tagName, int resourceId) {
+        StartTag tag = findTag(tagName);
+        return (tag != null) ? find(tag, resourceId) : -1;
+    }
+
+    /**
+     * @param tag        an element of the document
+     * @param resourceId of the attribute name, e.g. 0x0101000f for android:debuggable
+     * @return the offset of the attribute record, or -1 if the element has no such attribute
+     */
+    public int find(StartTag tag, int resourceId) {
+        if (resource.resourceSection == null) {
+            return -1;
+        }
+        int index = tag.indexOfAttribute(resource.resourceSection, resourceId);
+        return (index >= 0) ? tag.getAttributeOffset(index) : -1;
+    }
+
+    /**
+     * Find an attribute by its name, for attributes which have no resource id, see {@link #find(String, int)}.
+     *
+     * @param tagName       name of the element, the first one with that name is used
+     * @param attributeName name of the attribute, without prefix
+     * @return the offset of the attribute record, or -1 if there is no such element or attribute
+     */
+    public int find(String tagName, String attributeName) {
+        StartTag tag = findTag(tagName);
+        return (tag != null) ? find(tag, attributeName) : -1;
+    }
+
+    /**
+     * Find an attribute by its name, for attributes which have no resource id, see {@link #find(StartTag, int)}.
+     *
+     * @param tag           an element of the document
+     * @param attributeName name of the attribute, without prefix
+     * @return the offset of the attribute record, or -1 if the element has no such attribute
+     */
+    public int find(StartTag tag, String attributeName) {
+        List<Attribute> attributes = tag.getAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+            if (resource.stringSection.getString(attributes.get(i).getNameIndex()).equals(attributeName)) {
+                return tag.getAttributeOffset(i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Point the attribute at a string of the pool.
+     *
+     * @param buffer the document, indexed by file offset
+     * @param offset of the attribute record, see {@link #find(String, int)}
+     * @param value  the new value
+     * @throws IllegalArgumentException if the string is not in the pool, adding it needs a full write
+     */
+    public void setString(ByteBuffer buffer, int offset, String value) {
+        int index = getPoolIndex(value);
+        writeValue(buffer, offset, index, TypedValue.TYPE_STRING, index);
+    }
+
+    /**
+     * @see #setString(ByteBuffer, int, String)
+     */
+    public void setString(FileChannel channel, int offset, String value) throws IOException {
+        int index = getPoolIndex(value);
+        writeValue(channel, offset, index, TypedValue.TYPE_STRING, index);
+    }
+
+    /**
+     * @param buffer the document, indexed by file offset
+     * @param offset of the attribute record, see {@link #find(String, int)}
+     * @param value  the new value
+     */
+    public static void setBoolean(ByteBuffer buffer, int offset, boolean value) {
+        // aapt writes true as all bits set
+        setValue(buffer, offset, TypedValue.TYPE_INT_BOOLEAN, value ? -1 : 0);
+    }
+
+    /**
+     * @see #setBoolean(ByteBuffer, int, boolean)
+     */
+    public static void setBoolean(FileChannel channel, int offset, boolean value) throws IOException {
+        setValue(channel, offset, TypedValue.TYPE_INT_BOOLEAN, value ? -1 : 0);
+    }
+
+    /**
+     * @param buffer the document, indexed by file offset
+     * @param offset of the attribute record, see {@link #find(String, int)}
+     * @param value  the new value, as a decimal int
+     */
+    public static void setInt(ByteBuffer buffer, int offset, int value) {
+        setValue(buffer, offset, TypedValue.TYPE_INT_DEC, value);
+    }
+
+    /**
+     * @see #setInt(ByteBuffer, int, int)
+     */
+    public static void setInt(FileChannel channel, int offset, int value) throws IOException {
+        setValue(channel, offset, TypedValue.TYPE_INT_DEC, value);
+    }
+
+    /**
+     * Write any value held in the data word, e.g. a {@link TypedValue#TYPE_REFERENCE reference}.
+     *
+     * @param buffer   the document, indexed by file offset
+     * @param offset   of the attribute record, see {@link #find(String, int)}
+     * @param dataType the Res_value data type, anything but {@link TypedValue#TYPE_STRING}
+     * @param data     the Res_value data word
+     */
+    public static void setValue(ByteBuffer buffer, int offset, int dataType, int data) {
+        checkDataType(dataType);
+        writeValue(buffer, offset, NO_STRING, dataType, data);
+    }
+
+    /**
+     * @see #setValue(ByteBuffer, int, int, int)
+     */
+    public static void setValue(FileChannel channel, int offset, int dataType, int data) throws IOException {
+        checkDataType(dataType);
+        writeValue(channel, offset, NO_STRING, dataType, data);
+    }
+
+    private StartTag findTag(String tagName) {
+        for (Chunk chunk : resource.chunks) {
+            if (chunk instanceof StartTag) {
+                StartTag tag = (StartTag) chunk;
+                if (tag.getName(resource.stringSection).equals(tagName)) {
+                    return tag;
+                }
+            }
+        }
+        return null;
+    }
+
+    private int getPoolIndex(String value) {
+        int index = resource.stringSection.getStringIndex(value);
+        if (index < 0) {
+            throw new IllegalArgumentException("Not in the string pool: " + value);
+        }
+        return index;
+    }
+
+    private static void checkDataType(int dataType) {
+        if ((dataType == TypedValue.TYPE_STRING) || (dataType < 0) || (dataType > 0xFF)) {
+            throw new IllegalArgumentException("Not a data word type: " + dataType);
+        }
+    }
+
+    private static void writeValue(ByteBuffer buffer, int offset, int rawValue, int dataType, int data) {
+        if ((offset < 0) || (offset > buffer.limit() - RECORD_SIZE)) {
+            throw new IndexOutOfBoundsException("No attribute record at " + offset);
+        }
+        // Absolute puts on a view, so neither the position nor the byte order of the caller's buffer change
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        view.putInt(offset + VALUE_OFFSET, rawValue);
+        view.putInt(offset + VALUE_OFFSET + 4, (dataType << 24) | RES_VALUE_SIZE);
+        view.putInt(offset + VALUE_OFFSET + 8, data);
+    }
+
+    private static void writeValue(FileChannel channel, int offset, int rawValue, int dataType, int data)
+            throws IOException {
+        if ((offset < 0) || (offset > channel.size() - RECORD_SIZE)) {
+            throw new IndexOutOfBoundsException("No attribute record at " + offset);
+        }
+        ByteBuffer value = ByteBuffer.allocate(VALUE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        value.putInt(rawValue).putInt((dataType << 24) | RES_VALUE_SIZE).putInt(data).flip();
+
+        long position = offset + VALUE_OFFSET;
+        while (value.hasRemaining()) {
+            position += channel.write(value, position);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/* 
+ * Copyright 2015-2025 Red Naga
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res;
+
+import android.content.res.cache.ResultCache;
+import android.content.res.chunk.ChunkType;
+import android.content.res.xml.Fingerprint;
+import android.content.res.xml.JsonSerializer;
+import android.content.res.xml.XmlEventSource;
+import android.content.res.xml.XmlSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Library entry point for decoding a binary Android XML file held in memory, picking the AXML or protobuf front end
+ * based on the first bytes.
+ *
+ * @author tstrazzere
+ */
+public class BinaryXML {
+
+    /**
+     * Version of the XML and JSON output, part of every cache key so that results rendered by an older version are
+     * never served from a cache directory which outlived it. Bump it whenever the rendered output changes.
+     */
+    public static final int RENDER_VERSION = 1;
+
+    /**
+     * @param header at least the first four bytes of the file
+     * @return true if this looks like a traditional AXML file
+     */
+    public static boolean isAXMLFormat(byte[] header) {
+        return header.length >= 4 &&
+                ((header[0] & 0xFF) | ((header[1] & 0xFF) << 8) | ((header[2] & 0xFF) << 16) | ((header[3] & 0xFF) << 24))
+                        == ChunkType.AXML_HEADER.getIntType();
+    }
+
+    /**
+     * Parse a document in either format, decoding a damaged AXML document as far as it goes.
+     *
+     * @param data the whole file
+     * @return the parsed document
+     * @throws IOException if the data is in neither format or fails to parse
+     */
+    public static XmlEventSource read(byte[] data) throws IOException {
+        return read(data, null);
+    }
+
+    /**
+     * Parse a document in either format, enforcing limits on what an AXML document may ask for.
+     *
+     * @param data   the whole file
+     * @param limits bounds for the AXML front end, null for none
+     * @return the parsed document
+     * @throws ParseLimitException if the document goes over the limits
+     * @throws IOException         if the data is in neither format or fails to parse
+     */
+    public static XmlEventSource read(byte[] data, ParseLimits limits) throws IOException {
+        if (isAXMLFormat(data)) {
+            AXMLResource resource = new AXMLResource();
+            resource.setLimits(limits);
+            if (!resource.read(new ByteArrayInputStream(data))) {
+                throw new IOException(describeIncomplete(resource.getParseStats(), data.length));
+            }
+            return resource;
+        } else if (ProtobufXMLResource.isProtobufFormat(data)) {
+            return new ProtobufXMLResource(new ByteArrayInputStream(data));
+        }
+
+        throw new IOException("Unknown file format, expected AXML or protobuf");
+    }
+
+    /**
+     * @return why an AXML document could not be used, naming the sections it lacks
+     */
+    private static String describeIncomplete(ParseStats stats, int length) {
+        StringBuilder missing = new StringBuilder();
+        for (ChunkType type : new ChunkType[]{ChunkType.AXML_HEADER, ChunkType.STRING_SECTION,
+                ChunkType.RESOURCE_SECTION}) {
+            if (stats.getChunkCount(type) == 0) {
+                missing.append((missing.length() == 0) ? "" : ", ").append(type);
+            }
+        }
+        return "Incomplete AXML document" + ((missing.length() > 0) ? ", no " + missing : "") + " in the " +
+                stats.getBytesRead() + " of " + length + " bytes read";
+    }
+
+    /**
+     * Decode a document in either format to XML.
+     *
+     * @param data the whole file
+     * @return the rendered XML
+     * @throws IOException if the data is in neither format or fails to parse
+     */
+    public static String toXML(byte[] data) throws IOException {
+        return XmlSerializer.toXML(read(data));
+    }
+
+    /**
+     * Decode a document in either format to XML, reusing the result for any input already seen by the cache.
+     *
+     * @param data  the whole file
+     * @param cache cache to consult and fill, may be null
+     * @return the rendered XML
+     * @throws IOException if the data is in neither format or fails to parse
+     */
+    public static String toXML(byte[] data, ResultCache cache) throws IOException {
+        if (cache == null) {
+            return toXML(data);
+        }
+
+        String key = cacheKey(data, "xml");
+        String xml = cache.get(key);
+        if (xml == null) {
+            xml = toXML(data);
+            cache.put(key, xml);
+        }
+        return xml;
+    }
+
+    /**
+     * Decode a document in either format to JSON, see {@link JsonSerializer} for the layout.
+     *
+     * @param data the whole file
+     * @return the rendered JSON
+     * @throws IOException if the data is in neither format or fails to parse
+     */
+    public static String toJSON(byte[] data) throws IOException {
+        return JsonSerializer.toJSON(read(data));
+    }
+
+    /**
+     * Decode a document in either format to JSON, reusing the result for any input already seen by the cache.
+     *
+     * @param data  the whole file
+     * @param cache cache to consult and fill, may be null
+     * @return the rendered JSON
+     * @throws IOException if the data is in neither format or fails to parse
+     */
+    public static String toJSON(byte[] data, ResultCache cache) throws IOException {
+        if (cache == null) {
+            return toJSON(data);
+        }
+
+        String key = cacheKey(data, "json");
+        String json = cache.get(key);
+        if (json == null) {
+            json = toJSON(data);
+            cache.put(key, json);
+        }
+        return json;
+    }
+
+    private static String cacheKey(byte[] data, String format) {
+        return ResultCache.hash(data) + ".v" + RENDER_VERSION + "." + format;
+    }
+
+    /**
+     * Fingerprint what a document in either format means, independently of how its chunks and string pool are laid
+     * out, see {@link Fingerprint}.
+     *
+     * @param data the whole file
+     * @return the lower case hex SHA-256 fingerprint
+     * @throws IOException if the data is in neither format or fails to parse
+     */
+    public static String fingerprint(byte[] data) throws IOException {
+        return Fingerprint.toHex(Fingerprint.of(read(data)));
+    }
+
+    /*
+     * Static helpers only
+     */
+    private BinaryXML() {
+
+    }
+}
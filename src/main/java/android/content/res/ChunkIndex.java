@@ -0,0 +1,376 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res;
+
+import android.content.res.chunk.ChunkType;
+import android.content.res.chunk.ChunkUtil;
+import android.content.res.chunk.sections.StringSection;
+import android.content.res.chunk.types.Chunk;
+import android.content.res.chunk.types.StartTag;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Where every element of a document starts and ends, found by reading only the 8 byte header (type and size) of each
+ * chunk and skipping its body.
+ * <p>
+ * Elements are numbered in document order, the order of their START_TAG chunks, and each one is paired with its
+ * END_TAG and its parent. The index can be saved next to the document, or embedded in a cache entry, with
+ * {@link #toBytes()} and brought back with {@link #fromBytes(byte[])}, so that repeated queries against the same large
+ * document parse the string pool once and then only the elements they look at.
+ *
+ * @author tstrazzere
+ */
+public final class ChunkIndex {
+
+    public static final int NO_OFFSET = -1;
+    public static final int NO_PARENT = -1;
+
+    // "ACIX" and the version of the saved layout
+    private static final int MAGIC = 0x58494341;
+    private static final int VERSION = 1;
+    private static final int SAVED_HEADER = 6 * 4;
+
+    private final int documentLength;
+    private final int stringPoolOffset;
+    private final int resourceMapOffset;
+    private final int elementCount;
+    private final int[] startOffsets;
+    private final int[] endOffsets;
+    private final int[] parents;
+
+    private ChunkIndex(int documentLength, int stringPoolOffset, int resourceMapOffset, int elementCount,
+                       int[] startOffsets, int[] endOffsets, int[] parents) {
+        this.documentLength = documentLength;
+        this.stringPoolOffset = stringPoolOffset;
+        this.resourceMapOffset = resourceMapOffset;
+        this.elementCount = elementCount;
+        this.startOffsets = startOffsets;
+        this.endOffsets = endOffsets;
+        this.parents = parents;
+    }
+
+    /**
+     * @param document a whole AXML document
+     * @return the index of the document
+     * @throws IOException if it is not an AXML document or a chunk claims more bytes than there are
+     */
+    public static ChunkIndex scan(byte[] document) throws IOException {
+        return scan(ByteBuffer.wrap(document));
+    }
+
+    /**
+     * Index a document between the position and the limit of the buffer, e.g. a file mapped with
+     * {@link java.nio.channels.FileChannel#map}, of which only the chunk headers are then paged in. Offsets are relative
+     * to the position, and the buffer itself is left as it is.
+     *
+     * @param document
+     * @return the index of the document
+     * @throws IOException if it is not an AXML document or a chunk claims more bytes than there are
+     */
+    public static ChunkIndex scan(ByteBuffer document) throws IOException {
+        ByteBuffer in = document.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int length = in.limit();
+        if (length < 8 || in.getInt(0) != ChunkType.AXML_HEADER.getIntType()) {
+            throw new IOException("Not an AXML document");
+        }
+
+        int stringPoolOffset = NO_OFFSET;
+        int resourceMapOffset = NO_OFFSET;
+        int elementCount = 0;
+        int[] startOffsets = new int[64];
+        int[] endOffsets = new int[64];
+        int[] parents = new int[64];
+        int[] open = new int[16];
+        int depth = 0;
+
+        int position = 8;
+        while (position + 8 <= length) {
+            int type = in.getInt(position);
+            int size = in.getInt(position + 4);
+            if (size < 8 || size > length - position) {
+                throw new IOException("Chunk at " + position + " claims " + size + " bytes");
+            }
+
+            if (type == ChunkType.START_TAG.getIntType()) {
+                if (elementCount == startOffsets.length) {
+                    startOffsets = Arrays.copyOf(startOffsets, elementCount * 2);
+                    endOffsets = Arrays.copyOf(endOffsets, elementCount * 2);
+                    parents = Arrays.copyOf(parents, elementCount * 2);
+                }
+                startOffsets[elementCount] = position;
+                endOffsets[elementCount] = NO_OFFSET;
+                parents[elementCount] = (depth > 0) ? open[depth - 1] : NO_PARENT;
+                if (depth == open.length) {
+                    open = Arrays.copyOf(open, depth * 2);
+                }
+                open[depth++] = elementCount++;
+            } else if (type == ChunkType.END_TAG.getIntType()) {
+                // An end tag without a start tag closes nothing
+                if (depth > 0) {
+                    endOffsets[open[--depth]] = position;
+                }
+            } else if (type == ChunkType.STRING_SECTION.getIntType() && stringPoolOffset == NO_OFFSET) {
+                stringPoolOffset = position;
+            } else if (type == ChunkType.RESOURCE_SECTION.getIntType() && resourceMapOffset == NO_OFFSET) {
+                resourceMapOffset = position;
+            }
+            position += size;
+        }
+
+        return new ChunkIndex(length, stringPoolOffset, resourceMapOffset, elementCount,
+                Arrays.copyOf(startOffsets, elementCount), Arrays.copyOf(endOffsets, elementCount),
+                Arrays.copyOf(parents, elementCount));
+    }
+
+    /**
+     * @return the length of the indexed document, which any document handed to this index must have
+     */
+    public int getDocumentLength() {
+        return documentLength;
+    }
+
+    /**
+     * @return the offset of the string pool, or {@link #NO_OFFSET}
+     */
+    public int getStringPoolOffset() {
+        return stringPoolOffset;
+    }
+
+    /**
+     * @return the offset of the resource map, or {@link #NO_OFFSET}
+     */
+    public int getResourceMapOffset() {
+        return resourceMapOffset;
+    }
+
+    public int getElementCount() {
+        return elementCount;
+    }
+
+    /**
+     * @param element ordinal of the element in document order
+     * @return the offset of its START_TAG chunk
+     */
+    public int getStartOffset(int element) {
+        return startOffsets[element];
+    }
+
+    /**
+     * @param element ordinal of the element in document order
+     * @return the offset of its END_TAG chunk, or {@link #NO_OFFSET} if the document never closes it
+     */
+    public int getEndOffset(int element) {
+        return endOffsets[element];
+    }
+
+    /**
+     * @param element ordinal of the element in document order
+     * @return the ordinal of the element it is nested in, or {@link #NO_PARENT} for a root
+     */
+    public int getParent(int element) {
+        return parents[element];
+    }
+
+    /**
+     * @param document the indexed document
+     * @return its string pool, to resolve the names of the elements read through this index
+     * @throws IOException if the document has no string pool or is not the indexed one
+     */
+    public StringSection readStringSection(ByteBuffer document) throws IOException {
+        if (stringPoolOffset == NO_OFFSET) {
+            throw new IOException("The document has no string pool");
+        }
+        return (StringSection) ChunkUtil.createChunk(open(document, stringPoolOffset, chunkSize(document,
+                stringPoolOffset)));
+    }
+
+    /**
+     * Read one START_TAG, and nothing else, of the document. Its offsets, e.g. {@link StartTag#getAttributeOffset(int)},
+     * are those in the whole document, so it can be handed to {@link AttributePatcher}.
+     *
+     * @param document the indexed document
+     * @param element  ordinal of the element in document order
+     * @return the tag
+     * @throws IOException if the document is not the indexed one or the chunk cannot be read
+     */
+    public StartTag readStartTag(ByteBuffer document, int element) throws IOException {
+        int offset = startOffsets[element];
+        Chunk chunk = ChunkUtil.createChunk(open(document, offset, chunkSize(document, offset)));
+        if (!(chunk instanceof StartTag)) {
+            throw new IOException("No START_TAG at " + offset + ", the document is not the indexed one");
+        }
+        return (StartTag) chunk;
+    }
+
+    /**
+     * Read the chunks of one element and everything nested in it, from its START_TAG to its END_TAG, or to the end of
+     * the document if it is never closed.
+     *
+     * @param document the indexed document
+     * @param element  ordinal of the element in document order
+     * @return the chunks, in document order
+     * @throws IOException if the document is not the indexed one or a chunk cannot be read
+     */
+    public List<Chunk> readElement(ByteBuffer document, int element) throws IOException {
+        checkDocument(document);
+        int start = startOffsets[element];
+        int end = endOffsets[element];
+        int stop = (end == NO_OFFSET) ? documentLength : end + chunkSize(document, end);
+
+        IntReader reader = open(document, start, stop - start);
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        while (reader.getBytesRead() + 8 <= stop) {
+            chunks.add(ChunkUtil.createChunk(reader));
+        }
+        return chunks;
+    }
+
+    /**
+     * @return the index as bytes, to store next to the document or in a cache
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(SAVED_HEADER + (elementCount * 3 * 4)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(documentLength)
+                .putInt(stringPoolOffset)
+                .putInt(resourceMapOffset)
+                .putInt(elementCount);
+        for (int i = 0; i < elementCount; i++) {
+            buffer.putInt(startOffsets[i]).putInt(endOffsets[i]).putInt(parents[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param outputStream
+     * @throws IOException
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(toBytes());
+    }
+
+    /**
+     * @param bytes as written by {@link #toBytes()}
+     * @return the index
+     * @throws IOException if the bytes are not a saved index or do not describe a document consistently
+     */
+    public static ChunkIndex fromBytes(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < SAVED_HEADER || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a chunk index");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported chunk index version " + version);
+        }
+        int documentLength = buffer.getInt();
+        int stringPoolOffset = buffer.getInt();
+        int resourceMapOffset = buffer.getInt();
+        int elementCount = buffer.getInt();
+        if (documentLength < 8 || !isSavedOffset(stringPoolOffset, documentLength) ||
+                !isSavedOffset(resourceMapOffset, documentLength)) {
+            throw new IOException("Chunk index header is inconsistent");
+        }
+        if (elementCount < 0 || elementCount > buffer.remaining() / (3 * 4)) {
+            throw new IOException("Chunk index claims " + elementCount + " elements");
+        }
+
+        int[] startOffsets = new int[elementCount];
+        int[] endOffsets = new int[elementCount];
+        int[] parents = new int[elementCount];
+        for (int i = 0; i < elementCount; i++) {
+            startOffsets[i] = buffer.getInt();
+            endOffsets[i] = buffer.getInt();
+            parents[i] = buffer.getInt();
+            // Reject what the reads would trip over later, a stale or hostile sidecar must not look valid
+            if (startOffsets[i] < 8 || startOffsets[i] > documentLength - 8 ||
+                    (endOffsets[i] != NO_OFFSET && (endOffsets[i] <= startOffsets[i] ||
+                            endOffsets[i] > documentLength - 8)) ||
+                    parents[i] < NO_PARENT || parents[i] >= i) {
+                throw new IOException("Chunk index entry " + i + " is inconsistent");
+            }
+        }
+        return new ChunkIndex(documentLength, stringPoolOffset, resourceMapOffset, elementCount, startOffsets,
+                endOffsets, parents);
+    }
+
+    private static boolean isSavedOffset(int offset, int documentLength) {
+        return offset == NO_OFFSET || (offset >= 8 && offset <= documentLength - 8);
+    }
+
+    /**
+     * @param inputStream positioned at an index written by {@link #writeTo(OutputStream)}, read to its end
+     * @return the index
+     * @throws IOException
+     */
+    public static ChunkIndex readFrom(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return fromBytes(output.toByteArray());
+    }
+
+    private void checkDocument(ByteBuffer document) throws IOException {
+        if (document.remaining() != documentLength) {
+            throw new IOException("Document of " + document.remaining() + " bytes, the index is for " +
+                    documentLength);
+        }
+    }
+
+    private int chunkSize(ByteBuffer document, int offset) throws IOException {
+        checkDocument(document);
+        int size = document.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(document.position() + offset + 4);
+        if (size < 8 || size > documentLength - offset) {
+            throw new IOException("Chunk at " + offset + " claims " + size + " bytes");
+        }
+        return size;
+    }
+
+    /**
+     * @return a reader over part of the document which counts its bytes from the start of the document
+     */
+    private static IntReader open(ByteBuffer document, int offset, int length) {
+        InputStream stream;
+        if (document.hasArray()) {
+            stream = new ByteArrayInputStream(document.array(), document.arrayOffset() + document.position() + offset,
+                    length);
+        } else {
+            byte[] bytes = new byte[length];
+            ByteBuffer region = document.duplicate();
+            region.position(document.position() + offset);
+            region.get(bytes);
+            stream = new ByteArrayInputStream(bytes);
+        }
+
+        IntReader reader = new IntReader(stream, false);
+        reader.reset(stream, false, offset);
+        return reader;
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res;
+
+import android.content.res.chunk.ChunkType;
+import android.content.res.chunk.ChunkUtil;
+import android.content.res.chunk.TypedValue;
+import android.content.res.chunk.sections.ResourceSection;
+import android.content.res.chunk.sections.StringSection;
+import android.content.res.chunk.types.Chunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The elements of a document packed into a single int[] rather than one object per chunk and attribute, for keeping
+ * a great many documents in memory at once. Only the string pool and the resource map stay objects.
+ * <p>
+ * Every START_NAMESPACE, END_NAMESPACE, START_TAG, END_TAG and TEXT_TAG chunk becomes one record on the tape:
+ * <pre>
+ * [chunk type ordinal &lt;&lt; 24 | record length in words] [jump] [the chunk words after its type and size ...]
+ * </pre>
+ * so the fields are the raw little endian words of the chunk, attributes included, and a record converts back into
+ * the very same chunk. The jump of a START_TAG is the record after its matching END_TAG (the end of the tape if it is
+ * never closed), which skips the whole element; the jump of any other record is the next record.
+ * <p>
+ * Records are addressed by their index on the tape, starting at 0:
+ * <pre>
+ * for (int record = 0; record &lt; tape.size(); record = tape.next(record)) { ... }
+ * </pre>
+ *
+ * @author tstrazzere
+ */
+public final class ChunkTape {
+
+    public static final int NO_ATTRIBUTE = -1;
+
+    private static final ChunkType[] CHUNK_TYPES = ChunkType.values();
+    private static final int HEADER_WORDS = 2;
+    private static final int MAX_RECORD_WORDS = 0xFFFFFF;
+
+    // Field numbers, counted from the first word after the chunk type and size
+    private static final int LINE_NUMBER = 0;
+    private static final int COMMENT = 1;
+    private static final int NAMESPACE_PREFIX = 2;
+    private static final int NAMESPACE_URI = 3;
+    private static final int TAG_NAMESPACE_URI = 2;
+    private static final int TAG_NAME = 3;
+    private static final int TEXT_NAME = 2;
+    private static final int ATTRIBUTE_COUNT = 5;
+    private static final int FIRST_ATTRIBUTE = 7;
+    private static final int ATTRIBUTE_WORDS = 5;
+
+    // Words of an attribute
+    private static final int ATTRIBUTE_NAME = 1;
+    private static final int ATTRIBUTE_RAW_VALUE = 2;
+    private static final int ATTRIBUTE_TYPE = 3;
+    private static final int ATTRIBUTE_DATA = 4;
+
+    private final int[] tape;
+    private final StringSection stringSection;
+    private final ResourceSection resourceSection;
+
+    private ChunkTape(int[] tape, StringSection stringSection, ResourceSection resourceSection) {
+        this.tape = tape;
+        this.stringSection = stringSection;
+        this.resourceSection = resourceSection;
+    }
+
+    /**
+     * Pack a document straight from its bytes, without creating the chunk objects of its elements.
+     *
+     * @param document a whole AXML document
+     * @return the tape
+     * @throws IOException if it is not an AXML document or a chunk claims more bytes than there are
+     */
+    public static ChunkTape read(byte[] document) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(document).order(ByteOrder.LITTLE_ENDIAN);
+        if (document.length < 8 || in.getInt(0) != ChunkType.AXML_HEADER.getIntType()) {
+            throw new IOException("Not an AXML document");
+        }
+
+        StringSection stringSection = null;
+        ResourceSection resourceSection = null;
+        int[] tape = new int[Math.max(16, document.length / 4)];
+        int size = 0;
+        int[] open = new int[16];
+        int depth = 0;
+
+        int position = 8;
+        while (position + 8 <= document.length) {
+            int type = in.getInt(position);
+            int chunkSize = in.getInt(position + 4);
+            if (chunkSize < 8 || chunkSize > document.length - position) {
+                throw new IOException("Chunk at " + position + " claims " + chunkSize + " bytes");
+            }
+
+            ChunkType chunkType = getChunkType(type);
+            if (chunkType == ChunkType.STRING_SECTION && stringSection == null) {
+                stringSection = (StringSection) ChunkUtil.createChunk(open(document, position, chunkSize));
+            } else if (chunkType == ChunkType.RESOURCE_SECTION && resourceSection == null) {
+                resourceSection = (ResourceSection) ChunkUtil.createChunk(open(document, position, chunkSize));
+            } else if (isElementChunk(chunkType)) {
+                // Words past the last whole one are padding no chunk reads
+                int fields = (chunkSize - 8) / 4;
+                if (fields + HEADER_WORDS > MAX_RECORD_WORDS) {
+                    throw new IOException("Chunk at " + position + " is too large for the tape");
+                }
+                if (size + HEADER_WORDS + fields > tape.length) {
+                    tape = Arrays.copyOf(tape, Math.max(tape.length * 2, size + HEADER_WORDS + fields));
+                }
+
+                int record = size;
+                tape[size++] = (chunkType.ordinal() << 24) | (HEADER_WORDS + fields);
+                tape[size++] = record + HEADER_WORDS + fields;
+                for (int i = 0; i < fields; i++) {
+                    tape[size++] = in.getInt(position + 8 + (i * 4));
+                }
+
+                if (chunkType == ChunkType.START_TAG) {
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                    }
+                    open[depth++] = record;
+                } else if (chunkType == ChunkType.END_TAG && depth > 0) {
+                    tape[open[--depth] + 1] = size;
+                }
+            }
+            position += chunkSize;
+        }
+
+        // Elements the document never closes reach to its end
+        while (depth > 0) {
+            tape[open[--depth] + 1] = size;
+        }
+
+        return new ChunkTape(Arrays.copyOf(tape, size), stringSection, resourceSection);
+    }
+
+    /**
+     * @return the number of words on the tape, which is also the index just past the last record
+     */
+    public int size() {
+        return tape.length;
+    }
+
+    /**
+     * @return the string pool of the document, null if it has none
+     */
+    public StringSection getStringSection() {
+        return stringSection;
+    }
+
+    /**
+     * @return the resource map of the document, null if it has none
+     */
+    public ResourceSection getResourceSection() {
+        return resourceSection;
+    }
+
+    /**
+     * @param record
+     * @return the record after it, {@link #size()} after the last one
+     */
+    public int next(int record) {
+        return record + (tape[record] & MAX_RECORD_WORDS);
+    }
+
+    /**
+     * @param record
+     * @return the record after the element a START_TAG opens, or the next record for any other record
+     */
+    public int skip(int record) {
+        return tape[record + 1];
+    }
+
+    public ChunkType getType(int record) {
+        return CHUNK_TYPES[tape[record] >>> 24];
+    }
+
+    /**
+     * @param record
+     * @return the number of raw chunk words the record holds
+     */
+    public int getFieldCount(int record) {
+        return (tape[record] & MAX_RECORD_WORDS) - HEADER_WORDS;
+    }
+
+    /**
+     * @param record
+     * @param field  number of the word, counted from the first word after the chunk type and size
+     * @return the raw word
+     */
+    public int getField(int record, int field) {
+        if (field < 0 || field >= getFieldCount(record)) {
+            throw new IndexOutOfBoundsException("Field " + field + " out of bounds for " + getFieldCount(record));
+        }
+        return tape[record + HEADER_WORDS + field];
+    }
+
+    public int getLineNumber(int record) {
+        return getField(record, LINE_NUMBER);
+    }
+
+    public int getCommentIndex(int record) {
+        return getField(record, COMMENT);
+    }
+
+    /**
+     * @param record a START_TAG, END_TAG or TEXT_TAG
+     * @return string index of the tag name, or of the text
+     */
+    public int getNameIndex(int record) {
+        return getField(record, (getType(record) == ChunkType.TEXT_TAG) ? TEXT_NAME : TAG_NAME);
+    }
+
+    /**
+     * @param record a namespace, START_TAG or END_TAG
+     * @return string index of the namespace uri
+     */
+    public int getNamespaceUriIndex(int record) {
+        ChunkType type = getType(record);
+        boolean namespace = (type == ChunkType.START_NAMESPACE) || (type == ChunkType.END_NAMESPACE);
+        return getField(record, namespace ? NAMESPACE_URI : TAG_NAMESPACE_URI);
+    }
+
+    /**
+     * @param record a namespace
+     * @return string index of the prefix
+     */
+    public int getPrefixIndex(int record) {
+        return getField(record, NAMESPACE_PREFIX);
+    }
+
+    /**
+     * @param record a START_TAG
+     * @return the number of attributes, as far as the chunk really holds them
+     */
+    public int getAttributeCount(int record) {
+        int fields = getFieldCount(record);
+        if (getType(record) != ChunkType.START_TAG || fields <= FIRST_ATTRIBUTE) {
+            return 0;
+        }
+        // The high 16 bits hold the id attribute index
+        int count = getField(record, ATTRIBUTE_COUNT) & 0xFFFF;
+        return Math.max(0, Math.min(count, (fields - FIRST_ATTRIBUTE) / ATTRIBUTE_WORDS));
+    }
+
+    public int getAttributeNameIndex(int record, int attribute) {
+        return getAttributeWord(record, attribute, ATTRIBUTE_NAME);
+    }
+
+    /**
+     * @return string index of the raw value, -1 if there is none
+     */
+    public int getAttributeStringIndex(int record, int attribute) {
+        return getAttributeWord(record, attribute, ATTRIBUTE_RAW_VALUE);
+    }
+
+    /**
+     * @return the {@link TypedValue} data type
+     */
+    public int getAttributeDataType(int record, int attribute) {
+        return TypedValue.getDataType(getAttributeWord(record, attribute, ATTRIBUTE_TYPE));
+    }
+
+    public int getAttributeData(int record, int attribute) {
+        return getAttributeWord(record, attribute, ATTRIBUTE_DATA);
+    }
+
+    /**
+     * @param record     a START_TAG
+     * @param resourceId e.g. 0x0101000f for android:debuggable
+     * @return the first attribute whose name maps to the id, or {@link #NO_ATTRIBUTE}
+     */
+    public int findAttribute(int record, int resourceId) {
+        if (resourceSection == null) {
+            return NO_ATTRIBUTE;
+        }
+        int resourceCount = resourceSection.getResourceCount();
+        int count = getAttributeCount(record);
+        for (int i = 0; i < count; i++) {
+            int name = getAttributeNameIndex(record, i);
+            if ((name >= 0) && (name < resourceCount) && (resourceSection.getResourceID(name) == resourceId)) {
+                return i;
+            }
+        }
+        return NO_ATTRIBUTE;
+    }
+
+    /**
+     * Turn a record back into its chunk, e.g. to edit it.
+     *
+     * @param record
+     * @return the chunk, whose start position is 0 as it no longer has a place in a document
+     * @throws IOException if the chunk cannot be read
+     */
+    public Chunk toChunk(int record) throws IOException {
+        int fields = getFieldCount(record);
+        ByteBuffer chunk = ByteBuffer.allocate(8 + (fields * 4)).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.putInt(getType(record).getIntType()).putInt(chunk.capacity());
+        for (int i = 0; i < fields; i++) {
+            chunk.putInt(tape[record + HEADER_WORDS + i]);
+        }
+        return ChunkUtil.createChunk(new IntReader(new ByteArrayInputStream(chunk.array()), false));
+    }
+
+    /**
+     * @return every record turned back into its chunk, in document order
+     * @throws IOException if a chunk cannot be read
+     */
+    public List<Chunk> toChunks() throws IOException {
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        for (int record = 0; record < tape.length; record = next(record)) {
+            chunks.add(toChunk(record));
+        }
+        return chunks;
+    }
+
+    private int getAttributeWord(int record, int attribute, int word) {
+        if (attribute < 0 || attribute >= getAttributeCount(record)) {
+            throw new IndexOutOfBoundsException("Attribute " + attribute + " out of bounds for " +
+                    getAttributeCount(record));
+        }
+        return tape[record + HEADER_WORDS + FIRST_ATTRIBUTE + (attribute * ATTRIBUTE_WORDS) + word];
+    }
+
+    private static ChunkType getChunkType(int type) {
+        for (ChunkType chunkType : CHUNK_TYPES) {
+            if (chunkType.getIntType() == type) {
+                return chunkType;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isElementChunk(ChunkType chunkType) {
+        return (chunkType == ChunkType.START_NAMESPACE) || (chunkType == ChunkType.END_NAMESPACE) ||
+                (chunkType == ChunkType.START_TAG) || (chunkType == ChunkType.END_TAG) ||
+                (chunkType == ChunkType.TEXT_TAG);
+    }
+
+    private static IntReader open(byte[] document, int offset, int length) {
+        IntReader reader = new IntReader(null, false);
+        reader.reset(new ByteArrayInputStream(document, offset, length), false, offset);
+        return reader;
+    }
+}
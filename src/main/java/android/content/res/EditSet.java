@@ -0,0 +1,879 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res;
+
+import android.content.res.chunk.ChunkType;
+import android.content.res.chunk.TypedValue;
+import android.content.res.chunk.sections.StringSection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A batch of edits to a document, e.g. the permissions, components, package name and flags a repackaging job changes
+ * in a manifest, applied in a single copy from the input to the output instead of one edit at a time on a
+ * {@link AXMLResource}.
+ * <p>
+ * Only the string pool is decoded. Every chunk the edits do not touch is copied byte for byte, the strings the edits
+ * need are added to the pool (and attribute names with a resource id to the resource map) once, and each edited start
+ * tag is rebuilt once whatever the number of edits on it. The one exception is adding an attribute name which needs a
+ * resource id the document does not map yet: that name has to go in front of the unmapped strings, so the string
+ * indexes of the whole document are shifted on the way through.
+ * <p>
+ * Edits are matched by tag name and apply to every element with that name, except additions which go to the first
+ * one. An edit set holds no state of the documents it is applied to and can be reused.
+ *
+ * @author tstrazzere
+ */
+public final class EditSet {
+
+    public static final String ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android";
+    private static final int ANDROID_NAME_RESOURCE_ID = 0x01010003;
+
+    private static final int NO_INDEX = -1;
+    private static final int POOL_HEADER_SIZE = 7 * 4;
+    private static final int TAG_HEADER_SIZE = 9 * 4;
+    private static final int ATTRIBUTE_SIZE = 5 * 4;
+    private static final int END_TAG_SIZE = 6 * 4;
+    // attributeStart and attributeSize of a start tag, both 20
+    private static final int ATTRIBUTE_LAYOUT = 0x00140014;
+    private static final int RES_VALUE_SIZE = 8;
+    private static final int UTF8_FLAG = 1 << 8;
+
+    /**
+     * Set, or with a null type remove, one attribute.
+     */
+    private static final class AttributeEdit {
+
+        final String name;
+        final int resourceId;
+        final boolean remove;
+        final int dataType;
+        final int data;
+        final String value;
+
+        AttributeEdit(String name, int resourceId, boolean remove, int dataType, int data, String value) {
+            this.name = name;
+            this.resourceId = resourceId;
+            this.remove = remove;
+            this.dataType = dataType;
+            this.data = data;
+            this.value = value;
+        }
+    }
+
+    // Edits by the tag name they apply to, so every start tag costs one lookup
+    private final Map<String, List<AttributeEdit>> attributeEdits = new HashMap<String, List<AttributeEdit>>();
+    // android:name values of the elements to drop by tag name, a null value dropping all of them
+    private final Map<String, List<String>> removals = new HashMap<String, List<String>>();
+    // Elements to add by parent tag name, as tag name and android:name pairs
+    private final Map<String, List<String[]>> additions = new HashMap<String, List<String[]>>();
+    private int size;
+
+    /**
+     * Set an attribute held in the data word, replacing it if the element has it already.
+     *
+     * @param tag        name of the elements to edit
+     * @param name       name of the attribute, without prefix
+     * @param resourceId the attribute resource id, e.g. 0x0101000f for android:debuggable, or 0 for an attribute
+     *                   outside the android namespace such as package
+     * @param dataType   the Res_value data type, anything but {@link TypedValue#TYPE_STRING}
+     * @param data       the Res_value data word
+     * @return this edit set
+     */
+    public EditSet setAttribute(String tag, String name, int resourceId, int dataType, int data) {
+        if (dataType == TypedValue.TYPE_STRING) {
+            throw new IllegalArgumentException("Strings are set with setAttribute(String, String, int, String)");
+        }
+        return addAttributeEdit(tag, new AttributeEdit(name, resourceId, false, dataType, data, null));
+    }
+
+    /**
+     * Set a string attribute, replacing it if the element has it already.
+     *
+     * @param tag        name of the elements to edit
+     * @param name       name of the attribute, without prefix
+     * @param resourceId the attribute resource id, or 0 for an attribute outside the android namespace
+     * @param value      the new value
+     * @return this edit set
+     */
+    public EditSet setAttribute(String tag, String name, int resourceId, String value) {
+        return addAttributeEdit(tag, new AttributeEdit(name, resourceId, false, TypedValue.TYPE_STRING, 0, value));
+    }
+
+    /**
+     * @param tag  name of the elements to edit
+     * @param name name of the attribute, without prefix
+     * @return this edit set
+     */
+    public EditSet removeAttribute(String tag, String name) {
+        return addAttributeEdit(tag, new AttributeEdit(name, 0, true, TypedValue.TYPE_NULL, 0, null));
+    }
+
+    /**
+     * Drop elements with everything inside them, e.g. a component.
+     *
+     * @param tag         name of the elements to drop
+     * @param androidName only drop the element with this android:name, null to drop all of them
+     * @return this edit set
+     */
+    public EditSet removeElements(String tag, String androidName) {
+        removals.computeIfAbsent(tag, ignored -> new ArrayList<String>()).add(androidName);
+        size++;
+        return this;
+    }
+
+    /**
+     * Add an empty element with only an android:name, e.g. a uses-permission, as the first child of the first element
+     * with the parent tag.
+     *
+     * @param parentTag   name of the parent element, e.g. manifest
+     * @param tag         name of the new element
+     * @param androidName its android:name
+     * @return this edit set
+     */
+    public EditSet addElement(String parentTag, String tag, String androidName) {
+        additions.computeIfAbsent(parentTag, ignored -> new ArrayList<String[]>()).add(new String[]{tag, androidName});
+        size++;
+        return this;
+    }
+
+    /**
+     * @return the number of edits
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param input the whole document
+     * @return the edited document
+     * @throws IOException if the input is not an AXML document or its chunks do not add up
+     */
+    public byte[] apply(byte[] input) throws IOException {
+        Rewrite rewrite = new Rewrite(input);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(rewrite.getOutputSize());
+        rewrite.write(output);
+        return output.toByteArray();
+    }
+
+    /**
+     * @param input  the whole document
+     * @param output where to write the edited document
+     * @throws IOException if the input is not an AXML document or its chunks do not add up, or writing fails
+     */
+    public void apply(byte[] input, OutputStream output) throws IOException {
+        new Rewrite(input).write(output);
+    }
+
+    private EditSet addAttributeEdit(String tag, AttributeEdit edit) {
+        attributeEdits.computeIfAbsent(tag, ignored -> new ArrayList<AttributeEdit>()).add(edit);
+        size++;
+        return this;
+    }
+
+    /**
+     * Everything about applying the edits to one document: the strings and resource ids they add, then the chunks
+     * they replace, which are planned before anything is written so the sizes are known up front.
+     */
+    private final class Rewrite {
+
+        private final byte[] input;
+        private final ByteBuffer in;
+
+        private final int poolSize;
+        private final StringSection pool;
+        private final int stringCount;
+        private final int styleCount;
+        private final boolean utf8;
+
+        private final int mapOffset;
+        private final int mapSize;
+        private final int[] resourceIds;
+        private final int chunksStart;
+
+        // Strings with a resource id added in front of the unmapped ones, and strings added at the end of the pool
+        private final List<String> insertedNames = new ArrayList<String>();
+        private final List<Integer> insertedIds = new ArrayList<Integer>();
+        private final List<String> appended = new ArrayList<String>();
+        private Map<String, Integer> stringIndexes;
+        private Map<String, Integer> unmappedIndexes;
+
+        // New indexes of the name, namespace and value of each attribute edit, and of the attribute name, namespace,
+        // tag name and android:name of each added element
+        private final Map<AttributeEdit, int[]> resolved = new IdentityHashMap<AttributeEdit, int[]>();
+        private final Map<String[], int[]> resolvedAdditions = new IdentityHashMap<String[], int[]>();
+
+        // Replaced ranges of the chunks in file order: offset, length, and the bytes written in their place
+        private final List<int[]> replacedRanges = new ArrayList<int[]>();
+        private final List<byte[]> replacements = new ArrayList<byte[]>();
+        private byte[] newPool;
+        private byte[] newMap;
+        private int outputSize;
+
+        Rewrite(byte[] input) throws IOException {
+            this.input = input;
+            in = ByteBuffer.wrap(input).order(ByteOrder.LITTLE_ENDIAN);
+            if (input.length < 16 || in.getInt(0) != ChunkType.AXML_HEADER.getIntType() ||
+                    in.getInt(8) != ChunkType.STRING_SECTION.getIntType()) {
+                throw new IOException("Not an AXML document starting with a string pool");
+            }
+
+            poolSize = checkChunk(8);
+            IntReader reader = new IntReader(new ByteArrayInputStream(input, 8, poolSize), false);
+            reader.readInt();
+            pool = new StringSection(ChunkType.STRING_SECTION, reader);
+            stringCount = in.getInt(16);
+            styleCount = in.getInt(20);
+            utf8 = (in.getInt(24) & UTF8_FLAG) != 0;
+
+            int position = 8 + poolSize;
+            if ((position + 8 <= input.length) && (in.getInt(position) == ChunkType.RESOURCE_SECTION.getIntType())) {
+                mapOffset = position;
+                mapSize = checkChunk(position);
+                resourceIds = new int[(mapSize - 8) / 4];
+                for (int i = 0; i < resourceIds.length; i++) {
+                    resourceIds[i] = in.getInt(position + 8 + (i * 4));
+                }
+                position += mapSize;
+            } else {
+                mapOffset = NO_INDEX;
+                mapSize = 0;
+                resourceIds = new int[0];
+            }
+            chunksStart = position;
+
+            resolveStrings();
+            planChunks();
+            buildPool();
+            buildMap();
+
+            outputSize = 8 + newPool.length + newMap.length + (input.length - chunksStart);
+            for (int i = 0; i < replacements.size(); i++) {
+                outputSize += replacements.get(i).length - replacedRanges.get(i)[1];
+            }
+        }
+
+        int getOutputSize() {
+            return outputSize;
+        }
+
+        private int checkChunk(int offset) throws IOException {
+            int chunkSize = in.getInt(offset + 4);
+            if (chunkSize < 8 || chunkSize > input.length - offset) {
+                throw new IOException("Chunk at " + offset + " claims " + chunkSize + " bytes");
+            }
+            return chunkSize;
+        }
+
+        /**
+         * Find or add every string the edits need. Names with a resource id go first, as adding one moves all the
+         * strings after the mapped ones.
+         */
+        private void resolveStrings() throws IOException {
+            for (List<AttributeEdit> edits : attributeEdits.values()) {
+                for (AttributeEdit edit : edits) {
+                    if (!edit.remove && edit.resourceId != 0) {
+                        resolved.put(edit, new int[]{mappedIndex(edit.name, edit.resourceId), NO_INDEX, NO_INDEX});
+                    }
+                }
+            }
+            for (List<String[]> elements : additions.values()) {
+                for (String[] element : elements) {
+                    resolvedAdditions.put(element, new int[]{mappedIndex("name", ANDROID_NAME_RESOURCE_ID),
+                            NO_INDEX, NO_INDEX, NO_INDEX});
+                }
+            }
+            if (!insertedNames.isEmpty() && styleCount > 0) {
+                throw new IOException("Cannot map new attribute names in a string pool with styles");
+            }
+
+            for (List<AttributeEdit> edits : attributeEdits.values()) {
+                for (AttributeEdit edit : edits) {
+                    if (edit.remove) {
+                        continue;
+                    }
+                    int[] indexes = resolved.get(edit);
+                    if (indexes == null) {
+                        indexes = new int[]{unmappedIndex(edit.name), NO_INDEX, NO_INDEX};
+                        resolved.put(edit, indexes);
+                    } else {
+                        indexes[1] = stringIndex(ANDROID_NAMESPACE);
+                    }
+                    if (edit.value != null) {
+                        indexes[2] = stringIndex(edit.value);
+                    }
+                }
+            }
+            for (List<String[]> elements : additions.values()) {
+                for (String[] element : elements) {
+                    int[] indexes = resolvedAdditions.get(element);
+                    indexes[1] = stringIndex(ANDROID_NAMESPACE);
+                    indexes[2] = stringIndex(element[0]);
+                    indexes[3] = stringIndex(element[1]);
+                }
+            }
+        }
+
+        /**
+         * @return the new index of an attribute name mapped to the resource id, adding it if no string is
+         */
+        private int mappedIndex(String name, int resourceId) {
+            int mapped = getMappedCount();
+            for (int i = 0; i < mapped; i++) {
+                if (resourceIds[i] == resourceId) {
+                    return i;
+                }
+            }
+            int inserted = insertedIds.indexOf(resourceId);
+            if (inserted < 0) {
+                inserted = insertedNames.size();
+                insertedNames.add(name);
+                insertedIds.add(resourceId);
+            }
+            return mapped + inserted;
+        }
+
+        /**
+         * @return the new index of a string which must not carry a resource id, e.g. the name of an attribute
+         * outside the android namespace
+         */
+        private int unmappedIndex(String value) {
+            if (unmappedIndexes == null) {
+                unmappedIndexes = new HashMap<String, Integer>();
+                for (int i = stringCount - 1; i >= getMappedCount(); i--) {
+                    unmappedIndexes.put(pool.getString(i), i);
+                }
+            }
+            Integer index = unmappedIndexes.get(value);
+            return (index != null) ? remap(index) : append(value);
+        }
+
+        /**
+         * @return the new index of any string with this value
+         */
+        private int stringIndex(String value) {
+            if (stringIndexes == null) {
+                stringIndexes = new HashMap<String, Integer>();
+                for (int i = stringCount - 1; i >= 0; i--) {
+                    stringIndexes.put(pool.getString(i), i);
+                }
+            }
+            Integer index = stringIndexes.get(value);
+            return (index != null) ? remap(index) : append(value);
+        }
+
+        private int append(String value) {
+            int index = appended.indexOf(value);
+            if (index < 0) {
+                index = appended.size();
+                appended.add(value);
+            }
+            return stringCount + insertedNames.size() + index;
+        }
+
+        private int getMappedCount() {
+            return Math.min(resourceIds.length, stringCount);
+        }
+
+        /**
+         * @return the new index of a string index read from the input
+         */
+        private int remap(int index) {
+            return (index >= getMappedCount() && index < stringCount) ? index + insertedNames.size() : index;
+        }
+
+        /**
+         * @return the string at an index read from the input
+         */
+        private String getString(int index) {
+            return pool.getString(index);
+        }
+
+        /**
+         * @return the resource id of the attribute name at an index read from the input, 0 if it has none
+         */
+        private int getResourceId(int index) {
+            return (index >= 0 && index < getMappedCount()) ? resourceIds[index] : 0;
+        }
+
+        /**
+         * @return the string at a new index
+         */
+        private String getNewString(int index) {
+            int mapped = getMappedCount();
+            int inserted = insertedNames.size();
+            if (index < mapped) {
+                return getString(index);
+            } else if (index < mapped + inserted) {
+                return insertedNames.get(index - mapped);
+            } else if (index < stringCount + inserted) {
+                return getString(index - inserted);
+            }
+            int added = index - stringCount - inserted;
+            return (added < appended.size()) ? appended.get(added) : "";
+        }
+
+        /**
+         * @return the resource id of the attribute name at a new index, 0 if it has none
+         */
+        private int getNewResourceId(int index) {
+            int mapped = getMappedCount();
+            if (index >= 0 && index < mapped) {
+                return resourceIds[index];
+            }
+            return (index >= mapped && index < mapped + insertedIds.size()) ? insertedIds.get(index - mapped) : 0;
+        }
+
+        /**
+         * Walk the chunks once and work out which ranges are replaced and by what.
+         */
+        private void planChunks() throws IOException {
+            Set<String> parentsDone = new HashSet<String>();
+            int depth = 0;
+            int removedStart = NO_INDEX;
+            int removedDepth = 0;
+
+            int position = chunksStart;
+            while (position + 8 <= input.length) {
+                int type = in.getInt(position);
+                int chunkSize = checkChunk(position);
+
+                if (type == ChunkType.START_TAG.getIntType()) {
+                    depth++;
+                    if (removedStart == NO_INDEX) {
+                        String tag = getString(in.getInt(position + 20));
+                        if (isRemoved(tag, position)) {
+                            removedStart = position;
+                            removedDepth = depth;
+                        } else {
+                            List<AttributeEdit> edits = attributeEdits.get(tag);
+                            List<String[]> children = parentsDone.add(tag) ? additions.get(tag) : null;
+                            if (edits != null || children != null) {
+                                replace(position, chunkSize, rebuildStartTag(position, edits, children));
+                            }
+                        }
+                    }
+                } else if (type == ChunkType.END_TAG.getIntType()) {
+                    if (removedStart != NO_INDEX && depth == removedDepth) {
+                        replace(removedStart, position + chunkSize - removedStart, new byte[0]);
+                        removedStart = NO_INDEX;
+                    }
+                    depth--;
+                }
+                position += chunkSize;
+            }
+
+            if (removedStart != NO_INDEX) {
+                // A truncated document, drop the rest of the element
+                replace(removedStart, input.length - removedStart, new byte[0]);
+            }
+        }
+
+        private void replace(int offset, int length, byte[] bytes) {
+            replacedRanges.add(new int[]{offset, length});
+            replacements.add(bytes);
+        }
+
+        private boolean isRemoved(String tag, int position) {
+            List<String> names = removals.get(tag);
+            if (names == null) {
+                return false;
+            }
+            String androidName = null;
+            int count = in.getShort(position + 28) & 0xFFFF;
+            for (int i = 0; i < count; i++) {
+                int attribute = position + TAG_HEADER_SIZE + (i * ATTRIBUTE_SIZE);
+                int name = in.getInt(attribute + 4);
+                if (getResourceId(name) == ANDROID_NAME_RESOURCE_ID ||
+                        (getResourceId(name) == 0 && "name".equals(getString(name)))) {
+                    androidName = getString(in.getInt(attribute + 8));
+                    break;
+                }
+            }
+            for (String name : names) {
+                if (name == null || name.equals(androidName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the start tag with its attribute edits applied, followed by the elements added to it
+         */
+        private byte[] rebuildStartTag(int position, List<AttributeEdit> edits, List<String[]> children) {
+            int lineNumber = in.getInt(position + 8);
+            int count = in.getShort(position + 28) & 0xFFFF;
+            // The 1 based id, class and style attribute positions, which move with the attributes
+            int[] specialAttributes = {
+                    in.getShort(position + 30) & 0xFFFF,
+                    in.getShort(position + 32) & 0xFFFF,
+                    in.getShort(position + 34) & 0xFFFF
+            };
+
+            List<int[]> attributes = new ArrayList<int[]>(count + ((edits != null) ? edits.size() : 0));
+            for (int i = 0; i < count; i++) {
+                int attribute = position + TAG_HEADER_SIZE + (i * ATTRIBUTE_SIZE);
+                int dataType = in.get(attribute + 15) & 0xFF;
+                attributes.add(new int[]{
+                        remap(in.getInt(attribute)),
+                        remap(in.getInt(attribute + 4)),
+                        remap(in.getInt(attribute + 8)),
+                        in.getInt(attribute + 12),
+                        (dataType == TypedValue.TYPE_STRING) ? remap(in.getInt(attribute + 16))
+                                : in.getInt(attribute + 16)
+                });
+            }
+
+            if (edits != null) {
+                for (AttributeEdit edit : edits) {
+                    applyEdit(attributes, edit, specialAttributes);
+                }
+            }
+
+            int addedChildren = (children != null) ? children.size() : 0;
+            ByteBuffer tag = ByteBuffer.allocate(TAG_HEADER_SIZE + (attributes.size() * ATTRIBUTE_SIZE) +
+                    (addedChildren * (TAG_HEADER_SIZE + ATTRIBUTE_SIZE + END_TAG_SIZE))).order(ByteOrder.LITTLE_ENDIAN);
+            tag.putInt(ChunkType.START_TAG.getIntType())
+                    .putInt(TAG_HEADER_SIZE + (attributes.size() * ATTRIBUTE_SIZE))
+                    .putInt(lineNumber)
+                    .putInt(remap(in.getInt(position + 12)))
+                    .putInt(remap(in.getInt(position + 16)))
+                    .putInt(remap(in.getInt(position + 20)))
+                    .putInt(in.getInt(position + 24))
+                    .putShort((short) attributes.size())
+                    .putShort((short) specialAttributes[0])
+                    .putShort((short) specialAttributes[1])
+                    .putShort((short) specialAttributes[2]);
+            for (int[] record : attributes) {
+                tag.putInt(record[0]).putInt(record[1]).putInt(record[2]).putInt(record[3]).putInt(record[4]);
+            }
+
+            for (int i = 0; i < addedChildren; i++) {
+                int[] indexes = resolvedAdditions.get(children.get(i));
+                tag.putInt(ChunkType.START_TAG.getIntType())
+                        .putInt(TAG_HEADER_SIZE + ATTRIBUTE_SIZE)
+                        .putInt(lineNumber)
+                        .putInt(NO_INDEX)
+                        .putInt(NO_INDEX)
+                        .putInt(indexes[2])
+                        .putInt(ATTRIBUTE_LAYOUT)
+                        .putInt(1)
+                        .putInt(0)
+                        .putInt(indexes[1])
+                        .putInt(indexes[0])
+                        .putInt(indexes[3])
+                        .putInt((TypedValue.TYPE_STRING << 24) | RES_VALUE_SIZE)
+                        .putInt(indexes[3]);
+                tag.putInt(ChunkType.END_TAG.getIntType())
+                        .putInt(END_TAG_SIZE)
+                        .putInt(lineNumber)
+                        .putInt(NO_INDEX)
+                        .putInt(NO_INDEX)
+                        .putInt(indexes[2]);
+            }
+            return tag.array();
+        }
+
+        /**
+         * Apply one edit to the attribute records of a start tag, keeping the attributes with a resource id in id order
+         * as aapt writes them.
+         */
+        private void applyEdit(List<int[]> attributes, AttributeEdit edit, int[] specialAttributes) {
+            int found = NO_INDEX;
+            for (int i = 0; i < attributes.size() && found == NO_INDEX; i++) {
+                int name = attributes.get(i)[1];
+                if ((edit.resourceId != 0 && getNewResourceId(name) == edit.resourceId) ||
+                        edit.name.equals(getNewString(name))) {
+                    found = i;
+                }
+            }
+
+            if (edit.remove) {
+                if (found != NO_INDEX) {
+                    attributes.remove(found);
+                    for (int i = 0; i < specialAttributes.length; i++) {
+                        if (specialAttributes[i] == found + 1) {
+                            specialAttributes[i] = 0;
+                        } else if (specialAttributes[i] > found + 1) {
+                            specialAttributes[i]--;
+                        }
+                    }
+                }
+                return;
+            }
+
+            int[] indexes = resolved.get(edit);
+            int[] record;
+            if (edit.dataType == TypedValue.TYPE_STRING) {
+                record = new int[]{indexes[1], indexes[0], indexes[2], (TypedValue.TYPE_STRING << 24) | RES_VALUE_SIZE,
+                        indexes[2]};
+            } else {
+                record = new int[]{indexes[1], indexes[0], NO_INDEX, (edit.dataType << 24) | RES_VALUE_SIZE, edit.data};
+            }
+
+            if (found != NO_INDEX) {
+                // Keep the namespace and name the attribute already had, only its value changes
+                int[] existing = attributes.get(found);
+                existing[2] = record[2];
+                existing[3] = record[3];
+                existing[4] = record[4];
+                return;
+            }
+
+            int position = attributes.size();
+            if (edit.resourceId != 0) {
+                for (int i = 0; i < attributes.size(); i++) {
+                    int resourceId = getNewResourceId(attributes.get(i)[1]);
+                    if (resourceId == 0 || Integer.compareUnsigned(resourceId, edit.resourceId) > 0) {
+                        position = i;
+                        break;
+                    }
+                }
+            }
+            attributes.add(position, record);
+            for (int i = 0; i < specialAttributes.length; i++) {
+                if (specialAttributes[i] > position) {
+                    specialAttributes[i]++;
+                }
+            }
+        }
+
+        /**
+         * The string pool with the inserted and appended strings, the original string data left as it was.
+         */
+        private void buildPool() {
+            if (insertedNames.isEmpty() && appended.isEmpty()) {
+                newPool = Arrays.copyOfRange(input, 8, 8 + poolSize);
+                return;
+            }
+
+            int stringsStart = in.getInt(28);
+            int stylesStart = in.getInt(32);
+            int dataStart = 8 + stringsStart;
+            int dataEnd = 8 + (((styleCount > 0) && (stylesStart != 0)) ? stylesStart : poolSize);
+
+            ByteArrayOutputStream addedData = new ByteArrayOutputStream();
+            int mapped = getMappedCount();
+            int count = stringCount + insertedNames.size() + appended.size();
+            int[] offsets = new int[count];
+            for (int i = 0; i < stringCount; i++) {
+                offsets[remap(i)] = in.getInt(8 + POOL_HEADER_SIZE + (i * 4));
+            }
+            for (int i = 0; i < insertedNames.size(); i++) {
+                offsets[mapped + i] = (dataEnd - dataStart) + addedData.size();
+                encode(insertedNames.get(i), addedData);
+            }
+            for (int i = 0; i < appended.size(); i++) {
+                offsets[stringCount + insertedNames.size() + i] = (dataEnd - dataStart) + addedData.size();
+                encode(appended.get(i), addedData);
+            }
+
+            int dataSize = align((dataEnd - dataStart) + addedData.size());
+            int newStringsStart = POOL_HEADER_SIZE + (count * 4) + (styleCount * 4);
+            int styleDataSize = (styleCount > 0) ? (8 + poolSize) - dataEnd : 0;
+            int newSize = newStringsStart + dataSize + styleDataSize;
+
+            ByteBuffer buffer = ByteBuffer.allocate(newSize).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(ChunkType.STRING_SECTION.getIntType())
+                    .putInt(newSize)
+                    .putInt(count)
+                    .putInt(styleCount)
+                    .putInt(in.getInt(24))
+                    .putInt(newStringsStart)
+                    .putInt((styleCount > 0) ? newStringsStart + dataSize : 0);
+            for (int offset : offsets) {
+                buffer.putInt(offset);
+            }
+            for (int i = 0; i < styleCount; i++) {
+                buffer.putInt(in.getInt(8 + POOL_HEADER_SIZE + (stringCount * 4) + (i * 4)));
+            }
+            buffer.put(input, dataStart, dataEnd - dataStart);
+            buffer.put(addedData.toByteArray());
+            buffer.position(newStringsStart + dataSize);
+            if (styleDataSize > 0) {
+                buffer.put(input, dataEnd, styleDataSize);
+            }
+            newPool = buffer.array();
+        }
+
+        /**
+         * Encode a string the way aapt does: lengths, characters and a terminator.
+         */
+        private void encode(String value, ByteArrayOutputStream output) {
+            if (utf8) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeUtf8Length(value.length(), output);
+                writeUtf8Length(bytes.length, output);
+                output.write(bytes, 0, bytes.length);
+                output.write(0);
+            } else {
+                int length = value.length();
+                if (length > 0x7FFF) {
+                    writeShort(0x8000 | (length >>> 16), output);
+                }
+                writeShort(length, output);
+                for (int i = 0; i < length; i++) {
+                    writeShort(value.charAt(i), output);
+                }
+                writeShort(0, output);
+            }
+        }
+
+        private void writeUtf8Length(int length, ByteArrayOutputStream output) {
+            if (length > 0x7F) {
+                output.write(0x80 | ((length >>> 8) & 0x7F));
+            }
+            output.write(length & 0xFF);
+        }
+
+        private void writeShort(int value, ByteArrayOutputStream output) {
+            output.write(value & 0xFF);
+            output.write((value >>> 8) & 0xFF);
+        }
+
+        private int align(int size) {
+            return (size + 3) & ~3;
+        }
+
+        /**
+         * The resource map with the ids of the inserted names, which follow the mapped strings.
+         */
+        private void buildMap() {
+            if (insertedIds.isEmpty()) {
+                newMap = (mapOffset == NO_INDEX) ? new byte[0] : Arrays.copyOfRange(input, mapOffset, mapOffset + mapSize);
+                return;
+            }
+
+            int mapped = getMappedCount();
+            ByteBuffer buffer = ByteBuffer.allocate(8 + ((mapped + insertedIds.size()) * 4))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(ChunkType.RESOURCE_SECTION.getIntType()).putInt(buffer.capacity());
+            for (int i = 0; i < mapped; i++) {
+                buffer.putInt(resourceIds[i]);
+            }
+            for (int resourceId : insertedIds) {
+                buffer.putInt(resourceId);
+            }
+            newMap = buffer.array();
+        }
+
+        /**
+         * Write the document: the new header, pool and map, then the chunks, copied as they are unless replaced or,
+         * when strings were inserted, remapped.
+         */
+        void write(OutputStream output) throws IOException {
+            output.write(ByteBuffer.allocate(8)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(ChunkType.AXML_HEADER.getIntType())
+                    .putInt(outputSize)
+                    .array());
+            output.write(newPool);
+            output.write(newMap);
+
+            boolean remapping = !insertedNames.isEmpty();
+            byte[] scratch = new byte[0];
+            int replaced = 0;
+            int position = chunksStart;
+            while (position < input.length) {
+                if (replaced < replacedRanges.size() && replacedRanges.get(replaced)[0] == position) {
+                    output.write(replacements.get(replaced));
+                    position += replacedRanges.get(replaced)[1];
+                    replaced++;
+                    continue;
+                }
+
+                if (position + 8 > input.length) {
+                    // Trailing bytes which are not a chunk, keep them
+                    output.write(input, position, input.length - position);
+                    break;
+                }
+                int chunkSize = in.getInt(position + 4);
+                if (!remapping) {
+                    output.write(input, position, chunkSize);
+                } else {
+                    if (scratch.length < chunkSize) {
+                        scratch = new byte[Math.max(chunkSize, scratch.length * 2)];
+                    }
+                    System.arraycopy(input, position, scratch, 0, chunkSize);
+                    remapChunk(ByteBuffer.wrap(scratch, 0, chunkSize).order(ByteOrder.LITTLE_ENDIAN));
+                    output.write(scratch, 0, chunkSize);
+                }
+                position += chunkSize;
+            }
+        }
+
+        /**
+         * Rewrite the string indexes of a chunk copied from the input.
+         */
+        private void remapChunk(ByteBuffer chunk) {
+            int type = chunk.getInt(0);
+            int chunkSize = chunk.limit();
+            if (chunkSize < 24) {
+                return;
+            }
+            if (type == ChunkType.START_NAMESPACE.getIntType() || type == ChunkType.END_NAMESPACE.getIntType() ||
+                    type == ChunkType.START_TAG.getIntType() || type == ChunkType.END_TAG.getIntType() ||
+                    type == ChunkType.TEXT_TAG.getIntType()) {
+                // Comment and the two string indexes which follow it (prefix and uri, namespace and name, or text)
+                remapInt(chunk, 12);
+                remapInt(chunk, 16);
+                if (type != ChunkType.TEXT_TAG.getIntType()) {
+                    remapInt(chunk, 20);
+                } else if (chunkSize >= 28 && (chunk.get(23) & 0xFF) == TypedValue.TYPE_STRING) {
+                    remapInt(chunk, 24);
+                }
+            }
+            if (type == ChunkType.START_TAG.getIntType() && chunkSize >= TAG_HEADER_SIZE) {
+                int count = chunk.getShort(28) & 0xFFFF;
+                for (int i = 0; i < count; i++) {
+                    int attribute = TAG_HEADER_SIZE + (i * ATTRIBUTE_SIZE);
+                    if (attribute + ATTRIBUTE_SIZE > chunkSize) {
+                        break;
+                    }
+                    remapInt(chunk, attribute);
+                    remapInt(chunk, attribute + 4);
+                    remapInt(chunk, attribute + 8);
+                    if ((chunk.get(attribute + 15) & 0xFF) == TypedValue.TYPE_STRING) {
+                        remapInt(chunk, attribute + 16);
+                    }
+                }
+            }
+        }
+
+        private void remapInt(ByteBuffer chunk, int offset) {
+            chunk.putInt(offset, remap(chunk.getInt(offset)));
+        }
+    }
+}
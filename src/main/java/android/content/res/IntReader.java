@@ -37,6 +37,15 @@ public class IntReader {
     private boolean bigEndian;
     private int bytesRead;
 
+    // Set by whoever knows the input, null when nothing is to be enforced
+    private ParseLimits limits;
+    // Set with the limits, but kept without them too since it is what a chunk size can be checked against
+    private int inputLength;
+    private long decodedBytes;
+    private AnomalyListener anomalyListener;
+    // String pools with at least this many strings are decoded in parallel
+    private int parallelThreshold = Integer.MAX_VALUE;
+
 	private static final Logger LOGGER = Logger.getLogger(IntReader.class.getName());
 
     public IntReader(InputStream stream, boolean bigEndian) {
@@ -50,9 +59,115 @@ public class IntReader {
      * @param isBigEndian a boolean for whether or not the stream is in Big Endian format
      */
     public void reset(InputStream newStream, boolean isBigEndian) {
+        reset(newStream, isBigEndian, 0);
+    }
+
+    /**
+     * Reset the POJO to use a stream which starts part way into the input, so that the chunks read from it still
+     * report their offsets in the whole input.
+     *
+     * @param newStream   the {@code InputStream} to use
+     * @param isBigEndian a boolean for whether or not the stream is in Big Endian format
+     * @param position    offset in the input of the first byte of the stream
+     */
+    public void reset(InputStream newStream, boolean isBigEndian, int position) {
         stream = newStream;
         bigEndian = isBigEndian;
-        bytesRead = 0;
+        bytesRead = position;
+        decodedBytes = 0;
+    }
+
+    /**
+     * Have the chunks read from this reader check their headers against the limits and the length of the input. The
+     * length is used even without limits, to decide whether what a header claims can be read into memory up front.
+     *
+     * @param newLimits the limits, null to enforce none
+     * @param length    number of bytes in the input
+     */
+    public void setLimits(ParseLimits newLimits, int length) {
+        limits = newLimits;
+        inputLength = length;
+    }
+
+    /**
+     * @return the limits to enforce, or null if there are none
+     */
+    public ParseLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * @return number of bytes in the input left to read, as far as the length given with the limits goes
+     */
+    public long getRemaining() {
+        return (long) inputLength - bytesRead;
+    }
+
+    /**
+     * Create a reader over bytes about to be read ahead from this one, which counts its bytes from where this reader
+     * is now and enforces the same limits, reports to the same listener and uses the same threshold, so the chunks
+     * read from it fail and report exactly as they would reading from this one.
+     *
+     * @param newStream the bytes which follow the current position of this reader
+     * @return the reader
+     */
+    public IntReader fork(InputStream newStream) {
+        IntReader reader = new IntReader(newStream, bigEndian);
+        reader.bytesRead = bytesRead;
+        reader.limits = limits;
+        reader.inputLength = inputLength;
+        reader.anomalyListener = anomalyListener;
+        reader.parallelThreshold = parallelThreshold;
+        return reader;
+    }
+
+    /**
+     * @param minimumStrings pool size from which the string sections read from this reader decode their strings in
+     *                       parallel, {@link Integer#MAX_VALUE} (the default) to always decode serially
+     */
+    public void setParallelThreshold(int minimumStrings) {
+        parallelThreshold = minimumStrings;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * @param listener receives the anomalies found by the chunks read from this reader, null to ignore them
+     */
+    public void setAnomalyListener(AnomalyListener listener) {
+        anomalyListener = listener;
+    }
+
+    public AnomalyListener getAnomalyListener() {
+        return anomalyListener;
+    }
+
+    /**
+     * Pass an anomaly on to the listener, if there is one.
+     *
+     * @param kind
+     * @param offset byte offset of the chunk it was found in
+     * @param value  detail depending on the kind
+     */
+    public void reportAnomaly(AnomalyListener.Kind kind, int offset, int value) {
+        if (anomalyListener != null) {
+            anomalyListener.onAnomaly(kind, offset, value);
+        }
+    }
+
+    /**
+     * Account for string data about to be decoded, failing when the total goes over the limits.
+     *
+     * @param bytes decoded size of the next string
+     * @throws ParseLimitException
+     */
+    public void addDecodedBytes(long bytes) throws ParseLimitException {
+        decodedBytes += bytes;
+        if (limits != null) {
+            limits.checkDecodedBytes(decodedBytes);
+        }
     }
 
     /**
@@ -137,6 +252,30 @@ public class IntReader {
         skip(INT_LENGTH);
     }
 
+    /**
+     * Read the next bytes of the stream as they are.
+     *
+     * @param buffer to fill
+     * @param offset in the buffer
+     * @param length number of bytes to read
+     * @throws IOException
+     */
+    public void readFully(byte[] buffer, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = stream.read(buffer, offset + read, length - read);
+            if (count == -1) {
+                throw new EOFException();
+            }
+            read += count;
+            bytesRead += count;
+        }
+    }
+
+    public boolean isBigEndian() {
+        return bigEndian;
+    }
+
     public int getBytesRead() {
         return bytesRead;
     }
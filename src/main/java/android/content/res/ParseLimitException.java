@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res;
+
+import java.io.IOException;
+
+/**
+ * Thrown as soon as a document asks for more than its {@link ParseLimits} allow. Unlike other read errors this is
+ * never swallowed by the chunk readers, so a hostile sample is rejected before it can allocate anything large.
+ *
+ * @author tstrazzere
+ */
+public class ParseLimitException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String limit;
+    private final long value;
+    private final long maximum;
+
+    /**
+     * @param limit   what was being limited, e.g. "string pool entries"
+     * @param value   what the document asked for
+     * @param maximum what the limits, or the input itself, allow
+     */
+    public ParseLimitException(String limit, long value, long maximum) {
+        super(String.format("%s: %d exceeds the limit of %d", limit, value, maximum));
+        this.limit = limit;
+        this.value = value;
+        this.maximum = maximum;
+    }
+
+    public String getLimit() {
+        return limit;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+}
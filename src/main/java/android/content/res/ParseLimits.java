@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res;
+
+/**
+ * Upper bounds on what an AXML document may ask the parser for, checked as the chunk headers are read and against the
+ * real length of the input, so lying counts and sizes fail with a {@link ParseLimitException} before anything is
+ * allocated or skipped for them.
+ * <p>
+ * Limits are a hardened mode which has to be asked for, see {@link AXMLResource#setLimits(ParseLimits)}. As a chunk
+ * cut short by the end of the input cannot be told apart from one lying about its size, a truncated document fails
+ * under any limits, {@link #UNLIMITED} included, where the default best effort read decodes what there is.
+ * <p>
+ * Instances are immutable and can be shared between threads, use the with methods to derive a changed copy.
+ *
+ * @author tstrazzere
+ */
+public final class ParseLimits {
+
+    /**
+     * Generous bounds which no legitimate resource comes near.
+     */
+    public static final ParseLimits DEFAULT = new ParseLimits(32 * 1024 * 1024, 1 << 20, 4096, 4096,
+            256L * 1024 * 1024);
+
+    /**
+     * Only the length of the input is enforced, which still rejects truncated documents.
+     */
+    public static final ParseLimits UNLIMITED = new ParseLimits(Integer.MAX_VALUE, Integer.MAX_VALUE,
+            Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    private final int maxChunkSize;
+    private final int maxPoolEntries;
+    private final int maxAttributes;
+    private final int maxDepth;
+    private final long maxDecodedBytes;
+
+    /**
+     * @param maxChunkSize    largest size in bytes of any chunk but the file header
+     * @param maxPoolEntries  most entries of a string or style pool, or of the resource id section
+     * @param maxAttributes   most attributes on one start tag
+     * @param maxDepth        deepest element nesting
+     * @param maxDecodedBytes most bytes of string data decoded for the whole document, counted as two per character
+     */
+    public ParseLimits(int maxChunkSize, int maxPoolEntries, int maxAttributes, int maxDepth, long maxDecodedBytes) {
+        this.maxChunkSize = maxChunkSize;
+        this.maxPoolEntries = maxPoolEntries;
+        this.maxAttributes = maxAttributes;
+        this.maxDepth = maxDepth;
+        this.maxDecodedBytes = maxDecodedBytes;
+    }
+
+    public ParseLimits withMaxChunkSize(int maxChunkSize) {
+        return new ParseLimits(maxChunkSize, maxPoolEntries, maxAttributes, maxDepth, maxDecodedBytes);
+    }
+
+    public ParseLimits withMaxPoolEntries(int maxPoolEntries) {
+        return new ParseLimits(maxChunkSize, maxPoolEntries, maxAttributes, maxDepth, maxDecodedBytes);
+    }
+
+    public ParseLimits withMaxAttributes(int maxAttributes) {
+        return new ParseLimits(maxChunkSize, maxPoolEntries, maxAttributes, maxDepth, maxDecodedBytes);
+    }
+
+    public ParseLimits withMaxDepth(int maxDepth) {
+        return new ParseLimits(maxChunkSize, maxPoolEntries, maxAttributes, maxDepth, maxDecodedBytes);
+    }
+
+    public ParseLimits withMaxDecodedBytes(long maxDecodedBytes) {
+        return new ParseLimits(maxChunkSize, maxPoolEntries, maxAttributes, maxDepth, maxDecodedBytes);
+    }
+
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    public int getMaxPoolEntries() {
+        return maxPoolEntries;
+    }
+
+    public int getMaxAttributes() {
+        return maxAttributes;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getMaxDecodedBytes() {
+        return maxDecodedBytes;
+    }
+
+    /**
+     * @param size      size the chunk header claims, including the type and size words
+     * @param available bytes of input from the start of the chunk
+     */
+    public void checkChunkSize(int size, long available) throws ParseLimitException {
+        if (size < 8) {
+            throw new ParseLimitException("chunk size below its header", size, 8);
+        }
+        check("chunk size", size, maxChunkSize);
+        check("chunk size against the input", size, available);
+    }
+
+    /**
+     * @param entries   number of entries the header claims
+     * @param entrySize bytes each entry takes in the input
+     * @param available bytes of the chunk left to hold them
+     */
+    public void checkPoolEntries(int entries, int entrySize, long available) throws ParseLimitException {
+        check("pool entries", entries, maxPoolEntries);
+        check("pool entries against the chunk", (long) entries * entrySize, available);
+    }
+
+    /**
+     * @param attributes number of attributes the start tag claims
+     * @param available  bytes of input left to hold them
+     */
+    public void checkAttributes(int attributes, long available) throws ParseLimitException {
+        check("attributes", attributes, maxAttributes);
+        check("attributes against the input", (long) attributes * 20, available);
+    }
+
+    public void checkDepth(int depth) throws ParseLimitException {
+        check("element depth", depth, maxDepth);
+    }
+
+    public void checkDecodedBytes(long decodedBytes) throws ParseLimitException {
+        check("decoded bytes", decodedBytes, maxDecodedBytes);
+    }
+
+    private static void check(String limit, long value, long maximum) throws ParseLimitException {
+        if (value < 0 || value > maximum) {
+            throw new ParseLimitException(limit, value, maximum);
+        }
+    }
+}
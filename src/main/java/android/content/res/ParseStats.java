@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res;
+
+import android.content.res.chunk.ChunkType;
+import android.content.res.chunk.sections.StringSection;
+import android.content.res.metrics.Phase;
+
+/**
+ * What reading one AXML document found out about its size and shape, see {@link AXMLResource#getParseStats()}.
+ *
+ * @author tstrazzere
+ */
+public final class ParseStats {
+
+    private static final ChunkType[] CHUNK_TYPES = ChunkType.values();
+
+    private final boolean complete;
+    private final long bytesRead;
+    private final int headerSize;
+    private final int[] chunkCounts;
+    private final int stringCount;
+    private final int stringsDecoded;
+    private final boolean utf8;
+    private final int maxDepth;
+    private final long[] phaseNanos;
+
+    ParseStats(boolean complete, long bytesRead, int headerSize, int[] chunkCounts, StringSection stringSection,
+               int maxDepth, long[] phaseNanos) {
+        this.complete = complete;
+        this.bytesRead = bytesRead;
+        this.headerSize = headerSize;
+        this.chunkCounts = chunkCounts.clone();
+        this.stringCount = (stringSection != null) ? stringSection.getStringCount() : 0;
+        this.stringsDecoded = (stringSection != null) ? stringSection.getDecodedCount() : 0;
+        this.utf8 = (stringSection != null) && stringSection.isUTF8();
+        this.maxDepth = maxDepth;
+        this.phaseNanos = phaseNanos.clone();
+    }
+
+    /**
+     * @return true if the header and both sections were found
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return bytes of input consumed
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the size the file header claims, which obfuscated files get wrong, -1 if there was no header
+     */
+    public int getHeaderSize() {
+        return headerSize;
+    }
+
+    public int getChunkCount(ChunkType type) {
+        return chunkCounts[type.ordinal()];
+    }
+
+    /**
+     * @return all chunks read, including the header, the sections and padding
+     */
+    public int getTotalChunkCount() {
+        int total = 0;
+        for (int count : chunkCounts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return entries of the string pool
+     */
+    public int getStringCount() {
+        return stringCount;
+    }
+
+    /**
+     * @return entries of the string pool which were decoded
+     */
+    public int getStringsDecoded() {
+        return stringsDecoded;
+    }
+
+    /**
+     * @return true if the string pool is UTF-8 rather than UTF-16
+     */
+    public boolean isUTF8() {
+        return utf8;
+    }
+
+    /**
+     * @return deepest element nesting
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @param phase one of the reading phases, the others are always 0
+     * @return time spent in the phase
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return time spent in all phases
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("ParseStats{complete=").append(complete)
+                .append(", bytesRead=").append(bytesRead)
+                .append(", headerSize=").append(headerSize)
+                .append(", strings=").append(stringsDecoded).append('/').append(stringCount)
+                .append(utf8 ? " utf8" : " utf16")
+                .append(", maxDepth=").append(maxDepth)
+                .append(", nanos={");
+        boolean first = true;
+        for (Phase phase : Phase.values()) {
+            if (phaseNanos[phase.ordinal()] > 0) {
+                builder.append(first ? "" : ", ").append(phase).append('=').append(phaseNanos[phase.ordinal()]);
+                first = false;
+            }
+        }
+        builder.append("}, chunks={");
+        first = true;
+        for (int i = 0; i < chunkCounts.length; i++) {
+            if (chunkCounts[i] > 0) {
+                builder.append(first ? "" : ", ").append(CHUNK_TYPES[i]).append('=').append(chunkCounts[i]);
+                first = false;
+            }
+        }
+        return builder.append("}}").toString();
+    }
+}
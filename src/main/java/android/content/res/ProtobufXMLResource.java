@@ -15,6 +15,11 @@
  */
 package android.content.res;
 
+import android.content.res.chunk.TypedValue;
+import android.content.res.xml.FrameStack;
+import android.content.res.xml.XmlEventHandler;
+import android.content.res.xml.XmlEventSource;
+import android.content.res.xml.XmlSerializer;
 import com.android.aapt.Resources.XmlNode;
 import com.android.aapt.Resources.XmlElement;
 import com.android.aapt.Resources.XmlAttribute;
@@ -22,12 +27,11 @@ import com.android.aapt.Resources.XmlNamespace;
 import com.android.aapt.Resources.Item;
 import com.android.aapt.Resources.Primitive;
 import com.android.aapt.Resources.Reference;
+import com.android.aapt.Resources.Reference_Type;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
+import java.util.List;
 
 /**
  * Parser for Protocol Buffers format Android XML files.
@@ -35,7 +39,7 @@ import java.util.Stack;
  *
  * @author tstrazzere
  */
-public class ProtobufXMLResource {
+public class ProtobufXMLResource implements XmlEventSource {
 
     private XmlNode rootNode;
 
@@ -64,170 +68,156 @@ public class ProtobufXMLResource {
     }
 
     public void print() {
-        System.out.println(toXML());
+        XmlSerializer.print(this, System.out);
     }
 
     public String toXML() {
+        return XmlSerializer.toXML(this);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see android.content.res.xml.XmlEventSource#accept(android.content.res.xml.XmlEventHandler)
+     */
+    @Override
+    public void accept(XmlEventHandler handler) throws IOException {
         if (rootNode == null) {
             throw new IllegalStateException("Cannot generate XML: root node is null. Call read() first.");
         }
-        StringBuilder sb = new StringBuilder();
-        sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+        handler.startDocument();
 
         if (rootNode.hasElement()) {
-            // Use a stack to track namespace scopes
-            Stack<Map<String, String>> namespaceStack = new Stack<>();
-            namespaceStack.push(new HashMap<>());
-            elementToXML(rootNode.getElement(), sb, 0, true, namespaceStack);
+            // Walk the tree with an explicit stack, so deeply nested documents cannot overflow the thread stack
+            FrameStack<ElementFrame> stack = new FrameStack<ElementFrame>(ElementFrame::new);
+            startElement(rootNode, handler, null, stack);
+
+            while (!stack.isEmpty()) {
+                ElementFrame frame = stack.peek();
+                if (frame.nextChild == frame.children.size()) {
+                    stack.pop();
+                    endElement(frame, handler);
+                    continue;
+                }
+
+                XmlNode child = frame.children.get(frame.nextChild++);
+                if (child == null) {
+                    continue;
+                }
+                if (child.hasElement()) {
+                    startElement(child, handler, frame.namespaces, stack);
+                } else if (child.getText() != null && !child.getText().isEmpty()) {
+                    handler.text(child.getText(), getLineNumber(child));
+                }
+            }
         }
-        
-        return sb.toString();
+
+        handler.endDocument();
     }
 
-    private void elementToXML(XmlElement element, StringBuilder sb, int indent, boolean isRoot, 
-                               Stack<Map<String, String>> namespaceStack) {
+    /**
+     * Emit the start of an element and its attributes, then push it so its children are visited next.
+     *
+     * @param parentScope the namespaces in scope of the parent element, null at the root
+     */
+    private void startElement(XmlNode node, XmlEventHandler handler, NamespaceScope parentScope,
+                              FrameStack<ElementFrame> stack) throws IOException {
+        XmlElement element = node.getElement();
         if (element == null) {
             throw new IllegalArgumentException("XmlElement cannot be null");
         }
 
-        String indentStr = getIndent(indent);
-        sb.append(indentStr).append("<");
-
-        // Push new namespace scope for this element
-        Map<String, String> currentNamespaces = new HashMap<>(namespaceStack.peek());
-        namespaceStack.push(currentNamespaces);
-        
-        // Handle namespace prefix
-        String prefix = getPrefix(element.getNamespaceUri(), currentNamespaces);
-        if (prefix != null && !prefix.isEmpty()) {
-            sb.append(prefix).append(":");
-        }
-        sb.append(element.getName() != null ? element.getName() : "");
-
-        // Collect namespace declarations - only output if they're new to this scope
-        boolean hasNewNamespaces = false;
+        // Extend the scope with this element's declarations - only declare if they're new to this scope. Without
+        // declarations the element shares its parent's scope as is.
+        NamespaceScope currentNamespaces = parentScope;
         for (XmlNamespace ns : element.getNamespaceDeclarationList()) {
             String nsUri = ns.getUri();
-            String nsPrefix = ns.getPrefix();
-
-            // Only declare if not already in current scope
-            if (!currentNamespaces.containsKey(nsUri)) {
-                currentNamespaces.put(nsUri, nsPrefix);
-                hasNewNamespaces = true;
-                sb.append("\n").append(indentStr).append("\t");
-                sb.append("xmlns");
-                if (nsPrefix != null && !nsPrefix.isEmpty()) {
-                    sb.append(":").append(nsPrefix);
-                }
-                sb.append("=\"").append(escapeXml(nsUri)).append("\"");
+            if (NamespaceScope.lookup(currentNamespaces, nsUri) == null) {
+                currentNamespaces = new NamespaceScope(nsUri, ns.getPrefix(), currentNamespaces);
+                handler.startNamespace(ns.getPrefix(), nsUri);
             }
         }
 
+        String prefix = getPrefix(element.getNamespaceUri(), currentNamespaces);
+        handler.startElement(element.getNamespaceUri(), prefix, element.getName(), getLineNumber(node));
+
         // Handle attributes
         for (XmlAttribute attr : element.getAttributeList()) {
             if (attr == null) {
                 continue;
             }
-            sb.append("\n").append(indentStr).append("\t");
-
-            String attrPrefix = getPrefix(attr.getNamespaceUri(), currentNamespaces);
-            if (attrPrefix != null && !attrPrefix.isEmpty()) {
-                sb.append(attrPrefix).append(":");
-            }
-            String attrName = attr.getName();
-            if (attrName == null) {
-                attrName = "";
-            }
-            sb.append(attrName).append("=\"");
-            sb.append(escapeXml(getAttributeValue(attr)));
-            sb.append("\"");
+            attributeToEvent(attr, handler, currentNamespaces);
         }
 
-        // Handle children
-        if (element.getChildCount() == 0) {
-            sb.append(" />\n");
-        } else {
-            sb.append(">\n");
+        ElementFrame frame = stack.push();
+        frame.element = element;
+        frame.prefix = prefix;
+        frame.parentNamespaces = parentScope;
+        frame.namespaces = currentNamespaces;
+        frame.children = element.getChildList();
+        frame.nextChild = 0;
+    }
 
-            for (XmlNode child : element.getChildList()) {
-                if (child == null) {
-                    continue;
-                }
-                if (child.hasElement()) {
-                    elementToXML(child.getElement(), sb, indent + 1, false, namespaceStack);
-                } else if (child.getText() != null && !child.getText().isEmpty()) {
-                    sb.append(getIndent(indent + 1));
-                    sb.append(escapeXml(child.getText()));
-                    sb.append("\n");
-                }
-            }
+    private void endElement(ElementFrame frame, XmlEventHandler handler) throws IOException {
+        handler.endElement(frame.element.getNamespaceUri(), frame.prefix, frame.element.getName());
 
-            sb.append(indentStr).append("</");
-            if (prefix != null && !prefix.isEmpty()) {
-                sb.append(prefix).append(":");
-            }
-            String elementName = element.getName();
-            if (elementName == null) {
-                elementName = "";
-            }
-            sb.append(elementName).append(">\n");
+        // Close the declarations this element added, nothing to pop as the parent still holds its own scope
+        for (NamespaceScope scope = frame.namespaces; scope != frame.parentNamespaces; scope = scope.parent) {
+            handler.endNamespace(scope.prefix, scope.uri);
         }
-
-        // Pop namespace scope when done with this element
-        namespaceStack.pop();
     }
 
-    private String getAttributeValue(XmlAttribute attr) {
-        if (attr == null) {
-            return "";
-        }
+    private void attributeToEvent(XmlAttribute attr, XmlEventHandler handler, NamespaceScope namespaces)
+            throws IOException {
+        int dataType = TypedValue.TYPE_STRING;
+        int data = 0;
+        // Fall back to string value
+        String rawValue = attr.getValue() != null ? attr.getValue() : "";
 
         // Check if there's a compiled value
         if (attr.hasCompiledItem()) {
             Item item = attr.getCompiledItem();
-            if (item == null) {
-                return attr.getValue() != null ? attr.getValue() : "";
-            }
-
             if (item.hasRef()) {
                 Reference ref = item.getRef();
-                if (ref == null) {
-                    return attr.getValue() != null ? attr.getValue() : "";
-                }
+
+                int referenceType = (ref.getType() == Reference_Type.ATTRIBUTE) ?
+                        TypedValue.TYPE_ATTRIBUTE : TypedValue.TYPE_REFERENCE;
 
                 // Prefer name over ID if available
                 String refName = ref.getName();
                 if (refName != null && !refName.isEmpty()) {
-                    return "@" + refName;
+                    dataType = referenceType;
+                    data = ref.getId();
+                    rawValue = refName;
                 } else if (ref.getId() != 0) {
-                    // Try to resolve common Android resource IDs
-                    String resolvedName = resolveResourceId(ref.getId());
-                    if (resolvedName != null) {
-                        return "@" + resolvedName;
-                    }
-                    return String.format("@0x%08x", ref.getId());
+                    // Try to resolve common Android resource IDs, otherwise the id itself is printed
+                    dataType = referenceType;
+                    data = ref.getId();
+                    rawValue = resolveResourceId(ref.getId());
                 }
             } else if (item.hasPrim()) {
                 Primitive prim = item.getPrim();
-                if (prim != null) {
-                    return formatPrimitive(prim);
-                }
+                dataType = getPrimitiveType(prim);
+                data = getPrimitiveData(prim);
+                rawValue = null;
             } else if (item.hasStr()) {
-                com.android.aapt.Resources.String str = item.getStr();
-                if (str != null && str.getValue() != null) {
-                    return str.getValue();
+                if (item.getStr().getValue() != null) {
+                    rawValue = item.getStr().getValue();
                 }
             } else if (item.hasRawStr()) {
-                com.android.aapt.Resources.RawString rawStr = item.getRawStr();
-                if (rawStr != null && rawStr.getValue() != null) {
-                    return rawStr.getValue();
+                if (item.getRawStr().getValue() != null) {
+                    rawValue = item.getRawStr().getValue();
                 }
             }
         }
 
-        // Fall back to string value
-        String value = attr.getValue();
-        return value != null ? value : "";
+        handler.attribute(attr.getNamespaceUri(),
+                getPrefix(attr.getNamespaceUri(), namespaces),
+                attr.getName() != null ? attr.getName() : "",
+                attr.getResourceId(),
+                dataType,
+                data,
+                rawValue);
     }
 
     /**
@@ -275,122 +265,114 @@ public class ProtobufXMLResource {
         }
     }
 
-    private String formatPrimitive(Primitive prim) {
-        if (prim == null) {
-            return "";
-        }
-
+    /**
+     * Map a protobuf primitive onto the equivalent Res_value data type.
+     */
+    private static int getPrimitiveType(Primitive prim) {
         if (prim.hasIntDecimalValue()) {
-            return String.valueOf(prim.getIntDecimalValue());
+            return TypedValue.TYPE_INT_DEC;
         } else if (prim.hasIntHexadecimalValue()) {
-            return String.format("0x%x", prim.getIntHexadecimalValue());
+            return TypedValue.TYPE_INT_HEX;
         } else if (prim.hasBooleanValue()) {
-            return prim.getBooleanValue() != 0 ? "true" : "false";
+            return TypedValue.TYPE_INT_BOOLEAN;
         } else if (prim.hasFloatValue()) {
-            return String.valueOf(prim.getFloatValue());
+            return TypedValue.TYPE_FLOAT;
         } else if (prim.hasColorArgb8Value()) {
-            return String.format("#%08x", prim.getColorArgb8Value());
+            return TypedValue.TYPE_INT_COLOR_ARGB8;
         } else if (prim.hasColorRgb8Value()) {
-            return String.format("#%06x", prim.getColorRgb8Value());
+            return TypedValue.TYPE_INT_COLOR_RGB8;
         } else if (prim.hasColorArgb4Value()) {
-            return String.format("#%04x", prim.getColorArgb4Value());
+            return TypedValue.TYPE_INT_COLOR_ARGB4;
         } else if (prim.hasColorRgb4Value()) {
-            return String.format("#%03x", prim.getColorRgb4Value());
+            return TypedValue.TYPE_INT_COLOR_RGB4;
         } else if (prim.hasDimensionValue()) {
-            return formatDimension(prim.getDimensionValue());
+            return TypedValue.TYPE_DIMENSION;
         } else if (prim.hasFractionValue()) {
-            return formatFraction(prim.getFractionValue());
-        } else if (prim.hasNullValue()) {
-            return "";
-        } else if (prim.hasEmptyValue()) {
-            return "";
+            return TypedValue.TYPE_FRACTION;
         }
-        return "";
+        // Null and empty values print as nothing
+        return TypedValue.TYPE_NULL;
     }
 
-    private String formatDimension(int value) {
-        // Android dimension encoding: value is in the form (value << 8) | unit
-        float floatValue = complexToFloat(value);
-        int unit = value & 0xf;
-
-        // Validate unit is within expected range (0-5 for standard units)
-        String[] units = {"px", "dp", "sp", "pt", "in", "mm"};
-        String unitStr;
-        if (unit >= 0 && unit < units.length) {
-            unitStr = units[unit];
-        } else {
-            // Invalid unit, default to px but log a warning
-            unitStr = "px";
-            // Note: In a production environment, you might want to log this
-        }
-
-        if (floatValue == (int) floatValue) {
-            return String.format("%d%s", (int) floatValue, unitStr);
-        }
-        return String.format("%s%s", floatValue, unitStr);
-    }
-
-    private String formatFraction(int value) {
-        float floatValue = complexToFloat(value);
-        int type = (value >> 4) & 0x3;
-
-        if (type == 0) {
-            return String.format("%.2f%%", floatValue * 100);
-        } else {
-            return String.format("%.2f%%p", floatValue * 100);
+    /**
+     * @return the Res_value data word for a protobuf primitive
+     */
+    private static int getPrimitiveData(Primitive prim) {
+        if (prim.hasIntDecimalValue()) {
+            return prim.getIntDecimalValue();
+        } else if (prim.hasIntHexadecimalValue()) {
+            return prim.getIntHexadecimalValue();
+        } else if (prim.hasBooleanValue()) {
+            return prim.getBooleanValue();
+        } else if (prim.hasFloatValue()) {
+            return Float.floatToRawIntBits(prim.getFloatValue());
+        } else if (prim.hasColorArgb8Value()) {
+            return prim.getColorArgb8Value();
+        } else if (prim.hasColorRgb8Value()) {
+            return prim.getColorRgb8Value();
+        } else if (prim.hasColorArgb4Value()) {
+            return prim.getColorArgb4Value();
+        } else if (prim.hasColorRgb4Value()) {
+            return prim.getColorRgb4Value();
+        } else if (prim.hasDimensionValue()) {
+            return prim.getDimensionValue();
+        } else if (prim.hasFractionValue()) {
+            return prim.getFractionValue();
         }
+        return 0;
     }
 
-    private float complexToFloat(int complex) {
-        int mantissa = (complex >> 8) & 0xffffff;
-        int radix = (complex >> 4) & 0x3;
-
-        float value = mantissa;
-        switch (radix) {
-            case 0: // 23p0
-                break;
-            case 1: // 16p7
-                value /= (1 << 7);
-                break;
-            case 2: // 8p15
-                value /= (1 << 15);
-                break;
-            case 3: // 0p23
-                value /= (1 << 23);
-                break;
-        }
-
-        return value;
+    private static int getLineNumber(XmlNode node) {
+        return node.hasSource() ? node.getSource().getLineNumber() : -1;
     }
 
-    private String getPrefix(String namespaceUri, Map<String, String> namespaceMap) {
+    private String getPrefix(String namespaceUri, NamespaceScope namespaces) {
         if (namespaceUri == null || namespaceUri.isEmpty()) {
             return "";
         }
-        if (namespaceMap == null) {
-            return "";
-        }
-        return namespaceMap.getOrDefault(namespaceUri, "");
+        String prefix = NamespaceScope.lookup(namespaces, namespaceUri);
+        return (prefix != null) ? prefix : "";
     }
 
-    private String getIndent(int level) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < level; i++) {
-            sb.append("\t");
-        }
-        return sb.toString();
+    /**
+     * An open element during {@link #accept(XmlEventHandler)}, with the index of the next child to visit.
+     */
+    private static final class ElementFrame {
+        XmlElement element;
+        String prefix;
+        NamespaceScope parentNamespaces;
+        NamespaceScope namespaces;
+        List<XmlNode> children;
+        int nextChild;
     }
 
-    private String escapeXml(String value) {
-        if (value == null) {
-            return "";
+    /**
+     * One namespace declaration, linked to the declarations in scope before it. Frames are never modified, so an
+     * element which declares nothing simply shares its parent's chain and leaving an element means going back to the
+     * parent's frame, without copying or popping anything.
+     */
+    private static final class NamespaceScope {
+        final String uri;
+        final String prefix;
+        final NamespaceScope parent;
+
+        NamespaceScope(String uri, String prefix, NamespaceScope parent) {
+            this.uri = uri;
+            this.prefix = prefix;
+            this.parent = parent;
+        }
+
+        /**
+         * @return the prefix of the innermost declaration of the uri, or null if it is not in scope
+         */
+        static String lookup(NamespaceScope scope, String uri) {
+            for (; scope != null; scope = scope.parent) {
+                if (scope.uri.equals(uri)) {
+                    return scope.prefix;
+                }
+            }
+            return null;
         }
-        return value
-                .replace("&", "&amp;")
-                .replace("<", "&lt;")
-                .replace(">", "&gt;")
-                .replace("\"", "&quot;")
-                .replace("'", "&apos;");
     }
 
     /**
@@ -0,0 +1,337 @@
+/* 
+ * Copyright 2015-2025 Red Naga
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache for decoded results (rendered XML, or any other facts extracted from a document) keyed by the content hash
+ * of the input bytes, so a duplicate input costs one hash and one lookup instead of a full parse and render.
+ * <p>
+ * There is always a memory tier and optionally a directory backed disk tier. Both are bounded by size and evict the
+ * least recently used entries first. A memory miss which hits the disk tier promotes the entry back into memory.
+ * <p>
+ * The key is a SHA-256 digest rather than a cheaper non-cryptographic hash, as the inputs are frequently hostile and
+ * a crafted collision would let one sample poison the results of another. It is still far cheaper than a parse.
+ * <p>
+ * The cache can be shared by many threads. Only the LRU bookkeeping is done under its lock, the files of the disk tier
+ * are read, written and deleted outside of it so a disk access never holds up the memory hits of other threads.
+ *
+ * @author tstrazzere
+ */
+public class ResultCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ResultCache.class.getName());
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long maxMemoryBytes;
+    private long memoryBytes;
+    private final LinkedHashMap<String, String> memory;
+
+    private final Path directory;
+    private final long maxDiskBytes;
+    private long diskBytes;
+    // Access ordered key -> file size, so the eldest entry is always the next one to evict
+    private final LinkedHashMap<String, Long> disk;
+
+    /**
+     * Create a memory only cache.
+     *
+     * @param maxMemoryBytes upper bound for the (estimated) heap used by cached values
+     */
+    public ResultCache(long maxMemoryBytes) {
+        this(maxMemoryBytes, null, 0);
+    }
+
+    /**
+     * Create a cache with both a memory and a disk tier.
+     *
+     * @param maxMemoryBytes upper bound for the (estimated) heap used by cached values
+     * @param directory      directory for the disk tier, created if needed, or null for no disk tier
+     * @param maxDiskBytes   upper bound for the bytes stored in the directory
+     */
+    public ResultCache(long maxMemoryBytes, File directory, long maxDiskBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.memory = new LinkedHashMap<String, String>(16, 0.75f, true);
+        this.maxDiskBytes = maxDiskBytes;
+        this.disk = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        this.directory = (directory != null) ? directory.toPath() : null;
+
+        if (this.directory != null) {
+            loadDirectory();
+        }
+    }
+
+    /**
+     * Compute the cache key for some input.
+     *
+     * @param input the raw document bytes
+     * @return the lower case hex SHA-256 of the input
+     */
+    public static String hash(byte[] input) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(input);
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                hex[(i * 2) + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException exception) {
+            // Every JRE is required to ship SHA-256
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * @param key a key from {@link #hash(byte[])}, optionally with a suffix naming the kind of result
+     * @return the cached value or null on a miss
+     */
+    public String get(String key) {
+        checkKey(key);
+
+        synchronized (this) {
+            String value = memory.get(key);
+            if (value != null) {
+                return value;
+            }
+            if ((directory == null) || disk.get(key) == null) {
+                return null;
+            }
+        }
+
+        Path file = directory.resolve(key);
+        String value;
+        try {
+            value = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException exception) {
+            // Evicted or removed by someone else, forget about it unless it was written again meanwhile
+            if (Files.notExists(file)) {
+                synchronized (this) {
+                    removeDisk(key);
+                }
+            }
+            return null;
+        }
+        file.toFile().setLastModified(System.currentTimeMillis());
+
+        synchronized (this) {
+            putMemory(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Store a value in every tier.
+     *
+     * @param key   a key from {@link #hash(byte[])}, optionally with a suffix naming the kind of result
+     * @param value the result to cache
+     */
+    public void put(String key, String value) {
+        checkKey(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Cannot cache a null value");
+        }
+
+        synchronized (this) {
+            putMemory(key, value);
+        }
+        if (directory != null) {
+            putDisk(key, value);
+        }
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    public synchronized int getMemoryCount() {
+        return memory.size();
+    }
+
+    public synchronized int getDiskCount() {
+        return disk.size();
+    }
+
+    private void putMemory(String key, String value) {
+        String previous = memory.put(key, value);
+        if (previous != null) {
+            memoryBytes -= estimateSize(previous);
+        }
+        memoryBytes += estimateSize(value);
+
+        Iterator<Map.Entry<String, String>> iterator = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+            Map.Entry<String, String> eldest = iterator.next();
+            memoryBytes -= estimateSize(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    private void putDisk(String key, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxDiskBytes) {
+            return;
+        }
+
+        // Each writer has its own temporary file, the move then replaces the entry in one go
+        Path file = directory.resolve(key);
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(directory, key + ".", ".tmp");
+            Files.write(temporary, bytes);
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException exception) {
+            LOGGER.log(Level.WARNING, "Unable to write cache entry " + key, exception);
+            deleteTemporary(temporary);
+            return;
+        }
+
+        List<String> evicted;
+        synchronized (this) {
+            Long previous = disk.put(key, (long) bytes.length);
+            if (previous != null) {
+                diskBytes -= previous;
+            }
+            diskBytes += bytes.length;
+            evicted = evictDisk();
+        }
+        deleteFiles(evicted);
+    }
+
+    /**
+     * Drop the eldest entries from the bookkeeping until the disk tier fits its budget again.
+     *
+     * @return the keys whose files are to be deleted
+     */
+    private List<String> evictDisk() {
+        List<String> evicted = new ArrayList<String>();
+        Iterator<Map.Entry<String, Long>> iterator = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            diskBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            iterator.remove();
+        }
+        return evicted;
+    }
+
+    private void deleteFiles(List<String> keys) {
+        for (String key : keys) {
+            try {
+                Files.deleteIfExists(directory.resolve(key));
+            } catch (IOException exception) {
+                LOGGER.log(Level.WARNING, "Unable to evict cache entry " + key, exception);
+            }
+        }
+    }
+
+    private static void deleteTemporary(Path temporary) {
+        if (temporary != null) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException exception) {
+                LOGGER.log(Level.FINE, "Unable to delete " + temporary, exception);
+            }
+        }
+    }
+
+    private void removeDisk(String key) {
+        Long size = disk.remove(key);
+        if (size != null) {
+            diskBytes -= size;
+        }
+    }
+
+    /**
+     * Rebuild the LRU order of a previously used directory from the file modification times, and bring it back within
+     * budget, e.g. after a smaller budget or a change of keys left it too large.
+     */
+    private void loadDirectory() {
+        File[] files;
+        try {
+            Files.createDirectories(directory);
+            files = directory.toFile().listFiles();
+        } catch (IOException exception) {
+            throw new IllegalArgumentException("Unable to use cache directory " + directory, exception);
+        }
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, (left, right) -> Long.compare(left.lastModified(), right.lastModified()));
+        for (File file : files) {
+            if (file.isFile() && isValidKey(file.getName())) {
+                disk.put(file.getName(), file.length());
+                diskBytes += file.length();
+            }
+        }
+        deleteFiles(evictDisk());
+    }
+
+    private static long estimateSize(String value) {
+        // Object overhead plus the backing array, assume the worst case of two bytes per char
+        return 64 + (2L * value.length());
+    }
+
+    private static void checkKey(String key) {
+        if (!isValidKey(key)) {
+            throw new IllegalArgumentException("Invalid cache key: " + key);
+        }
+    }
+
+    /**
+     * Keys double as file names for the disk tier, so keep them to a safe character set.
+     */
+    private static boolean isValidKey(String key) {
+        if (key == null || key.isEmpty() || key.length() > 128 || key.endsWith(".tmp")) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char character = key.charAt(i);
+            if (!((character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z')
+                    || (character >= '0' && character <= '9') || character == '.' || character == '-'
+                    || character == '_')) {
+                return false;
+            }
+        }
+        return key.charAt(0) != '.';
+    }
+}
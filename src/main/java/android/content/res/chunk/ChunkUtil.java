@@ -15,6 +15,7 @@
  */
 package android.content.res.chunk;
 
+import android.content.res.AnomalyListener;
 import android.content.res.IntReader;
 import android.content.res.chunk.sections.ResourceSection;
 import android.content.res.chunk.sections.StringSection;
@@ -29,22 +30,37 @@ import java.io.IOException;
  */
 public class ChunkUtil {
 
+    // values() clones the array on every call, keep one copy around for the lookups
+    private static final ChunkType[] CHUNK_TYPES = ChunkType.values();
+
     // TODO : This seems silly
     public static ChunkType readChunkType(IntReader reader) throws IOException {
         int type = reader.readInt();
 
-        for (ChunkType chunkType : ChunkType.values()) {
+        for (ChunkType chunkType : CHUNK_TYPES) {
             if (chunkType.getIntType() == type) {
                 return chunkType;
             }
         }
 
+        reader.reportAnomaly(AnomalyListener.Kind.UNKNOWN_CHUNK, reader.getBytesRead() - 4, type);
         throw new IOException(String.format("Unexpected tag! 0x%08X at byte offset %d", type, reader.getBytesRead() - 4));
     }
 
     public static Chunk createChunk(IntReader reader) throws IOException {
-        int positionBeforeRead = reader.getBytesRead();
-        ChunkType chunkType = readChunkType(reader);
+        return createChunk(readChunkType(reader), reader);
+    }
+
+    /**
+     * Create a chunk whose type has already been read.
+     *
+     * @param chunkType the type read by {@link #readChunkType(IntReader)}
+     * @param reader    positioned right after the chunk type
+     * @return the new chunk
+     * @throws IOException
+     */
+    public static Chunk createChunk(ChunkType chunkType, IntReader reader) throws IOException {
+        int positionBeforeRead = reader.getBytesRead() - 4;
 
         try {
             switch (chunkType) {
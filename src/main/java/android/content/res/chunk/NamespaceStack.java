@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.chunk;
+
+import java.util.Arrays;
+
+/**
+ * The namespaces in scope while walking the AXML chunks, keyed by string pool index: START_NAMESPACE binds a uri
+ * index to a prefix index and the matching END_NAMESPACE restores whatever binding the uri had before.
+ * <p>
+ * The current bindings live in an open addressing int to int map, so resolving the prefix of an attribute is a
+ * single probe, and an undo log holds the bindings each declaration shadowed.
+ *
+ * @author tstrazzere
+ */
+public final class NamespaceStack {
+
+    public static final int NO_PREFIX = -1;
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    // Current binding per uri index; a uri which went out of scope keeps its slot with NO_PREFIX
+    private int[] keys;
+    private int[] prefixes;
+    private int keyCount;
+
+    // One entry per open declaration: the uri and the prefix it shadowed
+    private int[] undoUris;
+    private int[] undoShadowed;
+    private int depth;
+
+    public NamespaceStack() {
+        keys = new int[16];
+        prefixes = new int[16];
+        Arrays.fill(keys, EMPTY);
+        undoUris = new int[8];
+        undoShadowed = new int[8];
+    }
+
+    /**
+     * Bind the uri to the prefix until the matching {@link #pop(int)}.
+     *
+     * @param uriIndex    string index of the namespace uri
+     * @param prefixIndex string index of the prefix
+     */
+    public void push(int uriIndex, int prefixIndex) {
+        if (uriIndex < 0) {
+            // No uri, nothing could ever resolve through it
+            return;
+        }
+        if (depth == undoUris.length) {
+            undoUris = Arrays.copyOf(undoUris, depth * 2);
+            undoShadowed = Arrays.copyOf(undoShadowed, depth * 2);
+        }
+        int slot = slot(uriIndex, true);
+        undoUris[depth] = uriIndex;
+        undoShadowed[depth] = prefixes[slot];
+        depth++;
+
+        prefixes[slot] = prefixIndex;
+    }
+
+    /**
+     * End the innermost declaration of the uri, restoring the binding it shadowed. End namespaces are expected in
+     * reverse order of their starts, but one arriving out of order only ends its own declaration, and one without a
+     * matching start (or without a uri) is ignored.
+     *
+     * @param uriIndex string index of the namespace uri
+     */
+    public void pop(int uriIndex) {
+        int entry = depth - 1;
+        while (entry >= 0 && undoUris[entry] != uriIndex) {
+            entry--;
+        }
+        if (entry < 0) {
+            return;
+        }
+
+        // This is the innermost declaration of the uri, so the uri is currently bound by it
+        prefixes[slot(uriIndex, false)] = undoShadowed[entry];
+
+        int following = depth - entry - 1;
+        System.arraycopy(undoUris, entry + 1, undoUris, entry, following);
+        System.arraycopy(undoShadowed, entry + 1, undoShadowed, entry, following);
+        depth--;
+    }
+
+    /**
+     * @param uriIndex string index of the namespace uri
+     * @return string index of the prefix the uri is bound to, or {@link #NO_PREFIX} if it is not in scope
+     */
+    public int getPrefix(int uriIndex) {
+        if (uriIndex < 0) {
+            return NO_PREFIX;
+        }
+        int slot = slot(uriIndex, false);
+        return (slot < 0) ? NO_PREFIX : prefixes[slot];
+    }
+
+    /**
+     * @return the number of declarations currently in scope
+     */
+    public int depth() {
+        return depth;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        keyCount = 0;
+        depth = 0;
+    }
+
+    /**
+     * Find the slot of the uri with linear probing.
+     *
+     * @param create whether to add the uri, unbound, when it is missing
+     * @return the slot, or -1 if the uri is missing and was not added
+     */
+    private int slot(int uriIndex, boolean create) {
+        int mask = keys.length - 1;
+        int slot = mix(uriIndex) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == uriIndex) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return -1;
+        }
+
+        if ((keyCount + 1) * 2 > keys.length) {
+            grow();
+            return slot(uriIndex, true);
+        }
+        keys[slot] = uriIndex;
+        prefixes[slot] = NO_PREFIX;
+        keyCount++;
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldPrefixes = prefixes;
+        keys = new int[oldKeys.length * 2];
+        prefixes = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        keyCount = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                prefixes[slot(oldKeys[i], true)] = oldPrefixes[i];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -33,6 +33,10 @@ public class PoolItem {
         return itemOffset;
     }
 
+    public void setOffset(int offset) {
+        itemOffset = offset;
+    }
+
     public void setString(String data) {
         itemData = data;
     }
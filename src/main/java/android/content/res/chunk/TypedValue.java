@@ -0,0 +1,285 @@
+/* 
+ * Copyright 2015-2025 Red Naga
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.chunk;
+
+import java.io.IOException;
+
+/**
+ * Res_value data types, shared by both the AXML and protobuf front ends so a typed value means the same thing no
+ * matter where it was read from.
+ *
+ * @author tstrazzere
+ */
+public final class TypedValue {
+
+    public static final int TYPE_NULL = 0x00;
+    public static final int TYPE_REFERENCE = 0x01;
+    public static final int TYPE_ATTRIBUTE = 0x02;
+    public static final int TYPE_STRING = 0x03;
+    public static final int TYPE_FLOAT = 0x04;
+    public static final int TYPE_DIMENSION = 0x05;
+    public static final int TYPE_FRACTION = 0x06;
+    public static final int TYPE_INT_DEC = 0x10;
+    public static final int TYPE_INT_HEX = 0x11;
+    public static final int TYPE_INT_BOOLEAN = 0x12;
+    public static final int TYPE_INT_COLOR_ARGB8 = 0x1C;
+    public static final int TYPE_INT_COLOR_RGB8 = 0x1D;
+    public static final int TYPE_INT_COLOR_ARGB4 = 0x1E;
+    public static final int TYPE_INT_COLOR_RGB4 = 0x1F;
+
+    // Complex (dimension and fraction) layout: a signed 24 bit mantissa, a 2 bit radix and a 4 bit unit
+    private static final int COMPLEX_UNIT_MASK = 0xf;
+    private static final int COMPLEX_RADIX_SHIFT = 4;
+    private static final int COMPLEX_RADIX_MASK = 0x3;
+    private static final int COMPLEX_MANTISSA_MASK = 0xffffff00;
+
+    // The mantissa is used in place (still shifted up by 8), so every radix multiplier folds in the 1 / 2^8
+    private static final float[] RADIX_MULTIPLIERS = {
+            1.0f / (1L << 8),  // 23p0
+            1.0f / (1L << 15), // 16p7
+            1.0f / (1L << 23), // 8p15
+            1.0f / (1L << 31)  // 0p23
+    };
+
+    private static final String[] DIMENSION_UNITS = {"px", "dp", "sp", "pt", "in", "mm"};
+    private static final String[] FRACTION_UNITS = {"%", "%p"};
+
+    // Indexed by data type, for the machine readable outputs
+    private static final String[] TYPE_NAMES = new String[TYPE_INT_COLOR_RGB4 + 1];
+
+    static {
+        TYPE_NAMES[TYPE_NULL] = "null";
+        TYPE_NAMES[TYPE_REFERENCE] = "reference";
+        TYPE_NAMES[TYPE_ATTRIBUTE] = "attribute";
+        TYPE_NAMES[TYPE_STRING] = "string";
+        TYPE_NAMES[TYPE_FLOAT] = "float";
+        TYPE_NAMES[TYPE_DIMENSION] = "dimension";
+        TYPE_NAMES[TYPE_FRACTION] = "fraction";
+        TYPE_NAMES[TYPE_INT_DEC] = "int";
+        TYPE_NAMES[TYPE_INT_HEX] = "hex";
+        TYPE_NAMES[TYPE_INT_BOOLEAN] = "boolean";
+        TYPE_NAMES[TYPE_INT_COLOR_ARGB8] = "color_argb8";
+        TYPE_NAMES[TYPE_INT_COLOR_RGB8] = "color_rgb8";
+        TYPE_NAMES[TYPE_INT_COLOR_ARGB4] = "color_argb4";
+        TYPE_NAMES[TYPE_INT_COLOR_RGB4] = "color_rgb4";
+    }
+
+    private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+    private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * The AXML attribute "type" field is the first word of a Res_value (size, res0, dataType), so the data type is
+     * the top byte.
+     *
+     * @param attributeType the raw type word as read from the file (see {@link AttributeType#getIntType()})
+     * @return the Res_value data type
+     */
+    public static int getDataType(int attributeType) {
+        return attributeType >>> 24;
+    }
+
+    /**
+     * @param dataType the Res_value data type
+     * @return a short lower case name for the type, e.g. "dimension", or "unknown"
+     */
+    public static String getTypeName(int dataType) {
+        if (dataType >= 0 && dataType < TYPE_NAMES.length && TYPE_NAMES[dataType] != null) {
+            return TYPE_NAMES[dataType];
+        }
+        return "unknown";
+    }
+
+    /**
+     * Write the textual form of a typed value which can be rendered from its data word alone, without going through
+     * String.format or any intermediate String (except for the digits of non integral floats).
+     * <p>
+     * Strings, and references which carry a name, need the string pool or the protobuf node and are left to the
+     * caller, as are null and unknown types; for those nothing is written and false is returned.
+     *
+     * @param out      where to write the value
+     * @param dataType the Res_value data type
+     * @param data     the Res_value data word
+     * @return true if the value was written
+     * @throws IOException if the {@link Appendable} throws
+     */
+    public static boolean format(Appendable out, int dataType, int data) throws IOException {
+        switch (dataType) {
+            case TYPE_REFERENCE:
+                out.append('@');
+                appendHex(out, data, HEX_UPPER);
+                return true;
+            case TYPE_ATTRIBUTE:
+                out.append('?');
+                appendHex(out, data, HEX_UPPER);
+                return true;
+            case TYPE_INT_DEC:
+                appendDecimal(out, data);
+                return true;
+            case TYPE_INT_HEX:
+                out.append("0x");
+                appendHex(out, data, HEX_LOWER);
+                return true;
+            case TYPE_INT_BOOLEAN:
+                out.append(data != 0 ? "true" : "false");
+                return true;
+            case TYPE_FLOAT: {
+                float value = Float.intBitsToFloat(data);
+                if (isSmallWholeNumber(value)) {
+                    // Same as Float.toString in this range
+                    appendDecimal(out, (int) value);
+                    out.append(".0");
+                } else {
+                    out.append(Float.toString(value));
+                }
+                return true;
+            }
+            case TYPE_DIMENSION: {
+                // Whole dimensions are written without a fraction, e.g. 16dp rather than 16.0dp
+                float value = complexToFloat(data);
+                if (isSmallWholeNumber(value)) {
+                    appendDecimal(out, (int) value);
+                } else {
+                    out.append(Float.toString(value));
+                }
+                int unit = data & COMPLEX_UNIT_MASK;
+                out.append(unit < DIMENSION_UNITS.length ? DIMENSION_UNITS[unit] : "px");
+                return true;
+            }
+            case TYPE_FRACTION: {
+                appendFixed2(out, complexToFloat(data) * 100);
+                int unit = data & COMPLEX_UNIT_MASK;
+                out.append(unit < FRACTION_UNITS.length ? FRACTION_UNITS[unit] : FRACTION_UNITS[0]);
+                return true;
+            }
+            case TYPE_INT_COLOR_ARGB8:
+                out.append('#');
+                appendHexDigits(out, data, 8);
+                return true;
+            case TYPE_INT_COLOR_RGB8:
+                out.append('#');
+                appendHexDigits(out, data, 6);
+                return true;
+            case TYPE_INT_COLOR_ARGB4:
+                appendShortColor(out, data, 4);
+                return true;
+            case TYPE_INT_COLOR_RGB4:
+                appendShortColor(out, data, 3);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Decode a complex (dimension or fraction) data word into its value, leaving out the unit.
+     *
+     * @param complex the data word
+     * @return the value
+     */
+    public static float complexToFloat(int complex) {
+        return (complex & COMPLEX_MANTISSA_MASK) * RADIX_MULTIPLIERS[(complex >> COMPLEX_RADIX_SHIFT) & COMPLEX_RADIX_MASK];
+    }
+
+    private static void appendDecimal(Appendable out, int value) throws IOException {
+        long remaining = value;
+        if (remaining < 0) {
+            out.append('-');
+            remaining = -remaining;
+        }
+
+        long divisor = 1;
+        while (divisor * 10 <= remaining) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + (remaining / divisor) % 10));
+        }
+    }
+
+    /**
+     * Write the value without padding, as Integer.toHexString would.
+     */
+    private static void appendHex(Appendable out, int value, char[] digits) throws IOException {
+        int shift = 28;
+        while (shift > 0 && ((value >>> shift) & 0xf) == 0) {
+            shift -= 4;
+        }
+        for (; shift >= 0; shift -= 4) {
+            out.append(digits[(value >>> shift) & 0xf]);
+        }
+    }
+
+    /**
+     * Write the lowest count nibbles of the value, zero padded.
+     */
+    private static void appendHexDigits(Appendable out, int value, int count) throws IOException {
+        for (int shift = (count - 1) * 4; shift >= 0; shift -= 4) {
+            out.append(HEX_LOWER[(value >>> shift) & 0xf]);
+        }
+    }
+
+    /**
+     * Short colors (#argb and #rgb) are stored expanded to a full ARGB8 word, so they are written back in their short
+     * form when every byte still repeats its nibble. Anything else is written in full so no bits are lost.
+     */
+    private static void appendShortColor(Appendable out, int value, int channels) throws IOException {
+        out.append('#');
+        if (channels == 3) {
+            value |= 0xff000000;
+        }
+        if (((value >>> 4) & 0x0f0f0f0f) != (value & 0x0f0f0f0f)) {
+            appendHexDigits(out, value, 8);
+            return;
+        }
+        for (int shift = (channels - 1) * 8; shift >= 0; shift -= 8) {
+            out.append(HEX_LOWER[(value >>> shift) & 0xf]);
+        }
+    }
+
+    /**
+     * Whole numbers below 10^7, which Float.toString writes in plain notation as well. Negative zero is left to
+     * Float.toString to keep its sign.
+     */
+    private static boolean isSmallWholeNumber(float value) {
+        return (value == (int) value) && (Math.abs(value) < 1.0e7f) && (Float.floatToRawIntBits(value) != 0x80000000);
+    }
+
+    /**
+     * Write the value rounded half up to two decimals, matching "%.2f".
+     */
+    private static void appendFixed2(Appendable out, float value) throws IOException {
+        double magnitude = value;
+        if (magnitude < 0) {
+            out.append('-');
+            magnitude = -magnitude;
+        }
+
+        long hundredths = (long) Math.floor(magnitude * 100 + 0.5);
+        long whole = hundredths / 100;
+        int cents = (int) (hundredths % 100);
+        if (whole > Integer.MAX_VALUE) {
+            out.append(Long.toString(whole));
+        } else {
+            appendDecimal(out, (int) whole);
+        }
+        out.append('.');
+        out.append((char) ('0' + cents / 10));
+        out.append((char) ('0' + cents % 10));
+    }
+
+    private TypedValue() {
+    }
+}
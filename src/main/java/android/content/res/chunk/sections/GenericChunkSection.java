@@ -15,11 +15,14 @@
  */
 package android.content.res.chunk.sections;
 
+import android.content.res.AnomalyListener;
 import android.content.res.IntReader;
+import android.content.res.ParseLimitException;
 import android.content.res.chunk.ChunkType;
 import android.content.res.chunk.types.GenericChunk;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * Generic ChunkSection class for generalizing the reading and minimizing the repetitive code inside of the specific
@@ -31,14 +34,35 @@ public abstract class GenericChunkSection extends GenericChunk implements ChunkS
 
     public GenericChunkSection(ChunkType chunkType, IntReader reader) {
         super(chunkType, reader);
+        readBody(reader);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see android.content.res.chunk.types.GenericChunk#reset(android.content.res.IntReader)
+     */
+    @Override
+    public void reset(IntReader reader) {
+        super.reset(reader);
+        readBody(reader);
+    }
 
+    private void readBody(IntReader reader) {
         try {
             readSection(reader);
 
+            int read = reader.getBytesRead() - getStartPosition();
+            if (read > size) {
+                reader.reportAnomaly(AnomalyListener.Kind.SIZE_MISMATCH, getStartPosition(), read);
+            }
             reader.skip(Math.abs(reader.getBytesRead() - getStartPosition() - size));
+        } catch (ParseLimitException e) {
+            throw new UncheckedIOException(e);
         } catch (IOException e) {
             // Catching this here allows us to continue reading
-            e.printStackTrace();
+            reader.reportAnomaly(AnomalyListener.Kind.READ_ERROR, getStartPosition(),
+                    reader.getBytesRead() - getStartPosition());
         }
     }
 
@@ -16,13 +16,14 @@
 package android.content.res.chunk.sections;
 
 import android.content.res.IntReader;
+import android.content.res.ParseLimits;
 import android.content.res.chunk.ChunkType;
 import android.content.res.chunk.types.NameSpace;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -32,8 +33,9 @@ import java.util.List;
  */
 public class ResourceSection extends GenericChunkSection {
 
-    // TODO : Make this an ArrayList so it's easier to add/remove
-    protected ArrayList<Integer> resourceIDs;
+    // Plain int storage (no boxing) which is kept when the section is reset for another document
+    protected int[] resourceIDs;
+    protected int resourceCount;
 
     public ResourceSection(ChunkType chunkType, IntReader reader) {
         super(chunkType, reader);
@@ -46,8 +48,11 @@ public class ResourceSection extends GenericChunkSection {
      */
     @Override
     public void readHeader(IntReader inputReader) throws IOException {
-        // Initialize this variable here
-        resourceIDs = new ArrayList<>();
+        // Initialize this variable here, keeping the storage of a previous read
+        if (resourceIDs == null) {
+            resourceIDs = new int[16];
+        }
+        resourceCount = 0;
     }
 
     /*
@@ -57,27 +62,54 @@ public class ResourceSection extends GenericChunkSection {
      */
     @Override
     public void readSection(IntReader inputReader) throws IOException {
+        ParseLimits limits = inputReader.getLimits();
+        if (limits != null) {
+            limits.checkPoolEntries(Math.max((size / 4) - 2, 0), 4,
+                    (long) getStartPosition() + size - inputReader.getBytesRead());
+        }
+
         for (int i = 0; i < ((size / 4) - 2); i++) {
             addResource(inputReader.readInt());
         }
     }
 
     public void addResource(int value) {
-        resourceIDs.add(value);
+        if (resourceCount == resourceIDs.length) {
+            resourceIDs = Arrays.copyOf(resourceIDs, resourceIDs.length * 2);
+        }
+        resourceIDs[resourceCount++] = value;
     }
 
     @Override
     public int getSize() {
         // Tag + Size + resourceIds
-        return 4 + 4 + (resourceIDs.size() * 4);
+        return 4 + 4 + (resourceCount * 4);
+    }
+
+    /**
+     * Keep the ids of the attribute names which stayed in the string pool, in the same order.
+     *
+     * @param mapping see {@link StringSection#compact(java.util.BitSet, int, boolean)}
+     */
+    public void retain(int[] mapping) {
+        int kept = 0;
+        for (int i = 0; i < resourceCount && i < mapping.length; i++) {
+            if (mapping[i] >= 0) {
+                resourceIDs[kept++] = resourceIDs[i];
+            }
+        }
+        resourceCount = kept;
     }
 
     public int getResourceID(int index) {
-        return resourceIDs.get(index);
+        if ((index < 0) || (index >= resourceCount)) {
+            throw new IndexOutOfBoundsException("Resource index " + index + " out of bounds for " + resourceCount);
+        }
+        return resourceIDs[index];
     }
 
     public int getResourceCount() {
-        return resourceIDs.size();
+        return resourceCount;
     }
 
     /*
@@ -100,10 +132,10 @@ public class ResourceSection extends GenericChunkSection {
     public byte[] toBytes() {
         byte[] header = super.toBytes();
 
-        ByteBuffer offsetBuffer = ByteBuffer.allocate(resourceIDs.size() * 4).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer offsetBuffer = ByteBuffer.allocate(resourceCount * 4).order(ByteOrder.LITTLE_ENDIAN);
 
-        for (int id : resourceIDs) {
-            offsetBuffer.putInt(id);
+        for (int i = 0; i < resourceCount; i++) {
+            offsetBuffer.putInt(resourceIDs[i]);
         }
         byte[] body = offsetBuffer.array();
 
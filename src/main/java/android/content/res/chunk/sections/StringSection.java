@@ -15,17 +15,27 @@
  */
 package android.content.res.chunk.sections;
 
+import android.content.res.AnomalyListener;
 import android.content.res.IntReader;
+import android.content.res.ParseLimitException;
+import android.content.res.ParseLimits;
 import android.content.res.chunk.ChunkType;
 import android.content.res.chunk.PoolItem;
 import android.content.res.chunk.types.NameSpace;
+import android.content.res.jfr.StringPoolEvent;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class StringSection extends GenericChunkSection {
 
@@ -34,6 +44,12 @@ public class StringSection extends GenericChunkSection {
     private final int SORTED_FLAG = 1 << 0;
     private final int UTF8_FLAG = 1 << 8;
 
+    // Ends the spans of one style
+    public static final int END_SPAN = 0xFFFFFFFF;
+
+    // Strings decoded by one task when a pool is decoded in parallel
+    private static final int PARALLEL_RANGE = 1024;
+
     private int stringChunkCount;
     private int styleChunkCount;
     private int stringChunkFlags;
@@ -43,7 +59,17 @@ public class StringSection extends GenericChunkSection {
     // FIXME:
     // This likely could just be an ordered array of Strings if the Integer is just ordered and the key..
     private ArrayList<PoolItem> stringChunkPool;
-    private ArrayList<PoolItem> styleChunkPool;
+
+    // Styles as read: where each style starts in words and the span words themselves, (name, firstChar, lastChar)
+    // triplets with each style ended by END_SPAN. They are written back as they are and only decoded when asked for.
+    private int[] styleOffsets;
+    private int[] styleData;
+    private int styleDataLength;
+
+    // Decoding scratch space, kept for the next pool and the next reset. These are filled lazily and not initialised
+    // here, as the sections are read from within the super constructor before field initialisers run.
+    private long[] orderScratch;
+    private char[] charScratch;
 
     public StringSection(ChunkType chunkType, IntReader inputReader) {
         super(chunkType, inputReader);
@@ -55,89 +81,324 @@ public class StringSection extends GenericChunkSection {
         styleChunkCount = inputReader.readInt();
         stringChunkFlags = inputReader.readInt();
 
+        // The pools are kept across resets so their PoolItems can be refilled rather than reallocated
         stringChunkPoolOffset = inputReader.readInt();
-        stringChunkPool = new ArrayList<PoolItem>();
+        if (stringChunkPool == null) {
+            stringChunkPool = new ArrayList<PoolItem>();
+        }
 
         styleChunkPoolOffset = inputReader.readInt();
-        styleChunkPool = new ArrayList<PoolItem>();
+        styleDataLength = 0;
+
+        // Both offset tables have to fit in what is left of the chunk
+        ParseLimits limits = inputReader.getLimits();
+        if (limits != null) {
+            int strings = Math.max(stringChunkCount, 0);
+            int styles = Math.max(styleChunkCount, 0);
+            long available = getRemaining(inputReader);
+            limits.checkPoolEntries(strings, 4, available);
+            limits.checkPoolEntries(styles, 4, available - (strings * 4L));
+        }
     }
 
     @Override
     public void readSection(IntReader inputReader) throws IOException {
-        for (int i = 0; i < stringChunkCount; i++) {
-            stringChunkPool.add(new PoolItem(inputReader.readInt(), null));
+        StringPoolEvent event = new StringPoolEvent();
+        event.begin();
+
+        readOffsets(stringChunkPool, stringChunkCount, inputReader);
+        readStyleOffsets(inputReader);
+
+        // The data of a large pool is read into memory with whatever follows it in the chunk, and the rest of the
+        // section is read from there instead of from the stream
+        IntReader poolReader = inputReader;
+        // A pool at or over the threshold of the reader is decoded on the common ForkJoin pool, with the rest of the
+        // chunk read into memory in one go so each string can be decoded on its own from its offset
+        if (stringChunkPool.size() >= inputReader.getParallelThreshold()) {
+            int remaining = (int) getRemaining(inputReader);
+            // The size comes from the chunk header, so it is only allocated when the input really holds that many
+            // bytes, otherwise the pool is streamed and runs out of input like any other truncated chunk
+            if (remaining > 0 && remaining <= inputReader.getRemaining()) {
+                byte[] data = new byte[remaining];
+                poolReader = inputReader.fork(new ByteArrayInputStream(data));
+                inputReader.readFully(data, 0, remaining);
+                poolReader.skip(decodePool(stringChunkPool, stringChunkFlags, data, inputReader));
+            }
         }
 
-        if (!stringChunkPool.isEmpty()) {
+        if (poolReader == inputReader && !stringChunkPool.isEmpty()) {
             readPool(stringChunkPool, stringChunkFlags, inputReader);
         }
 
-        // TODO : Does this need the flags?
-        // FIXME: This is potentially wrong
-        for (int i = 0; i < styleChunkCount; i++) {
-            styleChunkPool.add(new PoolItem(inputReader.readInt(), null));
+        if (styleChunkCount > 0) {
+            readStyles(poolReader);
         }
 
-        if (!styleChunkPool.isEmpty()) {
-            readPool(styleChunkPool, stringChunkFlags, inputReader);
+        if (event.shouldCommit()) {
+            event.offset = getStartPosition();
+            event.size = size;
+            event.strings = stringChunkPool.size();
+            event.styles = Math.max(styleChunkCount, 0);
+            event.utf8 = (stringChunkFlags & UTF8_FLAG) != 0;
+            event.parallel = poolReader != inputReader;
+            event.commit();
         }
     }
 
-private void readPool(ArrayList<PoolItem> pool, int flags, IntReader inputReader) throws IOException {
-    // Create a list of indices to maintain the original order
-    List<Integer> indices = new ArrayList<>();
-    for (int i = 0; i < pool.size(); i++) {
-        indices.add(i);
+    /**
+     * Fill the pool with the offsets of the next count entries, reusing any PoolItems left from a previous read.
+     */
+    private void readOffsets(ArrayList<PoolItem> pool, int count, IntReader inputReader) throws IOException {
+        for (int i = 0; i < count; i++) {
+            int offset = inputReader.readInt();
+            if (i < pool.size()) {
+                PoolItem item = pool.get(i);
+                item.setOffset(offset);
+                item.setString(null);
+            } else {
+                pool.add(new PoolItem(offset, null));
+            }
+        }
+
+        for (int i = pool.size() - 1; i >= count; i--) {
+            pool.remove(i);
+        }
     }
 
-    // Sort indices based on the offsets of the pool items
-    indices.sort((i1, i2) -> Integer.compare(pool.get(i1).getOffset(), pool.get(i2).getOffset()));
+    /**
+     * The style offset table follows the string offset table, ahead of the string data.
+     */
+    private void readStyleOffsets(IntReader inputReader) throws IOException {
+        int count = Math.max(styleChunkCount, 0);
+        if (count == 0) {
+            return;
+        }
+        if (styleOffsets == null || styleOffsets.length < count) {
+            styleOffsets = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            styleOffsets[i] = inputReader.readInt();
+        }
+    }
 
-    int currentStreamPosition = 0;
+    /**
+     * Read the span words, from the start of the styles to the end of the chunk, as they are.
+     */
+    private void readStyles(IntReader reader) throws IOException {
+        long start = getStartPosition() + (long) styleChunkPoolOffset;
+        long end = getStartPosition() + (long) size;
+        if (styleChunkPoolOffset <= 0 || start < reader.getBytesRead() || end <= start) {
+            // No styles where they should be, or overlapping the strings
+            reader.reportAnomaly(AnomalyListener.Kind.INDEX_OUT_OF_RANGE, getStartPosition(), styleChunkPoolOffset);
+            return;
+        }
+        reader.skip((int) (start - reader.getBytesRead()));
 
-    // Temporary storage for strings
-    String[] results = new String[pool.size()];
+        int words = (int) ((end - start) / 4);
+        ParseLimits limits = reader.getLimits();
+        if (limits != null) {
+            limits.checkPoolEntries(words, 4, end - start);
+        }
+        if (styleData == null || styleData.length < words) {
+            styleData = new int[words];
+        }
+        for (int i = 0; i < words; i++) {
+            styleData[i] = reader.readInt();
+        }
+        styleDataLength = words;
+    }
 
-    // Read data in the order determined by sorted indices
-    for (int index : indices) {
-        PoolItem item = pool.get(index);
-        int targetOffset = item.getOffset();
+    private void readPool(ArrayList<PoolItem> pool, int flags, IntReader inputReader) throws IOException {
+        int poolSize = pool.size();
 
-        // Move to the target offset, skip forward if needed
-        if (targetOffset > currentStreamPosition) {
-            inputReader.skip(targetOffset - currentStreamPosition);
-            currentStreamPosition = targetOffset;
+        // Order the entries by offset so the data can be read front to back, packing offset and index into one long
+        // so a primitive sort does the work without boxing
+        if (orderScratch == null || orderScratch.length < poolSize) {
+            orderScratch = new long[poolSize];
         }
-
-        int length = 0;
-        if ((flags & UTF8_FLAG) != 0) {
-            length = inputReader.readByte();
-            currentStreamPosition += 1;
-        } else {
-            length = inputReader.readShort();
-            currentStreamPosition += 2;
+        for (int i = 0; i < poolSize; i++) {
+            orderScratch[i] = ((long) pool.get(i).getOffset() << 32) | i;
         }
+        Arrays.sort(orderScratch, 0, poolSize);
+
+        boolean utf8 = (flags & UTF8_FLAG) != 0;
+        int currentStreamPosition = 0;
+
+        for (int i = 0; i < poolSize; i++) {
+            PoolItem item = pool.get((int) orderScratch[i]);
+            int targetOffset = item.getOffset();
 
-        StringBuilder result = new StringBuilder(length);
-        for (; length != 0; length -= 1) {
-            if ((flags & UTF8_FLAG) != 0) {
-                result.append((char) inputReader.readByte());
+            if (targetOffset < currentStreamPosition) {
+                inputReader.reportAnomaly(AnomalyListener.Kind.OVERLAPPING_STRING_OFFSETS, getStartPosition(),
+                        (int) orderScratch[i]);
+            }
+
+            // Move to the target offset, skip forward if needed
+            if (targetOffset > currentStreamPosition) {
+                checkStringData(inputReader, targetOffset - currentStreamPosition);
+                inputReader.skip(targetOffset - currentStreamPosition);
+                currentStreamPosition = targetOffset;
+            }
+
+            int length;
+            if (utf8) {
+                length = inputReader.readByte();
                 currentStreamPosition += 1;
             } else {
-                result.append((char) inputReader.readShort());
+                length = inputReader.readShort();
                 currentStreamPosition += 2;
             }
+            checkStringData(inputReader, length * (utf8 ? 1L : 2L));
+            inputReader.addDecodedBytes(length * 2L);
+
+            if (charScratch == null || charScratch.length < length) {
+                charScratch = new char[Math.max(length, charScratch == null ? 64 : charScratch.length * 2)];
+            }
+            for (int j = 0; j < length; j++) {
+                if (utf8) {
+                    charScratch[j] = (char) inputReader.readByte();
+                    currentStreamPosition += 1;
+                } else {
+                    charScratch[j] = (char) inputReader.readShort();
+                    currentStreamPosition += 2;
+                }
+            }
+
+            item.setString(new String(charScratch, 0, length));
+        }
+    }
+
+    /**
+     * Decode a pool from data held in memory: a serial pass over the length prefixes lays the strings out exactly as
+     * {@link #readPool} would walk them, then ranges of strings are decoded in parallel.
+     *
+     * @return the position readPool would have stopped at
+     */
+    private int decodePool(ArrayList<PoolItem> pool, int flags, byte[] data, IntReader inputReader)
+            throws IOException {
+        boolean bigEndian = inputReader.isBigEndian();
+        int poolSize = pool.size();
+        if (orderScratch == null || orderScratch.length < poolSize) {
+            orderScratch = new long[poolSize];
+        }
+        for (int i = 0; i < poolSize; i++) {
+            orderScratch[i] = ((long) pool.get(i).getOffset() << 32) | i;
+        }
+        Arrays.sort(orderScratch, 0, poolSize);
+
+        boolean utf8 = (flags & UTF8_FLAG) != 0;
+        int characterSize = utf8 ? 1 : 2;
+        int[] starts = new int[poolSize];
+        int[] lengths = new int[poolSize];
+        int currentPosition = 0;
+
+        for (int i = 0; i < poolSize; i++) {
+            int index = (int) orderScratch[i];
+            int targetOffset = pool.get(index).getOffset();
+            if (targetOffset < currentPosition) {
+                inputReader.reportAnomaly(AnomalyListener.Kind.OVERLAPPING_STRING_OFFSETS, getStartPosition(), index);
+            }
+            if (targetOffset > currentPosition) {
+                currentPosition = targetOffset;
+            }
+            if (currentPosition + characterSize > data.length) {
+                throw new EOFException();
+            }
+
+            int length = utf8 ? (data[currentPosition] & 0xFF) : readShort(data, currentPosition, bigEndian);
+            currentPosition += characterSize;
+            starts[index] = currentPosition;
+            lengths[index] = length;
+            inputReader.addDecodedBytes(length * 2L);
+            currentPosition += length * characterSize;
+            if (currentPosition > data.length) {
+                throw new EOFException();
+            }
         }
 
-        // Store the result temporarily
-        results[index] = result.toString();
+        ForkJoinPool.commonPool().invoke(new DecodeRange(pool, data, starts, lengths, utf8, bigEndian, 0, poolSize));
+        return currentPosition;
     }
 
-    // Assign results back to the pool items in the original order
-    for (int i = 0; i < pool.size(); i++) {
-        pool.get(i).setString(results[i]);
+    /**
+     * @return bytes of the chunk left to read
+     */
+    private long getRemaining(IntReader inputReader) {
+        return (long) getStartPosition() + size - inputReader.getBytesRead();
+    }
+
+    /**
+     * Fail when the next bytes of string data would run past the end of the chunk, as only a lying offset or length
+     * can ask for that.
+     */
+    private void checkStringData(IntReader inputReader, long bytes) throws ParseLimitException {
+        if (inputReader.getLimits() != null && bytes > getRemaining(inputReader)) {
+            throw new ParseLimitException("string data against the chunk", bytes, getRemaining(inputReader));
+        }
+    }
+
+    private static int readShort(byte[] data, int position, boolean bigEndian) {
+        int first = data[position] & 0xFF;
+        int second = data[position + 1] & 0xFF;
+        return bigEndian ? ((first << 8) | second) : (first | (second << 8));
+    }
+
+    /**
+     * Decodes the strings of a range of pool indexes, splitting the range until it is small enough.
+     */
+    private static final class DecodeRange extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<PoolItem> pool;
+        private final byte[] data;
+        private final int[] starts;
+        private final int[] lengths;
+        private final boolean utf8;
+        private final boolean bigEndian;
+        private final int from;
+        private final int to;
+
+        DecodeRange(ArrayList<PoolItem> pool, byte[] data, int[] starts, int[] lengths, boolean utf8,
+                    boolean bigEndian, int from, int to) {
+            this.pool = pool;
+            this.data = data;
+            this.starts = starts;
+            this.lengths = lengths;
+            this.utf8 = utf8;
+            this.bigEndian = bigEndian;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_RANGE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecodeRange(pool, data, starts, lengths, utf8, bigEndian, from, middle),
+                        new DecodeRange(pool, data, starts, lengths, utf8, bigEndian, middle, to));
+                return;
+            }
+
+            char[] characters = new char[64];
+            for (int i = from; i < to; i++) {
+                int length = lengths[i];
+                if (characters.length < length) {
+                    characters = new char[Math.max(length, characters.length * 2)];
+                }
+                int position = starts[i];
+                for (int j = 0; j < length; j++) {
+                    if (utf8) {
+                        characters[j] = (char) (data[position++] & 0xFF);
+                    } else {
+                        characters[j] = (char) readShort(data, position, bigEndian);
+                        position += 2;
+                    }
+                }
+                pool.get(i).setString(new String(characters, 0, length));
+            }
+        }
     }
-}
 
     public int getStringIndex(String string) {
         if (string != null) {
@@ -162,6 +423,81 @@ private void readPool(ArrayList<PoolItem> pool, int flags, IntReader inputReader
         return getStringIndex(string);
     }
 
+    /**
+     * Rebuild the pool from the strings still referenced, so what edits and obfuscators left behind is not written
+     * again. The first mappedCount strings are the attribute names the resource map gives ids to: unreferenced ones are
+     * dropped but the rest keep their order, so the map can follow with {@link ResourceSection#retain(int[])}. The
+     * other strings are deduplicated by value and, if asked, sorted.
+     * <p>
+     * A pool with styles is left as it is, as the style spans refer to strings by index as well.
+     *
+     * @param referenced  the indexes referenced by the chunks, see {@link #mark(BitSet, int)}
+     * @param mappedCount number of strings covered by the resource map
+     * @param sort        whether to sort the unmapped strings
+     * @return the new index of each old one, -1 for a dropped string, or null if the pool was left as it is
+     */
+    public int[] compact(BitSet referenced, int mappedCount, boolean sort) {
+        if (styleChunkCount > 0) {
+            return null;
+        }
+
+        int count = stringChunkPool.size();
+        int mapped = Math.min(Math.max(mappedCount, 0), count);
+        int[] mapping = new int[count];
+        Arrays.fill(mapping, -1);
+        ArrayList<PoolItem> kept = new ArrayList<PoolItem>(referenced.cardinality());
+        for (int i = 0; i < mapped; i++) {
+            if (referenced.get(i)) {
+                mapping[i] = kept.size();
+                kept.add(stringChunkPool.get(i));
+            }
+        }
+
+        ArrayList<Integer> unmapped = new ArrayList<Integer>();
+        for (int i = referenced.nextSetBit(mapped); i >= 0 && i < count; i = referenced.nextSetBit(i + 1)) {
+            unmapped.add(i);
+        }
+        if (sort) {
+            unmapped.sort((first, second) ->
+                    stringChunkPool.get(first).getString().compareTo(stringChunkPool.get(second).getString()));
+        }
+
+        HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+        for (int index : unmapped) {
+            PoolItem item = stringChunkPool.get(index);
+            Integer newIndex = indexes.get(item.getString());
+            if (newIndex == null) {
+                newIndex = kept.size();
+                kept.add(item);
+                indexes.put(item.getString(), newIndex);
+            }
+            mapping[index] = newIndex;
+        }
+
+        stringChunkPool = kept;
+        stringChunkCount = kept.size();
+        return mapping;
+    }
+
+    /**
+     * @param strings the set of referenced strings, created with the pool size so that a junk index cannot grow it
+     * @param index   a string index read from a chunk, ignored when it is none (-1) or out of range
+     */
+    public static void mark(BitSet strings, int index) {
+        if (index >= 0 && index < strings.size()) {
+            strings.set(index);
+        }
+    }
+
+    /**
+     * @param mapping see {@link #compact(BitSet, int, boolean)}
+     * @param index   a string index read from a chunk
+     * @return where the string went, or the index itself when it is none (-1) or out of range
+     */
+    public static int remap(int[] mapping, int index) {
+        return (index >= 0 && index < mapping.length) ? mapping[index] : index;
+    }
+
     public String getString(int index) {
         if ((index > -1) && (index < stringChunkPool.size())) {
             return stringChunkPool.get(index).getString();
@@ -170,8 +506,76 @@ private void readPool(ArrayList<PoolItem> pool, int flags, IntReader inputReader
         return "";
     }
 
+    /**
+     * @return the number of strings in the pool
+     */
+    public int getStringCount() {
+        return stringChunkPool.size();
+    }
+
+    /**
+     * @return the number of strings which were actually decoded, fewer than {@link #getStringCount()} when the pool
+     * could not be read completely
+     */
+    public int getDecodedCount() {
+        int decoded = 0;
+        for (PoolItem item : stringChunkPool) {
+            if (item.getString() != null) {
+                decoded++;
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * @return true if the strings are stored as UTF-8 rather than UTF-16
+     */
+    public boolean isUTF8() {
+        return (stringChunkFlags & UTF8_FLAG) != 0;
+    }
+
+    /**
+     * @return the number of styles, style i applying to string i
+     */
+    public int getStyleCount() {
+        return Math.max(styleChunkCount, 0);
+    }
+
+    /**
+     * Decode the spans of a style.
+     *
+     * @param index of the style, which is also the index of the string it applies to
+     * @return (name string index, first character, last character) for each span, packed in one array
+     */
+    public int[] getStyleSpans(int index) {
+        if ((index < 0) || (index >= getStyleCount())) {
+            throw new IndexOutOfBoundsException("Style index " + index + " out of bounds for " + getStyleCount());
+        }
+        int start = (styleOffsets[index] >= 0) ? styleOffsets[index] / 4 : styleDataLength;
+        int position = start;
+        while ((position + 3 <= styleDataLength) && (styleData[position] != END_SPAN)) {
+            position += 3;
+        }
+        return (start < position) ? Arrays.copyOfRange(styleData, start, position) : new int[0];
+    }
+
+    /**
+     * @param index of the style
+     * @return the spans of the style as name[first,last] separated by spaces, e.g. "b[0,4] i[6,9]"
+     * @deprecated use {@link #getStyleSpans(int)}
+     */
+    @Deprecated
     public String getStyle(int index) {
-        return styleChunkPool.get(index).getString();
+        int[] spans = getStyleSpans(index);
+        StringBuilder style = new StringBuilder();
+        for (int i = 0; i < spans.length; i += 3) {
+            if (i > 0) {
+                style.append(' ');
+            }
+            style.append(getString(spans[i])).append('[').append(spans[i + 1]).append(',').append(spans[i + 2])
+                    .append(']');
+        }
+        return style.toString();
     }
 
     @Override
@@ -197,17 +601,12 @@ private void readPool(ArrayList<PoolItem> pool, int flags, IntReader inputReader
             }
         }
 
-        int styleDataSize = 0;
-        for (PoolItem item : styleChunkPool) {
-            styleDataSize += item.getString().length() * (((stringChunkFlags & UTF8_FLAG) == 0) ? 2 : 1);
-        }
-
         return (2 * 4) + // Header
                 (5 * 4) + // static sections
                 (stringChunkPool.size() * 4) + // string table offset size
                 stringDataSize +
-                (styleChunkPool.size() * 4) + // style table offset size
-                styleDataSize;
+                (getStyleCount() * 4) + // style table offset size
+                (styleDataLength * 4); // span words
     }
 
     /*
@@ -281,46 +680,54 @@ private void readPool(ArrayList<PoolItem> pool, int flags, IntReader inputReader
             stringData.add(stringDataBuffer.array());
         }
 
-        // Combine strings into one buffer
-        ByteBuffer stringsBuffer = ByteBuffer.allocate(offsetBuffer.capacity() + offset)
+        // Combine strings into one buffer: both offset tables, then the string data, then the styles as they were read
+        int styleCount = getStyleCount();
+        ByteBuffer stringsBuffer = ByteBuffer.allocate(offsetBuffer.capacity() + (styleCount * 4) + offset +
+                        (styleDataLength * 4))
                 .order(ByteOrder.LITTLE_ENDIAN)
                 .put(offsetBuffer.array());
+        for (int i = 0; i < styleCount; i++) {
+            stringsBuffer.putInt(styleOffsets[i]);
+        }
         for (byte[] data : stringData) {
             stringsBuffer.put(data);
         }
+        for (int i = 0; i < styleDataLength; i++) {
+            stringsBuffer.putInt(styleData[i]);
+        }
         byte[] strings = stringsBuffer.array();
 
-//        byte[] styles = new byte[]{0x00};
-
         int newStringChunkOffset = 0;
         if (!stringChunkPool.isEmpty()) {
             newStringChunkOffset = (5 * 4) /* header + 3 other ints above it */
                     + stringChunkPool.size() * 4 /* index table size */
+                    + styleCount * 4 /* style index table size */
                     + 8 /* (this space and the style chunk offset */;
         }
 
         int newStyleChunkOffset = 0;
-        if (!styleChunkPool.isEmpty()) {
-            newStyleChunkOffset = (6 * 4) /* header + 4 other ints above it */
-                    + styleChunkPool.size() * 4 /* index table size */
-                    + 8 /* (this space and the style chunk offset */;
+        if (styleDataLength > 0) {
+            newStyleChunkOffset = (5 * 4) /* header + 3 other ints above it */
+                    + stringChunkPool.size() * 4 /* index table size */
+                    + styleCount * 4 /* style index table size */
+                    + 8 /* (this space and the style chunk offset */
+                    + offset /* string data */;
         }
 
         byte[] body = ByteBuffer.allocate(5 * 4)
                 .order(ByteOrder.LITTLE_ENDIAN)
                 .putInt(stringChunkPool.size())
-                .putInt(styleChunkPool.size())
+                .putInt(styleCount)
                 .putInt(stringChunkFlags)
                 .putInt(newStringChunkOffset)
                 .putInt(newStyleChunkOffset)
                 .array();
 
-        return ByteBuffer.allocate(header.length + body.length + strings.length /*+ styles.length*/)
+        return ByteBuffer.allocate(header.length + body.length + strings.length)
                 .order(ByteOrder.LITTLE_ENDIAN)
                 .put(header)
                 .put(body)
                 .put(strings)
-//                .put(styles)
                 .array();
     }
 }
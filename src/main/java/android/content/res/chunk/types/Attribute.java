@@ -15,15 +15,18 @@
  */
 package android.content.res.chunk.types;
 
+import android.content.res.AnomalyListener;
 import android.content.res.IntReader;
 import android.content.res.chunk.AttributeType;
 import android.content.res.chunk.ChunkType;
+import android.content.res.chunk.TypedValue;
 import android.content.res.chunk.sections.ResourceSection;
 import android.content.res.chunk.sections.StringSection;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -73,18 +76,28 @@ public class Attribute implements Chunk {
     }
 
     public Attribute(IntReader reader) {
+        int start = reader.getBytesRead();
         try {
-            uri = reader.readInt();
-            name = reader.readInt();
-            stringData = reader.readInt();
-            attributeType = reader.readInt();
-            data = reader.readInt();
+            read(reader);
         } catch (IOException exception) {
-            // TODO : Handle this better
-            exception.printStackTrace();
+            reader.reportAnomaly(AnomalyListener.Kind.READ_ERROR, start, reader.getBytesRead() - start);
         }
     }
 
+    /**
+     * Read the next attribute into this object, letting a StartTag reuse its attributes between documents.
+     *
+     * @param reader
+     * @throws IOException
+     */
+    public void read(IntReader reader) throws IOException {
+        uri = reader.readInt();
+        name = reader.readInt();
+        stringData = reader.readInt();
+        attributeType = reader.readInt();
+        data = reader.readInt();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -123,6 +136,41 @@ public class Attribute implements Chunk {
         return stringData;
     }
 
+    public int getUriIndex() {
+        return uri;
+    }
+
+    /**
+     * @return the raw Res_value type word, see {@link android.content.res.chunk.TypedValue#getDataType(int)}
+     */
+    public int getAttributeType() {
+        return attributeType;
+    }
+
+    public int getData() {
+        return data;
+    }
+
+    @Override
+    public void markStrings(BitSet strings) {
+        StringSection.mark(strings, uri);
+        StringSection.mark(strings, name);
+        StringSection.mark(strings, stringData);
+        if (TypedValue.getDataType(attributeType) == TypedValue.TYPE_STRING) {
+            StringSection.mark(strings, data);
+        }
+    }
+
+    @Override
+    public void remapStrings(int[] mapping) {
+        uri = StringSection.remap(mapping, uri);
+        name = StringSection.remap(mapping, name);
+        stringData = StringSection.remap(mapping, stringData);
+        if (TypedValue.getDataType(attributeType) == TypedValue.TYPE_STRING) {
+            data = StringSection.remap(mapping, data);
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -142,28 +190,22 @@ public class Attribute implements Chunk {
             }
         }
 
-        buffer.append(stringSection.getString(name));
+        String attributeName = stringSection.getString(name);
+        buffer.append(attributeName);
         buffer.append("=\"");
 
-        // TODO : This should be a switch...
-        if (attributeType == AttributeType.STRING.getIntType()) {
+        int dataType = TypedValue.getDataType(attributeType);
+        if (dataType == TypedValue.TYPE_STRING) {
             buffer.append(stringSection.getString(stringData));
-        } else if (attributeType == AttributeType.INT.getIntType()) {
-            buffer.append(data);
-        } else if (attributeType == AttributeType.RESOURCE.getIntType()) {
-            buffer.append("@");
-            buffer.append(Integer.toHexString(data).toUpperCase());
-        } else if (attributeType == AttributeType.BOOLEAN.getIntType()) {
-            // TODO : Double check this..
-            if (data == -1) {
-                buffer.append("true");
-            } else if (data == 0) {
-                buffer.append("false");
-            } else {
-                buffer.append("ERROR");
-            }
-        } else if (attributeType == AttributeType.FLAGS.getIntType()) {
+        } else if ((dataType == TypedValue.TYPE_INT_HEX) && isProtectionLevel(attributeName)) {
             buffer.append(getProtectionString(data));
+        } else {
+            try {
+                TypedValue.format(buffer, dataType, data);
+            } catch (IOException exception) {
+                // A StringBuffer never throws
+                throw new IllegalStateException(exception);
+            }
         }
 
         buffer.append("\"");
@@ -171,7 +213,17 @@ public class Attribute implements Chunk {
         return buffer.toString();
     }
 
-    private String getProtectionString(int level) {
+    /**
+     * Only protectionLevel holds a permission protection level, every other hex (flags) value is printed as a number.
+     *
+     * @param attributeName
+     * @return true if the value of this attribute should be printed with {@link #getProtectionString(int)}
+     */
+    public static boolean isProtectionLevel(String attributeName) {
+        return "protectionLevel".equals(attributeName);
+    }
+
+    public static String getProtectionString(int level) {
         switch (level & Permission.PROTECTION_MASK_BASE) {
             case Permission.PROTECTION_DANGEROUS:
                 return "dangerous";
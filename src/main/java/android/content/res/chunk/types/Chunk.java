@@ -21,6 +21,7 @@ import android.content.res.chunk.sections.ResourceSection;
 import android.content.res.chunk.sections.StringSection;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -71,4 +72,21 @@ public interface Chunk {
      */
     public byte[] toBytes();
 
+    /**
+     * Mark the string pool indexes this chunk refers to, see {@link StringSection#mark(BitSet, int)}.
+     *
+     * @param strings
+     */
+    default void markStrings(BitSet strings) {
+    }
+
+    /**
+     * Point the string pool indexes of this chunk at where their strings went, see
+     * {@link StringSection#remap(int[], int)}.
+     *
+     * @param mapping
+     */
+    default void remapStrings(int[] mapping) {
+    }
+
 }
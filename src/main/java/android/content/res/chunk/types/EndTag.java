@@ -23,6 +23,7 @@ import android.content.res.chunk.sections.StringSection;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -56,6 +57,32 @@ public class EndTag extends GenericChunk {
         name = inputReader.readInt();
     }
 
+    @Override
+    public void markStrings(BitSet strings) {
+        StringSection.mark(strings, commentIndex);
+        StringSection.mark(strings, namespaceUri);
+        StringSection.mark(strings, name);
+    }
+
+    @Override
+    public void remapStrings(int[] mapping) {
+        commentIndex = StringSection.remap(mapping, commentIndex);
+        namespaceUri = StringSection.remap(mapping, namespaceUri);
+        name = StringSection.remap(mapping, name);
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getNamespaceUriIndex() {
+        return namespaceUri;
+    }
+
+    public int getNameIndex() {
+        return name;
+    }
+
     public boolean isMangled(StringSection stringSection) {
         mangled = stringSection.getString(name).isEmpty();
 
@@ -15,10 +15,14 @@
  */
 package android.content.res.chunk.types;
 
+import android.content.res.AnomalyListener;
 import android.content.res.IntReader;
+import android.content.res.ParseLimitException;
+import android.content.res.ParseLimits;
 import android.content.res.chunk.ChunkType;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -35,14 +39,38 @@ public abstract class GenericChunk implements Chunk {
     protected int size;
 
     public GenericChunk(ChunkType chunkType, IntReader reader) {
-        startPosition = reader.getBytesRead() - 4;
         type = chunkType;
+        readChunk(reader);
+    }
+
+    /**
+     * Read the next chunk of the same type into this object, reusing whatever storage it already holds instead of
+     * allocating a new chunk. The chunk type must already have been consumed from the reader.
+     *
+     * @param reader
+     */
+    public void reset(IntReader reader) {
+        readChunk(reader);
+    }
+
+    private void readChunk(IntReader reader) {
+        startPosition = reader.getBytesRead() - 4;
         try {
             size = reader.readInt();
+
+            // The file header is allowed to lie about its size, it is never used for reading
+            ParseLimits limits = reader.getLimits();
+            if ((limits != null) && (type != ChunkType.AXML_HEADER)) {
+                limits.checkChunkSize(size, reader.getRemaining() + 8);
+            }
+
             readHeader(reader);
+        } catch (ParseLimitException exception) {
+            // Never continue past a limit, the constructors cannot throw it so it is unwrapped by the resource
+            throw new UncheckedIOException(exception);
         } catch (IOException exception) {
-            // TODO : Handle this better
-            exception.printStackTrace();
+            // Keep whatever was read, the reader continues with the next chunk
+            reader.reportAnomaly(AnomalyListener.Kind.READ_ERROR, startPosition, reader.getBytesRead() - startPosition);
         }
     }
 
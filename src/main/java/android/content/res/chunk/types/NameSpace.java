@@ -23,6 +23,7 @@ import android.content.res.chunk.sections.StringSection;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -69,6 +70,20 @@ public class NameSpace extends GenericChunk {
         return prefix;
     }
 
+    @Override
+    public void markStrings(BitSet strings) {
+        StringSection.mark(strings, commentIndex);
+        StringSection.mark(strings, prefix);
+        StringSection.mark(strings, uri);
+    }
+
+    @Override
+    public void remapStrings(int[] mapping) {
+        commentIndex = StringSection.remap(mapping, commentIndex);
+        prefix = StringSection.remap(mapping, prefix);
+        uri = StringSection.remap(mapping, uri);
+    }
+
     public int getLineNumber() {
         return lineNumber;
     }
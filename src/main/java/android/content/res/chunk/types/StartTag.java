@@ -16,6 +16,7 @@
 package android.content.res.chunk.types;
 
 import android.content.res.IntReader;
+import android.content.res.ParseLimits;
 import android.content.res.chunk.ChunkType;
 import android.content.res.chunk.sections.ResourceSection;
 import android.content.res.chunk.sections.StringSection;
@@ -24,6 +25,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
@@ -40,6 +42,8 @@ public class StartTag extends GenericChunk {
     private int name;
     private int flags;
     private int attributeCount;
+    // 1 based position of the id attribute, 0 for none
+    private int idIndex;
     private int classAttribute;
     private ArrayList<Attribute> attributes;
     private boolean mangled;
@@ -56,18 +60,42 @@ public class StartTag extends GenericChunk {
      */
     @Override
     public void readHeader(IntReader inputReader) throws IOException {
-        lineNumber = inputReader.readInt();
-        commentIndex = inputReader.readInt();
-        namespaceUri = inputReader.readInt();
-        name = inputReader.readInt();
-        flags = inputReader.readInt();
-        attributeCount = inputReader.readInt();
-        classAttribute = inputReader.readInt();
-
-        attributes = new ArrayList<>();
-        if (attributeCount > 0) {
-            for (int i = 0; i < attributeCount; i++) {
-                attributes.add(new Attribute(inputReader));
+        // Reuse the attributes of a previous read when this chunk is being reset, and have a list even when the
+        // header is cut short
+        if (attributes == null) {
+            attributes = new ArrayList<>();
+        }
+
+        int read = 0;
+        try {
+            lineNumber = inputReader.readInt();
+            commentIndex = inputReader.readInt();
+            namespaceUri = inputReader.readInt();
+            name = inputReader.readInt();
+            flags = inputReader.readInt();
+            // The count only takes the low 16 bits, the high ones are the id attribute index
+            int countAndId = inputReader.readInt();
+            attributeCount = countAndId & 0xFFFF;
+            idIndex = countAndId >>> 16;
+            classAttribute = inputReader.readInt();
+
+            // The chunk size of tags is not used for reading, so the count is checked against the input
+            ParseLimits limits = inputReader.getLimits();
+            if (limits != null) {
+                limits.checkAttributes(attributeCount, inputReader.getRemaining());
+            }
+
+            for (; read < attributeCount; read++) {
+                if (read < attributes.size()) {
+                    attributes.get(read).read(inputReader);
+                } else {
+                    attributes.add(new Attribute(inputReader));
+                }
+            }
+        } finally {
+            // Only keep what was read completely, never what is left of the previous document
+            while (attributes.size() > read) {
+                attributes.remove(attributes.size() - 1);
             }
         }
     }
@@ -76,6 +104,14 @@ public class StartTag extends GenericChunk {
         return lineNumber;
     }
 
+    public int getNamespaceUriIndex() {
+        return namespaceUri;
+    }
+
+    public int getNameIndex() {
+        return name;
+    }
+
     @Override
     public int getSize() {
         return (9 * 4) + (attributeCount * 20);
@@ -85,6 +121,46 @@ public class StartTag extends GenericChunk {
         return attributes;
     }
 
+    /**
+     * @param index position of the attribute in this tag
+     * @return the offset in the file of the 20 byte record the attribute was read from
+     */
+    public int getAttributeOffset(int index) {
+        return getStartPosition() + (9 * 4) + (index * 20);
+    }
+
+    /**
+     * Find an attribute by the resource id of its name rather than by the name itself, which protectors are free to
+     * blank out or duplicate in the string pool without the framework noticing.
+     *
+     * @param resourceSection
+     * @param resourceId      e.g. 0x0101000f for android:debuggable
+     * @return the first attribute of this tag whose name maps to the id, null if there is none
+     */
+    public Attribute getAttributeByResourceId(ResourceSection resourceSection, int resourceId) {
+        int index = indexOfAttribute(resourceSection, resourceId);
+        return (index >= 0) ? attributes.get(index) : null;
+    }
+
+    /**
+     * @param resourceSection
+     * @param resourceId      e.g. 0x0101000f for android:debuggable
+     * @return the index of the first attribute of this tag whose name maps to the id, -1 if there is none
+     * @see #getAttributeByResourceId(ResourceSection, int)
+     */
+    public int indexOfAttribute(ResourceSection resourceSection, int resourceId) {
+        int resourceCount = resourceSection.getResourceCount();
+        for (int i = 0; i < attributes.size(); i++) {
+            int nameIndex = attributes.get(i).getNameIndex();
+            if ((nameIndex >= 0) && (nameIndex < resourceCount) &&
+                    (resourceSection.getResourceID(nameIndex) == resourceId)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
     public void insertOrReplaceAttribute(Attribute newAttribute) {
         Iterator<Attribute> iterator = attributes.iterator();
         while (iterator.hasNext()) {
@@ -97,6 +173,26 @@ public class StartTag extends GenericChunk {
         attributes.add(newAttribute);
     }
 
+    @Override
+    public void markStrings(BitSet strings) {
+        StringSection.mark(strings, commentIndex);
+        StringSection.mark(strings, namespaceUri);
+        StringSection.mark(strings, name);
+        for (Attribute attribute : attributes) {
+            attribute.markStrings(strings);
+        }
+    }
+
+    @Override
+    public void remapStrings(int[] mapping) {
+        commentIndex = StringSection.remap(mapping, commentIndex);
+        namespaceUri = StringSection.remap(mapping, namespaceUri);
+        name = StringSection.remap(mapping, name);
+        for (Attribute attribute : attributes) {
+            attribute.remapStrings(mapping);
+        }
+    }
+
     public String getName(StringSection stringSection) {
         return stringSection.getString(name);
     }
@@ -166,7 +262,7 @@ public class StartTag extends GenericChunk {
                 .putInt(namespaceUri)
                 .putInt(name)
                 .putInt(flags)
-                .putInt(attributes.size())
+                .putInt((idIndex << 16) | attributes.size())
                 .putInt(classAttribute)
                 .array();
 
@@ -17,12 +17,14 @@ package android.content.res.chunk.types;
 
 import android.content.res.IntReader;
 import android.content.res.chunk.ChunkType;
+import android.content.res.chunk.TypedValue;
 import android.content.res.chunk.sections.ResourceSection;
 import android.content.res.chunk.sections.StringSection;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -57,6 +59,36 @@ public class TextTag extends GenericChunk {
         typedValue = inputReader.readInt();
     }
 
+    @Override
+    public void markStrings(BitSet strings) {
+        StringSection.mark(strings, commentIndex);
+        StringSection.mark(strings, name);
+        // The typed value is a string index too when the text is typed as a string
+        if (TypedValue.getDataType(rawValue) == TypedValue.TYPE_STRING) {
+            StringSection.mark(strings, typedValue);
+        }
+    }
+
+    @Override
+    public void remapStrings(int[] mapping) {
+        commentIndex = StringSection.remap(mapping, commentIndex);
+        name = StringSection.remap(mapping, name);
+        if (TypedValue.getDataType(rawValue) == TypedValue.TYPE_STRING) {
+            typedValue = StringSection.remap(mapping, typedValue);
+        }
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return the string index of the text content
+     */
+    public int getNameIndex() {
+        return name;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for reading a single chunk. A document has thousands of them, so this is disabled unless a
+ * recording turns it on, e.g. with {@code android.content.res.Chunk#enabled=true}.
+ *
+ * @author tstrazzere
+ */
+@Name("android.content.res.Chunk")
+@Label("AXML Chunk")
+@Category({"AXMLPrinter"})
+@Description("Reading one chunk of a binary XML document")
+@Enabled(false)
+@Threshold("100 us")
+@StackTrace(false)
+public class ChunkEvent extends jdk.jfr.Event {
+
+    @Label("Type")
+    public String chunkType;
+
+    @Label("Offset")
+    @Description("Byte offset of the chunk in the file")
+    public int offset;
+
+    @Label("Size")
+    @DataAmount
+    public int size;
+
+    @Label("Reused")
+    @Description("Whether a chunk left from a previous document was refilled")
+    public boolean reused;
+}
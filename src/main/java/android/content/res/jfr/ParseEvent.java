@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for reading one AXML document, recorded when it takes longer than the threshold.
+ *
+ * @author tstrazzere
+ */
+@Name("android.content.res.Parse")
+@Label("AXML Parse")
+@Category({"AXMLPrinter"})
+@Description("Reading one binary XML document")
+@Threshold("1 ms")
+@StackTrace(false)
+public class ParseEvent extends jdk.jfr.Event {
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Chunks")
+    public int chunks;
+
+    @Label("Strings")
+    public int strings;
+
+    @Label("Complete")
+    @Description("Whether the header and both sections were found")
+    public boolean complete;
+}
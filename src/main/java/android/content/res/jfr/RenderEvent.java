@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for rendering one document as text, recorded when it takes longer than the threshold.
+ *
+ * @author tstrazzere
+ */
+@Name("android.content.res.Render")
+@Label("AXML Render")
+@Category({"AXMLPrinter"})
+@Description("Rendering one decoded document as XML or JSON")
+@Threshold("1 ms")
+@StackTrace(false)
+public class RenderEvent extends jdk.jfr.Event {
+
+    @Label("Format")
+    public String format;
+
+    @Label("Source")
+    @Description("Class of the front end the document came from")
+    public Class<?> source;
+
+    @Label("Characters")
+    @Description("Characters rendered, -1 when rendered into a stream")
+    public long characters;
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.metrics;
+
+import android.content.res.chunk.ChunkType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simple in-memory totals of everything reported, which can be shared by all the resources of a process and polled
+ * by whatever monitoring is in place.
+ *
+ * @author tstrazzere
+ */
+public class MetricsAggregator implements MetricsListener {
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final ChunkType[] CHUNK_TYPES = ChunkType.values();
+
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(PHASES.length);
+    private final AtomicLongArray phaseCounts = new AtomicLongArray(PHASES.length);
+    private final AtomicLongArray chunkCounts = new AtomicLongArray(CHUNK_TYPES.length);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder stringsDecoded = new LongAdder();
+    private final LongAdder chunksReused = new LongAdder();
+
+    @Override
+    public void phaseTime(Phase phase, long nanos) {
+        phaseNanos.addAndGet(phase.ordinal(), nanos);
+        phaseCounts.incrementAndGet(phase.ordinal());
+    }
+
+    @Override
+    public void chunksRead(ChunkType type, int count) {
+        chunkCounts.addAndGet(type.ordinal(), count);
+    }
+
+    @Override
+    public void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    @Override
+    public void bytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    @Override
+    public void stringsDecoded(int count) {
+        stringsDecoded.add(count);
+    }
+
+    @Override
+    public void chunksReused(int count) {
+        chunksReused.add(count);
+    }
+
+    /**
+     * @return total time spent in the phase
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    /**
+     * @return number of times the phase was timed, usually the number of documents
+     */
+    public long getPhaseCount(Phase phase) {
+        return phaseCounts.get(phase.ordinal());
+    }
+
+    public long getChunkCount(ChunkType type) {
+        return chunkCounts.get(type.ordinal());
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getStringsDecoded() {
+        return stringsDecoded.sum();
+    }
+
+    public long getChunksReused() {
+        return chunksReused.sum();
+    }
+
+    /**
+     * Start counting from zero again. Reports arriving at the same time may be split between before and after.
+     */
+    public void reset() {
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseNanos.set(i, 0);
+            phaseCounts.set(i, 0);
+        }
+        for (int i = 0; i < CHUNK_TYPES.length; i++) {
+            chunkCounts.set(i, 0);
+        }
+        bytesRead.reset();
+        bytesWritten.reset();
+        stringsDecoded.reset();
+        chunksReused.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Phase phase : PHASES) {
+            if (getPhaseCount(phase) > 0) {
+                builder.append(phase).append(": ").append(getPhaseCount(phase)).append(" x, ")
+                        .append(getPhaseNanos(phase) / 1000).append(" us\n");
+            }
+        }
+        for (ChunkType type : CHUNK_TYPES) {
+            if (getChunkCount(type) > 0) {
+                builder.append(type).append(" chunks: ").append(getChunkCount(type)).append('\n');
+            }
+        }
+        builder.append("bytes read: ").append(getBytesRead()).append('\n')
+                .append("bytes written: ").append(getBytesWritten()).append('\n')
+                .append("strings decoded: ").append(getStringsDecoded()).append('\n')
+                .append("chunks reused: ").append(getChunksReused()).append('\n');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.metrics;
+
+import android.content.res.chunk.ChunkType;
+
+/**
+ * Instrumentation hooks for parsing, rendering and writing, reported once per document and phase rather than per
+ * chunk, so that a listener only costs a handful of calls per document. Every method does nothing by default,
+ * implement the ones of interest.
+ *
+ * @author tstrazzere
+ */
+public interface MetricsListener {
+
+    /**
+     * Reports nothing, and is recognised by the resources so that they do not even take the time.
+     */
+    public static final MetricsListener NOOP = new MetricsListener() {
+    };
+
+    /**
+     * @param phase
+     * @param nanos time spent in the phase for one document
+     */
+    public default void phaseTime(Phase phase, long nanos) {
+    }
+
+    /**
+     * @param type  chunk type
+     * @param count number of chunks of the type read for one document
+     */
+    public default void chunksRead(ChunkType type, int count) {
+    }
+
+    /**
+     * @param bytes bytes of input consumed by one document
+     */
+    public default void bytesRead(long bytes) {
+    }
+
+    /**
+     * @param bytes bytes written for one document
+     */
+    public default void bytesWritten(long bytes) {
+    }
+
+    /**
+     * @param count strings decoded from the string pool of one document
+     */
+    public default void stringsDecoded(int count) {
+    }
+
+    /**
+     * @param count chunks refilled from a previous document of a reused resource instead of being allocated
+     */
+    public default void chunksReused(int count) {
+    }
+}
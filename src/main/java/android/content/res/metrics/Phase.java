@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.metrics;
+
+/**
+ * The phases whose time is reported to a {@link MetricsListener}. Reading is split by the chunks being read, so the
+ * time of a phase covers all chunks of its kinds wherever they appear in the file.
+ *
+ * @author tstrazzere
+ */
+public enum Phase {
+    /**
+     * The file header.
+     */
+    HEADER,
+    /**
+     * Offsets and decoding of the string and style pools.
+     */
+    STRING_POOL,
+    /**
+     * The resource id section.
+     */
+    RESOURCE_MAP,
+    /**
+     * Namespace, tag, text and padding chunks, and the repair of mangled tags.
+     */
+    ELEMENTS,
+    /**
+     * Rendering a read document to text.
+     */
+    RENDER,
+    /**
+     * Writing a document back to binary.
+     */
+    WRITE
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.chunk.TypedValue;
+import android.content.res.chunk.types.Attribute;
+
+import java.io.IOException;
+
+/**
+ * The text shown for an attribute value, shared by the XML, JSON and diff outputs so they cannot drift apart. Only the
+ * raw strings of a value can hold characters an output has to escape, so those go through a {@link Text} sink while the
+ * formatted numbers, references and flags are appended directly.
+ *
+ * @author tstrazzere
+ */
+final class AttributeValues {
+
+    /**
+     * Receives the raw strings of a value, which may be null, so the caller can escape them.
+     */
+    interface Text {
+        void append(String text) throws IOException;
+    }
+
+    /**
+     * Append the value unescaped.
+     */
+    static void append(StringBuilder out, String name, int dataType, int data, String rawValue) {
+        try {
+            append(out, text -> {
+                if (text != null) {
+                    out.append(text);
+                }
+            }, name, dataType, data, rawValue);
+        } catch (IOException exception) {
+            // A StringBuilder never throws
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * Append the value, handing every raw string to {@code text} and writing everything else to {@code out}.
+     */
+    static void append(Appendable out, Text text, String name, int dataType, int data, String rawValue)
+            throws IOException {
+        if (dataType == TypedValue.TYPE_STRING) {
+            text.append(rawValue);
+        } else if ((dataType == TypedValue.TYPE_REFERENCE || dataType == TypedValue.TYPE_ATTRIBUTE) &&
+                (rawValue != null)) {
+            // A named reference is written by name, otherwise by id below
+            out.append(dataType == TypedValue.TYPE_REFERENCE ? '@' : '?');
+            text.append(rawValue);
+        } else if ((dataType == TypedValue.TYPE_INT_HEX) && Attribute.isProtectionLevel(name)) {
+            out.append(Attribute.getProtectionString(data));
+        } else if (!TypedValue.format(out, dataType, data) && (dataType != TypedValue.TYPE_NULL)) {
+            // Unknown types can only be shown through whatever raw value came with them
+            text.append(rawValue);
+        }
+    }
+
+    private AttributeValues() {
+    }
+}
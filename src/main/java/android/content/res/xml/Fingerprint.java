@@ -0,0 +1,318 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.chunk.TypedValue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Digest of what a document means rather than of how its bytes are laid out, computed in one pass over the event
+ * stream without rendering anything.
+ * <p>
+ * Strings are hashed by content, so the order of the string pool, unused strings and padding do not matter. Attributes
+ * are hashed in resource id order (those without one after, by namespace and name) and an attribute with a resource id
+ * is identified by it alone, so reordering or renaming attributes does not matter either. Prefixes, namespace
+ * declarations, line numbers and whitespace only text are left out.
+ * <p>
+ * Two documents with the same fingerprint therefore render to the same XML up to attribute order and those details.
+ *
+ * @author tstrazzere
+ */
+public final class Fingerprint implements XmlEventHandler {
+
+    public static final String SHA_256 = "SHA-256";
+    // 128 bit, when the fingerprint is only a deduplication key and size matters more than collision resistance
+    public static final String MD5 = "MD5";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Record tags, so that adjacent fields can never be confused with each other
+    private static final byte ELEMENT = 'E';
+    private static final byte ATTRIBUTE = 'A';
+    private static final byte TEXT = 'T';
+    private static final byte END_ELEMENT = 'e';
+
+    private final MessageDigest digest;
+    private final byte[] buffer = new byte[256];
+    private int bufferLength;
+
+    // Attributes of the current element, held back until the element is complete so they can be sorted
+    private int attributeCount;
+    private int[] resourceIds;
+    private String[] namespaceUris;
+    private String[] names;
+    private int[] dataTypes;
+    private int[] data;
+    private String[] rawValues;
+    private int[] order;
+
+    /**
+     * A SHA-256 fingerprint.
+     */
+    public Fingerprint() {
+        this(SHA_256);
+    }
+
+    /**
+     * @param algorithm a {@link MessageDigest} algorithm, e.g. {@link #SHA_256} or {@link #MD5}
+     * @throws IllegalArgumentException if the algorithm is not available
+     */
+    public Fingerprint(String algorithm) {
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalArgumentException("Unknown digest algorithm " + algorithm, exception);
+        }
+        resourceIds = new int[8];
+        namespaceUris = new String[8];
+        names = new String[8];
+        dataTypes = new int[8];
+        data = new int[8];
+        rawValues = new String[8];
+        order = new int[8];
+    }
+
+    /**
+     * @param source
+     * @return the SHA-256 fingerprint of the document
+     */
+    public static byte[] of(XmlEventSource source) {
+        Fingerprint fingerprint = new Fingerprint();
+        try {
+            source.accept(fingerprint);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return fingerprint.digest();
+    }
+
+    /**
+     * @param fingerprint
+     * @return the fingerprint in lower case hex
+     */
+    public static String toHex(byte[] fingerprint) {
+        char[] hex = new char[fingerprint.length * 2];
+        for (int i = 0; i < fingerprint.length; i++) {
+            hex[i * 2] = HEX[(fingerprint[i] >> 4) & 0xF];
+            hex[(i * 2) + 1] = HEX[fingerprint[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Finish the fingerprint of the last document, after which this can be handed the next one.
+     *
+     * @return the digest, 32 bytes for SHA-256 and 16 for MD5
+     */
+    public byte[] digest() {
+        flushAttributes();
+        flush();
+        return digest.digest();
+    }
+
+    @Override
+    public void startDocument() {
+        digest.reset();
+        bufferLength = 0;
+        attributeCount = 0;
+    }
+
+    @Override
+    public void startNamespace(String prefix, String uri) {
+        // Only the uris the elements and attributes resolve to matter
+    }
+
+    @Override
+    public void endNamespace(String prefix, String uri) {
+    }
+
+    @Override
+    public void startElement(String namespaceUri, String prefix, String name, int lineNumber) {
+        flushAttributes();
+        writeByte(ELEMENT);
+        writeString(namespaceUri);
+        writeString(name);
+    }
+
+    @Override
+    public void attribute(String namespaceUri, String prefix, String name, int resourceId, int dataType, int data,
+                          String rawValue) {
+        if (attributeCount == resourceIds.length) {
+            int capacity = attributeCount * 2;
+            resourceIds = Arrays.copyOf(resourceIds, capacity);
+            namespaceUris = Arrays.copyOf(namespaceUris, capacity);
+            names = Arrays.copyOf(names, capacity);
+            dataTypes = Arrays.copyOf(dataTypes, capacity);
+            this.data = Arrays.copyOf(this.data, capacity);
+            rawValues = Arrays.copyOf(rawValues, capacity);
+            order = Arrays.copyOf(order, capacity);
+        }
+        resourceIds[attributeCount] = resourceId;
+        namespaceUris[attributeCount] = namespaceUri;
+        names[attributeCount] = name;
+        dataTypes[attributeCount] = dataType;
+        this.data[attributeCount] = data;
+        rawValues[attributeCount] = rawValue;
+        attributeCount++;
+    }
+
+    @Override
+    public void text(String text, int lineNumber) {
+        if (isWhitespace(text)) {
+            return;
+        }
+        flushAttributes();
+        writeByte(TEXT);
+        writeString(text);
+    }
+
+    @Override
+    public void endElement(String namespaceUri, String prefix, String name) {
+        flushAttributes();
+        writeByte(END_ELEMENT);
+    }
+
+    @Override
+    public void endDocument() {
+        flushAttributes();
+    }
+
+    /**
+     * Hash the attributes of the current element in canonical order.
+     */
+    private void flushAttributes() {
+        // Insertion sort, elements rarely carry more than a handful of attributes
+        for (int i = 0; i < attributeCount; i++) {
+            int attribute = i;
+            int position = i;
+            while (position > 0 && compare(order[position - 1], attribute) > 0) {
+                order[position] = order[position - 1];
+                position--;
+            }
+            order[position] = attribute;
+        }
+
+        for (int i = 0; i < attributeCount; i++) {
+            int attribute = order[i];
+            writeByte(ATTRIBUTE);
+            writeInt(resourceIds[attribute]);
+            if (resourceIds[attribute] == 0) {
+                writeString(namespaceUris[attribute]);
+                writeString(names[attribute]);
+            }
+
+            int dataType = dataTypes[attribute];
+            writeInt(dataType);
+            if (dataType == TypedValue.TYPE_STRING) {
+                writeString(rawValues[attribute]);
+            } else if (((dataType == TypedValue.TYPE_REFERENCE) || (dataType == TypedValue.TYPE_ATTRIBUTE)) &&
+                    (data[attribute] == 0)) {
+                // A reference only known by name
+                writeString(rawValues[attribute]);
+            } else {
+                writeInt(data[attribute]);
+            }
+
+            // Drop the references so a reused fingerprint does not keep the strings of the last document alive
+            namespaceUris[attribute] = null;
+            names[attribute] = null;
+            rawValues[attribute] = null;
+        }
+        attributeCount = 0;
+    }
+
+    /**
+     * Attributes with a resource id first, by id, then the others by namespace and name.
+     */
+    private int compare(int first, int second) {
+        int firstId = resourceIds[first];
+        int secondId = resourceIds[second];
+        if ((firstId == 0) != (secondId == 0)) {
+            return (firstId == 0) ? 1 : -1;
+        }
+        if (firstId != 0) {
+            return Integer.compareUnsigned(firstId, secondId);
+        }
+        int result = compareStrings(namespaceUris[first], namespaceUris[second]);
+        return (result != 0) ? result : compareStrings(names[first], names[second]);
+    }
+
+    private static int compareStrings(String first, String second) {
+        if (first == null || second == null) {
+            return (first == null) ? ((second == null) ? 0 : -1) : 1;
+        }
+        return first.compareTo(second);
+    }
+
+    private void writeByte(byte value) {
+        if (bufferLength == buffer.length) {
+            flush();
+        }
+        buffer[bufferLength++] = value;
+    }
+
+    private void writeInt(int value) {
+        if (bufferLength + 4 > buffer.length) {
+            flush();
+        }
+        buffer[bufferLength++] = (byte) (value >>> 24);
+        buffer[bufferLength++] = (byte) (value >>> 16);
+        buffer[bufferLength++] = (byte) (value >>> 8);
+        buffer[bufferLength++] = (byte) value;
+    }
+
+    /**
+     * Length prefixed UTF-16, with -1 for null so that null and the empty string stay apart.
+     */
+    private void writeString(String value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        int length = value.length();
+        writeInt(length);
+        for (int i = 0; i < length; i++) {
+            if (bufferLength + 2 > buffer.length) {
+                flush();
+            }
+            char character = value.charAt(i);
+            buffer[bufferLength++] = (byte) (character >>> 8);
+            buffer[bufferLength++] = (byte) character;
+        }
+    }
+
+    private void flush() {
+        digest.update(buffer, 0, bufferLength);
+        bufferLength = 0;
+    }
+
+    private static boolean isWhitespace(String text) {
+        if (text == null) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
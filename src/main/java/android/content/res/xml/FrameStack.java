@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Explicit stack of the elements currently open during a traversal, used instead of recursion so that the nesting
+ * depth of a document is only limited by the heap and not by the thread stack size.
+ * <p>
+ * Frames are mutable and reused: {@link #push()} hands back the frame last used at that depth (creating it only the
+ * first time the depth is reached) and the caller overwrites its fields. A frame must therefore not be kept after it
+ * was popped.
+ *
+ * @param <F> the frame type
+ * @author tstrazzere
+ */
+public final class FrameStack<F> {
+
+    private final Supplier<F> frameFactory;
+
+    private Object[] frames;
+    private int depth;
+
+    public FrameStack(Supplier<F> frameFactory) {
+        this.frameFactory = frameFactory;
+        frames = new Object[16];
+    }
+
+    /**
+     * @return the frame for the new top of the stack, still holding whatever it held when last used
+     */
+    @SuppressWarnings("unchecked")
+    public F push() {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, frames.length * 2);
+        }
+        if (frames[depth] == null) {
+            frames[depth] = frameFactory.get();
+        }
+        return (F) frames[depth++];
+    }
+
+    /**
+     * @return the top frame, or null if the stack is empty
+     */
+    @SuppressWarnings("unchecked")
+    public F peek() {
+        return (depth > 0) ? (F) frames[depth - 1] : null;
+    }
+
+    /**
+     * @return the frame which was on top, or null if the stack was empty
+     */
+    @SuppressWarnings("unchecked")
+    public F pop() {
+        return (depth > 0) ? (F) frames[--depth] : null;
+    }
+
+    public boolean isEmpty() {
+        return depth == 0;
+    }
+
+    /**
+     * @return the number of frames on the stack
+     */
+    public int depth() {
+        return depth;
+    }
+
+    public void clear() {
+        depth = 0;
+    }
+}
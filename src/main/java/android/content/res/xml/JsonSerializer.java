@@ -0,0 +1,326 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.chunk.TypedValue;
+import android.content.res.jfr.RenderEvent;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Renders a document as JSON straight from the event stream into an {@link Appendable}, without building the XML or
+ * any tree first. The whole document is written on one line, followed by a newline, so documents can be streamed one
+ * per line:
+ * <pre>
+ * {"elements":[{"name":"manifest","line":2,
+ *   "namespaces":[{"prefix":"android","uri":"http://schemas.android.com/apk/res/android"}],
+ *   "attributes":[{"name":"versionCode","namespaceUri":"http://schemas.android.com/apk/res/android",
+ *     "prefix":"android","resourceId":16843291,"type":"int","data":3133,"value":"3133"}],
+ *   "children":[{"text":"...","line":3}]}]}
+ * </pre>
+ * Empty namespace uris and prefixes, unknown line numbers, missing resource ids and empty lists are left out.
+ * "value" is the same text the XML output shows, "data" is the raw Res_value data word and is absent for strings.
+ *
+ * @author tstrazzere
+ */
+public class JsonSerializer implements XmlEventHandler {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Appendable out;
+
+    // Reused to format each attribute value before it is escaped
+    private final StringBuilder value = new StringBuilder();
+
+    private int depth;
+    private boolean attributesOpen;
+    // Children written so far per depth, depth 0 being the document itself
+    private int[] childCounts;
+
+    // Namespace declarations waiting for the element they belong to, stored as prefix/uri pairs
+    private String[] pendingNamespaces;
+    private int pendingNamespaceCount;
+
+    public JsonSerializer(Appendable out) {
+        this.out = out;
+        childCounts = new int[16];
+        pendingNamespaces = new String[8];
+    }
+
+    /**
+     * Render a whole document into a String.
+     *
+     * @param source
+     * @return the JSON
+     */
+    public static String toJSON(XmlEventSource source) {
+        StringBuilder builder = new StringBuilder();
+        write(source, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Render a whole document directly into a stream, without building the String first.
+     *
+     * @param source
+     * @param stream
+     */
+    public static void print(XmlEventSource source, PrintStream stream) {
+        write(source, stream);
+        stream.flush();
+    }
+
+    /**
+     * Render a whole document into any Appendable, e.g. a Writer.
+     *
+     * @param source
+     * @param out
+     * @throws UncheckedIOException if writing fails
+     */
+    public static void write(XmlEventSource source, Appendable out) {
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        int start = (out instanceof CharSequence) ? ((CharSequence) out).length() : -1;
+
+        try {
+            source.accept(new JsonSerializer(out));
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+
+        if (event.shouldCommit()) {
+            event.format = "json";
+            event.source = source.getClass();
+            event.characters = (start >= 0) ? ((CharSequence) out).length() - start : -1;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void startDocument() throws IOException {
+        depth = 0;
+        childCounts[0] = 0;
+        attributesOpen = false;
+        pendingNamespaceCount = 0;
+        out.append("{\"elements\":[");
+    }
+
+    @Override
+    public void startNamespace(String prefix, String uri) throws IOException {
+        if (pendingNamespaceCount + 2 > pendingNamespaces.length) {
+            pendingNamespaces = Arrays.copyOf(pendingNamespaces, pendingNamespaces.length * 2);
+        }
+        pendingNamespaces[pendingNamespaceCount++] = prefix;
+        pendingNamespaces[pendingNamespaceCount++] = uri;
+    }
+
+    @Override
+    public void endNamespace(String prefix, String uri) throws IOException {
+        // Nothing to write, the declaration went out with its element
+    }
+
+    @Override
+    public void startElement(String namespaceUri, String prefix, String name, int lineNumber) throws IOException {
+        beginChild();
+
+        out.append('{');
+        appendMember("name", name);
+        appendOptionalMember("namespaceUri", namespaceUri);
+        appendOptionalMember("prefix", prefix);
+        appendLine(lineNumber);
+
+        if (pendingNamespaceCount > 0) {
+            out.append(",\"namespaces\":[");
+            for (int i = 0; i < pendingNamespaceCount; i += 2) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append('{');
+                appendMember("prefix", pendingNamespaces[i]);
+                out.append(',');
+                appendMember("uri", pendingNamespaces[i + 1]);
+                out.append('}');
+            }
+            out.append(']');
+            pendingNamespaceCount = 0;
+        }
+
+        depth++;
+        if (depth == childCounts.length) {
+            childCounts = Arrays.copyOf(childCounts, childCounts.length * 2);
+        }
+        childCounts[depth] = 0;
+        attributesOpen = false;
+    }
+
+    @Override
+    public void attribute(String namespaceUri, String prefix, String name, int resourceId, int dataType, int data,
+                          String rawValue) throws IOException {
+        out.append(attributesOpen ? "," : ",\"attributes\":[");
+        attributesOpen = true;
+
+        out.append('{');
+        appendMember("name", name);
+        appendOptionalMember("namespaceUri", namespaceUri);
+        appendOptionalMember("prefix", prefix);
+        if (resourceId != 0) {
+            out.append(",\"resourceId\":");
+            TypedValue.format(out, TypedValue.TYPE_INT_DEC, resourceId);
+        }
+        out.append(',');
+        appendMember("type", TypedValue.getTypeName(dataType));
+        if (dataType != TypedValue.TYPE_STRING) {
+            out.append(",\"data\":");
+            TypedValue.format(out, TypedValue.TYPE_INT_DEC, data);
+        }
+
+        value.setLength(0);
+        AttributeValues.append(value, name, dataType, data, rawValue);
+        out.append(',');
+        appendMember("value", value);
+        out.append('}');
+    }
+
+    @Override
+    public void text(String text, int lineNumber) throws IOException {
+        if (isEmpty(text)) {
+            return;
+        }
+        beginChild();
+        out.append('{');
+        appendMember("text", text);
+        appendLine(lineNumber);
+        out.append('}');
+    }
+
+    @Override
+    public void endElement(String namespaceUri, String prefix, String name) throws IOException {
+        if (depth == 0) {
+            // Unbalanced end tag, nothing to close
+            return;
+        }
+        closeAttributes();
+        if (childCounts[depth] > 0) {
+            out.append(']');
+        }
+        out.append('}');
+        depth--;
+    }
+
+    @Override
+    public void endDocument() throws IOException {
+        // Close anything a truncated document left open
+        while (depth > 0) {
+            endElement(null, null, null);
+        }
+        out.append("]}\n");
+    }
+
+    /**
+     * Separate the next child from what came before it in the current element, opening its children list first.
+     */
+    private void beginChild() throws IOException {
+        closeAttributes();
+        if (childCounts[depth] > 0) {
+            out.append(',');
+        } else if (depth > 0) {
+            out.append(",\"children\":[");
+        }
+        childCounts[depth]++;
+    }
+
+    private void closeAttributes() throws IOException {
+        if (attributesOpen) {
+            out.append(']');
+            attributesOpen = false;
+        }
+    }
+
+    private void appendLine(int lineNumber) throws IOException {
+        if (lineNumber >= 0) {
+            out.append(",\"line\":");
+            TypedValue.format(out, TypedValue.TYPE_INT_DEC, lineNumber);
+        }
+    }
+
+    private void appendOptionalMember(String key, String text) throws IOException {
+        if (!isEmpty(text)) {
+            out.append(',');
+            appendMember(key, text);
+        }
+    }
+
+    private void appendMember(String key, CharSequence text) throws IOException {
+        out.append('"').append(key).append("\":");
+        appendString(text);
+    }
+
+    /**
+     * Write a JSON string, escaping quotes, backslashes and control characters and copying the runs in between.
+     */
+    private void appendString(CharSequence text) throws IOException {
+        out.append('"');
+        if (text != null) {
+            int start = 0;
+            int length = text.length();
+            for (int i = 0; i < length; i++) {
+                char character = text.charAt(i);
+                if (character >= 0x20 && character != '"' && character != '\\' && character != '\u2028' &&
+                        character != '\u2029') {
+                    continue;
+                }
+                if (i > start) {
+                    out.append(text, start, i);
+                }
+                switch (character) {
+                    case '"':
+                        out.append("\\\"");
+                        break;
+                    case '\\':
+                        out.append("\\\\");
+                        break;
+                    case '\n':
+                        out.append("\\n");
+                        break;
+                    case '\r':
+                        out.append("\\r");
+                        break;
+                    case '\t':
+                        out.append("\\t");
+                        break;
+                    default:
+                        out.append("\\u")
+                                .append(HEX_DIGITS[(character >> 12) & 0xf])
+                                .append(HEX_DIGITS[(character >> 8) & 0xf])
+                                .append(HEX_DIGITS[(character >> 4) & 0xf])
+                                .append(HEX_DIGITS[character & 0xf]);
+                }
+                start = i + 1;
+            }
+            if (start < length) {
+                out.append(text, start, length);
+            }
+        }
+        out.append('"');
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.xml.XmlDocument.Attribute;
+import android.content.res.xml.XmlDocument.Element;
+import android.content.res.xml.XmlDocument.Node;
+import android.content.res.xml.XmlDocument.Text;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Structural diff between two documents, e.g. the manifests of two versions of an app, in either format.
+ * <p>
+ * Elements are matched by namespace, tag name and their android:name attribute (falling back to their position
+ * among siblings of the same tag when they have none), so reordering siblings is not reported as a change. Matched
+ * subtrees with equal {@link Element#getSubtreeHash() hashes} are skipped without being looked at, so the cost
+ * follows the size of the change rather than the size of the documents.
+ *
+ * @author tstrazzere
+ */
+public final class XmlDiff {
+
+    public static final String ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android";
+    // android:name, which protectors sometimes strip from the string pool while leaving the resource id
+    private static final int ANDROID_NAME_RESOURCE_ID = 0x01010003;
+
+    /**
+     * One difference between the documents.
+     */
+    public static final class Change {
+
+        public enum Type {
+            ELEMENT_ADDED,
+            ELEMENT_REMOVED,
+            ATTRIBUTE_ADDED,
+            ATTRIBUTE_REMOVED,
+            ATTRIBUTE_CHANGED,
+            TEXT_CHANGED
+        }
+
+        private final Type type;
+        private final String path;
+        private final Element oldElement;
+        private final Element newElement;
+        private final Attribute oldAttribute;
+        private final Attribute newAttribute;
+
+        Change(Type type, String path, Element oldElement, Element newElement, Attribute oldAttribute,
+               Attribute newAttribute) {
+            this.type = type;
+            this.path = path;
+            this.oldElement = oldElement;
+            this.newElement = newElement;
+            this.oldAttribute = oldAttribute;
+            this.newAttribute = newAttribute;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return XPath like location, e.g. /manifest/application/activity[@android:name='a.Main']/@android:exported
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the element in the old document, null if it was added
+         */
+        public Element getOldElement() {
+            return oldElement;
+        }
+
+        /**
+         * @return the element in the new document, null if it was removed
+         */
+        public Element getNewElement() {
+            return newElement;
+        }
+
+        /**
+         * @return the attribute in the old document, null if it was added or this is not an attribute change
+         */
+        public Attribute getOldAttribute() {
+            return oldAttribute;
+        }
+
+        /**
+         * @return the attribute in the new document, null if it was removed or this is not an attribute change
+         */
+        public Attribute getNewAttribute() {
+            return newAttribute;
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case ELEMENT_ADDED:
+                case ATTRIBUTE_ADDED:
+                    return "+ " + path + ((newAttribute != null) ? " = " + newAttribute.getValue() : "");
+                case ELEMENT_REMOVED:
+                case ATTRIBUTE_REMOVED:
+                    return "- " + path + ((oldAttribute != null) ? " = " + oldAttribute.getValue() : "");
+                case ATTRIBUTE_CHANGED:
+                    return "~ " + path + " : " + oldAttribute.getValue() + " -> " + newAttribute.getValue();
+                default:
+                    return "~ " + path + " : " + getText(oldElement) + " -> " + getText(newElement);
+            }
+        }
+    }
+
+    /**
+     * @param oldDocument
+     * @param newDocument
+     * @return the differences, each element's own changes before those below it, empty if the documents carry the
+     * same content
+     */
+    public static List<Change> diff(XmlDocument oldDocument, XmlDocument newDocument) {
+        List<Change> changes = new ArrayList<Change>();
+
+        // Pairs of matched elements still to compare, walked depth first without recursion
+        ArrayDeque<Object[]> pending = new ArrayDeque<Object[]>();
+        matchChildren("", oldDocument.getRoots(), newDocument.getRoots(), changes, pending);
+
+        while (!pending.isEmpty()) {
+            Object[] pair = pending.pop();
+            Element oldElement = (Element) pair[0];
+            Element newElement = (Element) pair[1];
+            String path = (String) pair[2];
+
+            compareAttributes(path, oldElement, newElement, changes);
+
+            String oldText = getText(oldElement);
+            String newText = getText(newElement);
+            if (!oldText.equals(newText)) {
+                changes.add(new Change(Change.Type.TEXT_CHANGED, path + "/text()", oldElement, newElement, null, null));
+            }
+
+            // Push the matched children in reverse, so they come off the deque in document order
+            ArrayDeque<Object[]> children = new ArrayDeque<Object[]>();
+            matchChildren(path, oldElement.getChildren(), newElement.getChildren(), changes, children);
+            while (!children.isEmpty()) {
+                pending.push(children.removeLast());
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * Diff two parsed documents in either format.
+     *
+     * @param oldSource
+     * @param newSource
+     * @return the differences, see {@link #diff(XmlDocument, XmlDocument)}
+     * @throws IOException if either source fails to replay
+     */
+    public static List<Change> diff(XmlEventSource oldSource, XmlEventSource newSource) throws IOException {
+        return diff(XmlDocument.from(oldSource), XmlDocument.from(newSource));
+    }
+
+    /**
+     * Pair up the child elements of two matched elements. Unmatched ones are reported right away, matched ones with
+     * different subtree hashes are queued in document order for a closer look.
+     */
+    private static void matchChildren(String path, List<? extends Node> oldChildren, List<? extends Node> newChildren,
+                                      List<Change> changes, ArrayDeque<Object[]> matched) {
+        // Old children by key, each key holding its elements in document order
+        Map<String, ArrayDeque<Element>> oldByKey = new HashMap<String, ArrayDeque<Element>>();
+        Map<Element, String> oldPaths = new HashMap<Element, String>();
+        Map<String, Integer> occurrences = new HashMap<String, Integer>();
+        for (Node child : oldChildren) {
+            if (child instanceof Element) {
+                Element element = (Element) child;
+                String key = getKey(element);
+                oldByKey.computeIfAbsent(key, ignored -> new ArrayDeque<Element>()).add(element);
+                oldPaths.put(element, path + "/" + segment(element, key, occurrences));
+            }
+        }
+
+        occurrences.clear();
+        List<Element> added = new ArrayList<Element>();
+        for (Node child : newChildren) {
+            if (!(child instanceof Element)) {
+                continue;
+            }
+            Element newElement = (Element) child;
+            String key = getKey(newElement);
+            String childPath = path + "/" + segment(newElement, key, occurrences);
+
+            ArrayDeque<Element> candidates = oldByKey.get(key);
+            Element oldElement = (candidates != null) ? candidates.poll() : null;
+            if (oldElement == null) {
+                added.add(newElement);
+                changes.add(new Change(Change.Type.ELEMENT_ADDED, childPath, null, newElement, null, null));
+            } else {
+                oldPaths.remove(oldElement);
+                if (oldElement.getSubtreeHash() != newElement.getSubtreeHash()) {
+                    matched.add(new Object[]{oldElement, newElement, childPath});
+                }
+            }
+        }
+
+        for (Node child : oldChildren) {
+            String removedPath = (child instanceof Element) ? oldPaths.get(child) : null;
+            if (removedPath != null) {
+                changes.add(new Change(Change.Type.ELEMENT_REMOVED, removedPath, (Element) child, null, null, null));
+            }
+        }
+    }
+
+    private static void compareAttributes(String path, Element oldElement, Element newElement, List<Change> changes) {
+        List<Attribute> oldAttributes = oldElement.getAttributes();
+        boolean[] seen = new boolean[oldAttributes.size()];
+
+        for (Attribute newAttribute : newElement.getAttributes()) {
+            int index = indexOf(oldAttributes, seen, newAttribute);
+            String attributePath = path + "/@" + qualifiedName(newAttribute);
+            if (index < 0) {
+                changes.add(new Change(Change.Type.ATTRIBUTE_ADDED, attributePath, oldElement, newElement, null,
+                        newAttribute));
+            } else {
+                seen[index] = true;
+                if (!oldAttributes.get(index).hasSameValue(newAttribute)) {
+                    changes.add(new Change(Change.Type.ATTRIBUTE_CHANGED, attributePath, oldElement, newElement,
+                            oldAttributes.get(index), newAttribute));
+                }
+            }
+        }
+
+        for (int i = 0; i < oldAttributes.size(); i++) {
+            if (!seen[i]) {
+                changes.add(new Change(Change.Type.ATTRIBUTE_REMOVED, path + "/@" + qualifiedName(oldAttributes.get(i)),
+                        oldElement, newElement, oldAttributes.get(i), null));
+            }
+        }
+    }
+
+    /**
+     * Attributes are the same when they share a resource id, whatever they are called, since obfuscators rename them
+     * freely; only when one side has no id do the name and namespace decide. Attributes already matched are skipped, so
+     * duplicated attributes pair up in order.
+     */
+    private static int indexOf(List<Attribute> attributes, boolean[] seen, Attribute attribute) {
+        int resourceId = attribute.getResourceId();
+        if (resourceId != 0) {
+            for (int i = 0; i < attributes.size(); i++) {
+                if (!seen[i] && attributes.get(i).getResourceId() == resourceId) {
+                    return i;
+                }
+            }
+        }
+
+        for (int i = 0; i < attributes.size(); i++) {
+            Attribute candidate = attributes.get(i);
+            if (!seen[i] && ((resourceId == 0) || (candidate.getResourceId() == 0)) &&
+                    Objects.equals(candidate.getName(), attribute.getName()) &&
+                    Objects.equals(candidate.getNamespaceUri(), attribute.getNamespaceUri())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the identity of an element among its siblings: namespace, tag and android:name if it has one
+     */
+    private static String getKey(Element element) {
+        String name = getAndroidName(element);
+        return element.getNamespaceUri() + '\u0000' + element.getName() + ((name != null) ? '\u0000' + name : "");
+    }
+
+    private static String getAndroidName(Element element) {
+        for (Attribute attribute : element.getAttributes()) {
+            if ((attribute.getResourceId() == ANDROID_NAME_RESOURCE_ID) ||
+                    ("name".equals(attribute.getName()) && ANDROID_NAMESPACE.equals(attribute.getNamespaceUri()))) {
+                return attribute.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Path segment of an element: its tag, qualified by android:name or by its 1 based position among the siblings
+     * with the same key when that is not the first.
+     */
+    private static String segment(Element element, String key, Map<String, Integer> occurrences) {
+        String tag = qualifiedName(element.getPrefix(), element.getName());
+        Integer seen = occurrences.get(key);
+        int position = (seen == null) ? 1 : seen + 1;
+        occurrences.put(key, position);
+
+        String name = getAndroidName(element);
+        StringBuilder segment = new StringBuilder(tag);
+        if (name != null) {
+            segment.append("[@android:name='").append(name).append("']");
+        }
+        if (position > 1) {
+            segment.append('[').append(position).append(']');
+        }
+        return segment.toString();
+    }
+
+    private static String qualifiedName(Attribute attribute) {
+        return qualifiedName(attribute.getPrefix(), attribute.getName());
+    }
+
+    private static String qualifiedName(String prefix, String name) {
+        return (prefix == null || prefix.isEmpty()) ? name : prefix + ":" + name;
+    }
+
+    private static String getText(Element element) {
+        StringBuilder text = new StringBuilder();
+        for (Node child : element.getChildren()) {
+            if (child instanceof Text) {
+                text.append(((Text) child).getText());
+            }
+        }
+        return text.toString();
+    }
+
+    private XmlDiff() {
+    }
+}
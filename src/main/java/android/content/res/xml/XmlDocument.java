@@ -0,0 +1,518 @@
+/* 
+ * Copyright 2015-2025 Red Naga
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.chunk.TypedValue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Frozen snapshot of a parsed document (from either front end), safe to share between any number of threads which
+ * render or query it concurrently. Everything is resolved when the snapshot is taken - strings, namespace prefixes and
+ * repaired tag names - and nothing is mutated afterwards, so no locking is needed.
+ *
+ * @author tstrazzere
+ */
+public final class XmlDocument implements XmlEventSource {
+
+    private final List<Element> roots;
+
+    private XmlDocument(List<Element> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * Take a snapshot of a parsed document.
+     *
+     * @param source parsed document, which is only read
+     * @return the immutable snapshot
+     * @throws IOException if the source fails to replay
+     */
+    public static XmlDocument from(XmlEventSource source) throws IOException {
+        Builder builder = new Builder();
+        source.accept(builder);
+        return new XmlDocument(Collections.unmodifiableList(builder.roots));
+    }
+
+    /**
+     * @return the document element, or null for an empty document
+     */
+    public Element getRoot() {
+        return roots.isEmpty() ? null : roots.get(0);
+    }
+
+    /**
+     * @return all top level elements, normally just the one
+     */
+    public List<Element> getRoots() {
+        return roots;
+    }
+
+    /**
+     * @param name local element name
+     * @return every element with that name, in document order
+     */
+    public List<Element> getElements(String name) {
+        List<Element> found = new ArrayList<Element>();
+        FrameStack<ElementFrame> stack = new FrameStack<ElementFrame>(ElementFrame::new);
+        for (Element root : roots) {
+            Element element = root;
+            while (element != null) {
+                if (element.name.equals(name)) {
+                    found.add(element);
+                }
+                push(stack, element);
+
+                // Go down into the next child element, or back up until an ancestor still has one
+                element = nextChildElement(stack.peek());
+                while (element == null && stack.pop() != null && !stack.isEmpty()) {
+                    element = nextChildElement(stack.peek());
+                }
+            }
+        }
+        return found;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see android.content.res.xml.XmlEventSource#accept(android.content.res.xml.XmlEventHandler)
+     */
+    @Override
+    public void accept(XmlEventHandler handler) throws IOException {
+        handler.startDocument();
+
+        // Walk the tree with an explicit stack, so deeply nested documents cannot overflow the thread stack
+        FrameStack<ElementFrame> stack = new FrameStack<ElementFrame>(ElementFrame::new);
+        for (Element root : roots) {
+            root.start(handler);
+            push(stack, root);
+
+            while (!stack.isEmpty()) {
+                ElementFrame frame = stack.peek();
+                if (frame.nextChild == frame.element.children.size()) {
+                    stack.pop();
+                    frame.element.end(handler);
+                    continue;
+                }
+
+                Node child = frame.element.children.get(frame.nextChild++);
+                if (child instanceof Element) {
+                    ((Element) child).start(handler);
+                    push(stack, (Element) child);
+                } else {
+                    handler.text(((Text) child).getText(), child.getLineNumber());
+                }
+            }
+        }
+
+        handler.endDocument();
+    }
+
+    private static void push(FrameStack<ElementFrame> stack, Element element) {
+        ElementFrame frame = stack.push();
+        frame.element = element;
+        frame.nextChild = 0;
+    }
+
+    /**
+     * Advance the frame past its next child element, skipping text.
+     *
+     * @return the child element, or null once all children were visited
+     */
+    private static Element nextChildElement(ElementFrame frame) {
+        while (frame.nextChild < frame.element.children.size()) {
+            Node child = frame.element.children.get(frame.nextChild++);
+            if (child instanceof Element) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An element being traversed, with the index of the next child to visit.
+     */
+    private static final class ElementFrame {
+        Element element;
+        int nextChild;
+    }
+
+    @Override
+    public String toString() {
+        return XmlSerializer.toXML(this);
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    static long mix(long hash, String value) {
+        if (value == null) {
+            return mix(hash, -1L);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return mix(hash, (long) value.length());
+    }
+
+    static long mix(long hash, long value) {
+        hash = (hash ^ (value & 0xffffffffL)) * FNV_PRIME;
+        return (hash ^ (value >>> 32)) * FNV_PRIME;
+    }
+
+    /**
+     * Any child of an element.
+     */
+    public static abstract class Node {
+
+        private final int lineNumber;
+
+        Node(int lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+
+        /**
+         * @return source line number, or -1 if unknown
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+    }
+
+    public static final class Text extends Node {
+
+        private final String text;
+
+        Text(String text, int lineNumber) {
+            super(lineNumber);
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    public static final class Namespace {
+
+        private final String prefix;
+        private final String uri;
+
+        Namespace(String prefix, String uri) {
+            this.prefix = prefix;
+            this.uri = uri;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+    }
+
+    public static final class Attribute {
+
+        private final String namespaceUri;
+        private final String prefix;
+        private final String name;
+        private final int resourceId;
+        private final int dataType;
+        private final int data;
+        private final String rawValue;
+
+        Attribute(String namespaceUri, String prefix, String name, int resourceId, int dataType, int data,
+                  String rawValue) {
+            this.namespaceUri = namespaceUri;
+            this.prefix = prefix;
+            this.name = name;
+            this.resourceId = resourceId;
+            this.dataType = dataType;
+            this.data = data;
+            this.rawValue = rawValue;
+        }
+
+        public String getNamespaceUri() {
+            return namespaceUri;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getResourceId() {
+            return resourceId;
+        }
+
+        public int getDataType() {
+            return dataType;
+        }
+
+        public int getData() {
+            return data;
+        }
+
+        public String getRawValue() {
+            return rawValue;
+        }
+
+        /**
+         * @return the value as the XML output shows it, unescaped
+         */
+        public String getValue() {
+            StringBuilder value = new StringBuilder();
+            AttributeValues.append(value, name, dataType, data, rawValue);
+            return value.toString();
+        }
+
+        /**
+         * Compare the typed values. The data word of a string is its string pool index, which says nothing about the
+         * content, so strings only compare their text.
+         *
+         * @param other
+         * @return true if both hold the same value
+         */
+        public boolean hasSameValue(Attribute other) {
+            return (dataType == other.dataType) &&
+                    ((dataType == TypedValue.TYPE_STRING) || (data == other.data)) &&
+                    Objects.equals(rawValue, other.rawValue);
+        }
+
+        long valueHash() {
+            long hash = mix(mix(FNV_OFFSET, namespaceUri), name);
+            hash = mix(hash, resourceId);
+            hash = mix(hash, dataType);
+            if (dataType != TypedValue.TYPE_STRING) {
+                hash = mix(hash, data);
+            }
+            return mix(hash, rawValue);
+        }
+    }
+
+    public static final class Element extends Node {
+
+        private final String namespaceUri;
+        private final String prefix;
+        private final String name;
+        private final List<Namespace> namespaces;
+        private final List<Attribute> attributes;
+        private final List<Node> children;
+        private final long subtreeHash;
+
+        Element(String namespaceUri, String prefix, String name, int lineNumber, List<Namespace> namespaces,
+                List<Attribute> attributes, List<Node> children) {
+            super(lineNumber);
+            this.namespaceUri = namespaceUri;
+            this.prefix = prefix;
+            this.name = name;
+            this.namespaces = namespaces;
+            this.attributes = attributes;
+            this.children = children;
+            subtreeHash = computeSubtreeHash();
+        }
+
+        /**
+         * Children are complete before their parent is created, so their hashes are ready and this is O(1) per
+         * element overall.
+         */
+        private long computeSubtreeHash() {
+            long hash = mix(mix(FNV_OFFSET, namespaceUri), name);
+
+            // Summed so that the attribute order does not matter
+            long attributeHash = 0;
+            for (Attribute attribute : attributes) {
+                attributeHash += attribute.valueHash();
+            }
+            hash = mix(hash, attributeHash);
+
+            for (Node child : children) {
+                hash = mix(hash, (child instanceof Element) ?
+                        ((Element) child).subtreeHash : mix(FNV_OFFSET, ((Text) child).getText()));
+            }
+            return hash;
+        }
+
+        public String getNamespaceUri() {
+            return namespaceUri;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return namespaces declared on this element
+         */
+        public List<Namespace> getNamespaces() {
+            return namespaces;
+        }
+
+        public List<Attribute> getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * @param namespaceUri namespace uri of the attribute, empty for none
+         * @param name         local name of the attribute
+         * @return the first matching attribute or null
+         */
+        public Attribute getAttribute(String namespaceUri, String name) {
+            for (Attribute attribute : attributes) {
+                if (attribute.getName().equals(name) && attribute.getNamespaceUri().equals(namespaceUri)) {
+                    return attribute;
+                }
+            }
+            return null;
+        }
+
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        /**
+         * A 64 bit hash of the content of this element and everything below it: names, namespace uris, attribute
+         * resource ids, typed attribute values (in any order) and text. Prefixes, namespace declarations and line
+         * numbers are left out, so equal hashes mean the subtrees carry the same content.
+         *
+         * @return the subtree hash
+         */
+        public long getSubtreeHash() {
+            return subtreeHash;
+        }
+
+        void start(XmlEventHandler handler) throws IOException {
+            for (Namespace namespace : namespaces) {
+                handler.startNamespace(namespace.getPrefix(), namespace.getUri());
+            }
+            handler.startElement(namespaceUri, prefix, name, getLineNumber());
+            for (Attribute attribute : attributes) {
+                handler.attribute(attribute.namespaceUri, attribute.prefix, attribute.name, attribute.resourceId,
+                        attribute.dataType, attribute.data, attribute.rawValue);
+            }
+        }
+
+        void end(XmlEventHandler handler) throws IOException {
+            handler.endElement(namespaceUri, prefix, name);
+            for (int i = namespaces.size() - 1; i >= 0; i--) {
+                handler.endNamespace(namespaces.get(i).getPrefix(), namespaces.get(i).getUri());
+            }
+        }
+    }
+
+    /**
+     * Records the event stream into the element tree. Elements are only created once their end event arrives, so
+     * every list handed to an Element is already complete and can be wrapped as unmodifiable.
+     */
+    private static class Builder implements XmlEventHandler {
+
+        private final List<Element> roots = new ArrayList<Element>();
+
+        private final ArrayList<Open> open = new ArrayList<Open>();
+        private List<Namespace> pendingNamespaces = new ArrayList<Namespace>();
+
+        private static class Open {
+            String namespaceUri;
+            String prefix;
+            String name;
+            int lineNumber;
+            List<Namespace> namespaces;
+            List<Attribute> attributes = new ArrayList<Attribute>();
+            List<Node> children = new ArrayList<Node>();
+        }
+
+        @Override
+        public void startDocument() {
+        }
+
+        @Override
+        public void startNamespace(String prefix, String uri) {
+            pendingNamespaces.add(new Namespace(prefix, uri));
+        }
+
+        @Override
+        public void endNamespace(String prefix, String uri) {
+        }
+
+        @Override
+        public void startElement(String namespaceUri, String prefix, String name, int lineNumber) {
+            Open element = new Open();
+            element.namespaceUri = namespaceUri;
+            element.prefix = prefix;
+            element.name = name;
+            element.lineNumber = lineNumber;
+            element.namespaces = pendingNamespaces.isEmpty() ?
+                    Collections.<Namespace>emptyList() : Collections.unmodifiableList(pendingNamespaces);
+            pendingNamespaces = new ArrayList<Namespace>();
+            open.add(element);
+        }
+
+        @Override
+        public void attribute(String namespaceUri, String prefix, String name, int resourceId, int dataType, int data,
+                              String rawValue) {
+            if (!open.isEmpty()) {
+                open.get(open.size() - 1).attributes.add(
+                        new Attribute(namespaceUri, prefix, name, resourceId, dataType, data, rawValue));
+            }
+        }
+
+        @Override
+        public void text(String text, int lineNumber) {
+            if (!open.isEmpty()) {
+                open.get(open.size() - 1).children.add(new Text(text, lineNumber));
+            }
+        }
+
+        @Override
+        public void endElement(String namespaceUri, String prefix, String name) {
+            if (open.isEmpty()) {
+                // Unbalanced end tag, nothing to close
+                return;
+            }
+            Open closed = open.remove(open.size() - 1);
+            Element element = new Element(closed.namespaceUri, closed.prefix, closed.name, closed.lineNumber,
+                    closed.namespaces, Collections.unmodifiableList(closed.attributes),
+                    Collections.unmodifiableList(closed.children));
+            if (open.isEmpty()) {
+                roots.add(element);
+            } else {
+                open.get(open.size() - 1).children.add(element);
+            }
+        }
+
+        @Override
+        public void endDocument() {
+            // Close anything left dangling by a truncated document
+            while (!open.isEmpty()) {
+                Open dangling = open.get(open.size() - 1);
+                endElement(dangling.namespaceUri, dangling.prefix, dangling.name);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/* 
+ * Copyright 2015-2025 Red Naga
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import java.io.IOException;
+
+/**
+ * Receiver for the document event stream produced by both the AXML and the protobuf front ends.
+ * <p>
+ * Events arrive in document order. Namespace declarations are reported before the element which declares them and
+ * closed after the matching end element, the same way the AXML chunk stream lays them out. Attributes follow their
+ * start element directly. Prefixes are already resolved by the front end, an empty prefix means "no prefix".
+ *
+ * @author tstrazzere
+ */
+public interface XmlEventHandler {
+
+    public void startDocument() throws IOException;
+
+    /**
+     * @param prefix prefix being declared, empty for the default namespace
+     * @param uri    namespace uri
+     */
+    public void startNamespace(String prefix, String uri) throws IOException;
+
+    public void endNamespace(String prefix, String uri) throws IOException;
+
+    /**
+     * @param namespaceUri uri of the element namespace, empty if none
+     * @param prefix       resolved prefix for the namespace, empty if none
+     * @param name         local name of the element
+     * @param lineNumber   source line number, or -1 if unknown
+     */
+    public void startElement(String namespaceUri, String prefix, String name, int lineNumber) throws IOException;
+
+    /**
+     * A typed attribute of the last started element.
+     *
+     * @param namespaceUri uri of the attribute namespace, empty if none
+     * @param prefix       resolved prefix for the namespace, empty if none
+     * @param name         local name of the attribute
+     * @param resourceId   resource id of the attribute name, 0 if unknown
+     * @param dataType     Res_value data type, see {@link android.content.res.chunk.TypedValue}
+     * @param data         Res_value data
+     * @param rawValue     string form of the value, required for string types and used in place of the resource id
+     *                     for references when present, otherwise null
+     */
+    public void attribute(String namespaceUri, String prefix, String name, int resourceId, int dataType, int data,
+                          String rawValue) throws IOException;
+
+    public void text(String text, int lineNumber) throws IOException;
+
+    public void endElement(String namespaceUri, String prefix, String name) throws IOException;
+
+    public void endDocument() throws IOException;
+}
@@ -0,0 +1,34 @@
+/* 
+ * Copyright 2015-2025 Red Naga
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import java.io.IOException;
+
+/**
+ * Anything which can replay a parsed document as a stream of {@link XmlEventHandler} events.
+ *
+ * @author tstrazzere
+ */
+public interface XmlEventSource {
+
+    /**
+     * Walk the whole document, reporting every event to the handler.
+     *
+     * @param handler
+     * @throws IOException if the handler fails
+     */
+    public void accept(XmlEventHandler handler) throws IOException;
+}
@@ -0,0 +1,254 @@
+/* 
+ * Copyright 2015-2025 Red Naga
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.jfr.RenderEvent;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+
+/**
+ * The one XML renderer used for both AXML and protobuf documents, writing straight into an {@link Appendable}.
+ * <p>
+ * Elements are written with one attribute per line and are self closed when they have no children. The start tag is
+ * left open until the next event tells us whether children follow, so nothing needs to be buffered or re-scanned.
+ *
+ * @author tstrazzere
+ */
+public class XmlSerializer implements XmlEventHandler {
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n";
+    private static final String TABS = "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t";
+
+    private final Appendable out;
+    private final AttributeValues.Text escaper = this::escape;
+
+    private int depth;
+    private boolean startTagOpen;
+
+    // Namespace declarations waiting for the element they belong to, stored as prefix/uri pairs
+    private String[] pendingNamespaces;
+    private int pendingNamespaceCount;
+
+    public XmlSerializer(Appendable out) {
+        this.out = out;
+        pendingNamespaces = new String[8];
+    }
+
+    /**
+     * Render a whole document into a String.
+     *
+     * @param source
+     * @return the XML
+     */
+    public static String toXML(XmlEventSource source) {
+        StringBuilder builder = new StringBuilder();
+        render(source, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Render a whole document directly into a stream, without building the String first.
+     *
+     * @param source
+     * @param stream
+     */
+    public static void print(XmlEventSource source, PrintStream stream) {
+        render(source, stream);
+        stream.flush();
+    }
+
+    private static void render(XmlEventSource source, Appendable out) {
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        int start = (out instanceof CharSequence) ? ((CharSequence) out).length() : -1;
+
+        try {
+            source.accept(new XmlSerializer(out));
+        } catch (IOException exception) {
+            // Neither StringBuilder nor PrintStream actually throw, but keep the cause if something else does
+            throw new UncheckedIOException(exception);
+        }
+
+        if (event.shouldCommit()) {
+            event.format = "xml";
+            event.source = source.getClass();
+            event.characters = (start >= 0) ? ((CharSequence) out).length() - start : -1;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void startDocument() throws IOException {
+        depth = 0;
+        startTagOpen = false;
+        pendingNamespaceCount = 0;
+        out.append(XML_DECLARATION);
+    }
+
+    @Override
+    public void startNamespace(String prefix, String uri) throws IOException {
+        if (pendingNamespaceCount + 2 > pendingNamespaces.length) {
+            String[] grown = new String[pendingNamespaces.length * 2];
+            System.arraycopy(pendingNamespaces, 0, grown, 0, pendingNamespaceCount);
+            pendingNamespaces = grown;
+        }
+        pendingNamespaces[pendingNamespaceCount++] = prefix;
+        pendingNamespaces[pendingNamespaceCount++] = uri;
+    }
+
+    @Override
+    public void endNamespace(String prefix, String uri) throws IOException {
+        // Nothing to write, the declaration went out with its element
+    }
+
+    @Override
+    public void startElement(String namespaceUri, String prefix, String name, int lineNumber) throws IOException {
+        closeStartTag();
+
+        indent(depth);
+        out.append('<');
+        appendName(prefix, name);
+
+        for (int i = 0; i < pendingNamespaceCount; i += 2) {
+            out.append('\n');
+            indent(depth + 1);
+            out.append("xmlns");
+            if (!isEmpty(pendingNamespaces[i])) {
+                out.append(':').append(pendingNamespaces[i]);
+            }
+            out.append("=\"");
+            escape(pendingNamespaces[i + 1]);
+            out.append('"');
+        }
+        pendingNamespaceCount = 0;
+
+        depth++;
+        startTagOpen = true;
+    }
+
+    @Override
+    public void attribute(String namespaceUri, String prefix, String name, int resourceId, int dataType, int data,
+                          String rawValue) throws IOException {
+        out.append('\n');
+        indent(depth);
+        appendName(prefix, name);
+        out.append("=\"");
+        AttributeValues.append(out, escaper, name, dataType, data, rawValue);
+        out.append('"');
+    }
+
+    @Override
+    public void text(String text, int lineNumber) throws IOException {
+        if (isEmpty(text)) {
+            return;
+        }
+        closeStartTag();
+        indent(depth);
+        escape(text);
+        out.append('\n');
+    }
+
+    @Override
+    public void endElement(String namespaceUri, String prefix, String name) throws IOException {
+        depth--;
+        if (startTagOpen) {
+            out.append(" />\n");
+            startTagOpen = false;
+        } else {
+            indent(depth);
+            out.append("</");
+            appendName(prefix, name);
+            out.append(">\n");
+        }
+    }
+
+    @Override
+    public void endDocument() throws IOException {
+        closeStartTag();
+    }
+
+    private void closeStartTag() throws IOException {
+        if (startTagOpen) {
+            out.append(">\n");
+            startTagOpen = false;
+        }
+    }
+
+    private void appendName(String prefix, String name) throws IOException {
+        if (!isEmpty(prefix)) {
+            out.append(prefix).append(':');
+        }
+        out.append(name != null ? name : "");
+    }
+
+    private void indent(int level) throws IOException {
+        while (level > TABS.length()) {
+            out.append(TABS);
+            level -= TABS.length();
+        }
+        if (level > 0) {
+            out.append(TABS, 0, level);
+        }
+    }
+
+    /**
+     * Escape the five XML special characters, copying the runs in between untouched.
+     */
+    private void escape(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            String replacement;
+            switch (value.charAt(i)) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                case '\'':
+                    replacement = "&apos;";
+                    break;
+                default:
+                    continue;
+            }
+            if (i > start) {
+                out.append(value, start, i);
+            }
+            out.append(replacement);
+            start = i + 1;
+        }
+        if (start < length) {
+            out.append(value, start, length);
+        }
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+}
@@ -16,11 +16,17 @@
 package diff.rednaga;
 
 import android.content.res.AXMLResource;
+import android.content.res.BinaryXML;
 import android.content.res.ProtobufXMLResource;
+import android.content.res.cache.ResultCache;
+import android.content.res.xml.JsonSerializer;
+import android.content.res.xml.XmlEventSource;
+import android.content.res.xml.XmlSerializer;
 
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.file.Files;
 import java.util.Properties;
 
 /**
@@ -34,6 +40,8 @@ import java.util.Properties;
 public class AXMLPrinter {
 
     private static final int AXML_MAGIC = 0x00080003;
+    private static final long CACHE_MEMORY_BYTES = 16L * 1024 * 1024;
+    private static final long CACHE_DISK_BYTES = 256L * 1024 * 1024;
     
     private static String VERSION;
 
@@ -57,7 +65,7 @@ public class AXMLPrinter {
 
     public static void main(String[] arguments) throws IOException {
         if (arguments.length < 1) {
-            System.out.println("Usage: AXMLPrinter <binary xml file>");
+            printUsage();
             return;
         }
 
@@ -67,9 +75,46 @@ public class AXMLPrinter {
             return;
         }
 
-        File inputFile = new File(arguments[0]);
+        int argument = 0;
+        File cacheDirectory = null;
+        boolean json = false;
+        while (argument < arguments.length && arguments[argument].startsWith("-")) {
+            if (argument + 1 >= arguments.length) {
+                printUsage();
+                return;
+            }
+            if (arguments[argument].equalsIgnoreCase("-cache")) {
+                cacheDirectory = new File(arguments[argument + 1]);
+            } else if (arguments[argument].equalsIgnoreCase("-format") &&
+                    (arguments[argument + 1].equalsIgnoreCase("xml") || arguments[argument + 1].equalsIgnoreCase("json"))) {
+                json = arguments[argument + 1].equalsIgnoreCase("json");
+            } else {
+                printUsage();
+                return;
+            }
+            argument += 2;
+        }
+        if (argument >= arguments.length) {
+            printUsage();
+            return;
+        }
+
+        File inputFile = new File(arguments[argument]);
         if (!inputFile.exists()) {
-            System.err.println("Error: File not found: " + arguments[0]);
+            System.err.println("Error: File not found: " + arguments[argument]);
+            return;
+        }
+        String outputPath = (arguments.length > argument + 1) ? arguments[argument + 1] : null;
+
+        if (cacheDirectory != null && outputPath == null) {
+            // Nothing needs the parsed model, so a previously seen input can be answered from the cache
+            try {
+                ResultCache cache = new ResultCache(CACHE_MEMORY_BYTES, cacheDirectory, CACHE_DISK_BYTES);
+                byte[] data = Files.readAllBytes(inputFile.toPath());
+                System.out.print(json ? BinaryXML.toJSON(data, cache) : BinaryXML.toXML(data, cache));
+            } catch (IOException e) {
+                System.err.println("Error reading file: " + e.getMessage());
+            }
             return;
         }
 
@@ -103,10 +148,10 @@ public class AXMLPrinter {
                 // Traditional AXML format
                 AXMLResource axmlResource = new AXMLResource();
                 axmlResource.read(bufferedInputStream);
-                axmlResource.print();
+                print(axmlResource, json);
 
-                if (arguments.length > 1) {
-                    File file = new File(arguments[1]);
+                if (outputPath != null) {
+                    File file = new File(outputPath);
                     fileOutputStream = new FileOutputStream(file);
                     axmlResource.write(fileOutputStream);
                 }
@@ -115,9 +160,9 @@ public class AXMLPrinter {
                 // Note: Protobuf format is read-only. Writing protobuf format back to AXML 
                 // is not supported as it requires conversion between two different binary formats.
                 ProtobufXMLResource protobufResource = new ProtobufXMLResource(bufferedInputStream);
-                protobufResource.print();
+                print(protobufResource, json);
 
-                if (arguments.length > 1) {
+                if (outputPath != null) {
                     System.err.println("Warning: Writing protobuf format back to AXML is not supported.");
                     System.err.println("Protobuf format (used in Android App Bundles) cannot be converted to traditional AXML format.");
                 }
@@ -156,6 +201,18 @@ public class AXMLPrinter {
         }
     }
 
+    private static void print(XmlEventSource source, boolean json) {
+        if (json) {
+            JsonSerializer.print(source, System.out);
+        } else {
+            XmlSerializer.print(source, System.out);
+        }
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: AXMLPrinter [-cache <directory>] [-format xml|json] <binary xml file> [output]");
+    }
+
     /*
      * Avoid anyone accidentally (purposefully?) Instantiating this class
      */
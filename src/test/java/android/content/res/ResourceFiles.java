@@ -0,0 +1,24 @@
+package android.content.res;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads the sample documents from the test resources.
+ *
+ * @author tstrazzere
+ */
+final class ResourceFiles {
+
+    static byte[] load(String file) throws IOException {
+        try (InputStream stream = ResourceFiles.class.getClassLoader().getResourceAsStream(file)) {
+            if (stream == null) {
+                throw new IOException("No test resource " + file);
+            }
+            return stream.readAllBytes();
+        }
+    }
+
+    private ResourceFiles() {
+    }
+}
@@ -1,8 +1,10 @@
 package android.content.res;
 
 import android.content.res.chunk.AttributeType;
+import android.content.res.chunk.ChunkType;
 import android.content.res.chunk.types.Attribute;
 import android.content.res.chunk.types.StartTag;
+import android.content.res.metrics.Phase;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -79,6 +81,91 @@ public class TestAXMLResource {
             }
         }
 
+        @Test
+        public void testToXmlIsRepeatable() throws IOException {
+            InputStream testStream = this.getClass().getClassLoader().getResourceAsStream(largeFromMalware);
+
+            underTest = new AXMLResource(testStream);
+
+            // Rendering must not modify the resource, e.g. by collecting namespaces again
+            assertEquals(underTest.toXML(), underTest.toXML());
+        }
+
+        @Test
+        public void testReadingIntoReusedResource() throws IOException {
+            String[] files = {largeFromMalware, "test.xml", "test1.xml", largeFromMalware, "test3.xml", "test2.xml",
+                    "test.xml"};
+
+            // One resource reading every file in turn must render exactly what a fresh resource renders
+            for (String file : files) {
+                underTest.read(this.getClass().getClassLoader().getResourceAsStream(file));
+                AXMLResource fresh = new AXMLResource(this.getClass().getClassLoader().getResourceAsStream(file));
+
+                assertEquals(fresh.toXML(), underTest.toXML(), file);
+            }
+        }
+
+        @Test
+        public void testParseStats() throws IOException {
+            InputStream testStream = this.getClass().getClassLoader().getResourceAsStream(largeFromMalware);
+            int length = testStream.available();
+
+            underTest.read(testStream);
+            ParseStats stats = underTest.getParseStats();
+
+            assertTrue(stats.isComplete());
+            assertEquals(length, stats.getBytesRead());
+            assertEquals(1, stats.getChunkCount(ChunkType.STRING_SECTION));
+            assertEquals(stats.getChunkCount(ChunkType.START_TAG), stats.getChunkCount(ChunkType.END_TAG));
+            assertEquals(underTest.getStringSection().getStringCount(), stats.getStringCount());
+            assertEquals(stats.getStringCount(), stats.getStringsDecoded());
+            assertTrue(stats.getMaxDepth() > 1);
+            assertTrue(stats.getPhaseNanos(Phase.STRING_POOL) > 0);
+            assertEquals(0, stats.getPhaseNanos(Phase.RENDER));
+        }
+
+        @Test
+        public void testCompactStrings() throws IOException {
+            underTest.read(this.getClass().getClassLoader().getResourceAsStream(largeFromMalware));
+
+            // Every edit adds a string, and leaves the one it replaced behind
+            for (int i = 0; i < 5; i++) {
+                underTest.injectApplicationAttribute(new Attribute("android", "name", "edit" + i, AttributeType.STRING,
+                        null, underTest.getStringSection()));
+            }
+            String xml = underTest.toXML();
+            ByteArrayOutputStream before = new ByteArrayOutputStream();
+            underTest.write(before);
+
+            assertTrue(underTest.compactStrings(true) >= 4);
+            assertEquals(-1, underTest.getStringSection().getStringIndex("edit3"));
+            assertEquals(xml, underTest.toXML());
+
+            ByteArrayOutputStream after = new ByteArrayOutputStream();
+            underTest.write(after);
+            assertTrue(after.size() < before.size());
+            assertEquals(xml, new AXMLResource(new ByteArrayInputStream(after.toByteArray())).toXML());
+
+            // Nothing left to drop
+            assertEquals(0, underTest.compactStrings(false));
+        }
+
+        @Test
+        public void testParallelStringDecoding() throws IOException {
+            String[] files = {largeFromMalware, "test.xml", "test1.xml", "test2.xml", "test3.xml",
+                    "qihoo_jiagu_issue8.xml"};
+
+            // Decode every pool in parallel, even the smallest
+            underTest.setParallelThreshold(1);
+            for (String file : files) {
+                String serial = new AXMLResource(this.getClass().getClassLoader().getResourceAsStream(file)).toXML();
+                underTest.read(this.getClass().getClassLoader().getResourceAsStream(file));
+
+                assertEquals(serial, underTest.toXML(), file);
+            }
+            assertEquals(Integer.MAX_VALUE, new AXMLResource().getParallelThreshold());
+        }
+
         @Test
         public void testInsertApplicationAttribute() throws IOException {
             InputStream testStream = this.getClass().getClassLoader().getResourceAsStream(largeFromMalware);
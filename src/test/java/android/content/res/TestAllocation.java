@@ -0,0 +1,91 @@
+package android.content.res;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation budgets for reading, rendering and writing the checked in documents, measured with the per thread
+ * allocation counter of the HotSpot ThreadMXBean.
+ * <p>
+ * The budgets are about one and a half times what the current code allocates once the JIT has settled, so they leave
+ * room for JVM differences but not for garbage per chunk, per string or per byte creeping back in. Lower them when an
+ * optimization lands, raise them only with a reason.
+ *
+ * @author tstrazzere
+ */
+public class TestAllocation {
+
+    @Nested
+    class FunctionalTest {
+
+        // Enough for C2 to compile the hot paths, and take the minimum so a stray allocation does not count
+        private static final int ITERATIONS = 500;
+
+        // file, read, toXML, write (in bytes, not counting the output stream)
+        private final Object[][] budgets = {
+                {"test.xml", 4 * 1024, 6 * 1024, 32 * 1024},
+                {"test1.xml", 6 * 1024, 28 * 1024, 88 * 1024},
+                {"test2.xml", 5 * 1024, 26 * 1024, 72 * 1024},
+                {"test3.xml", 5 * 1024, 24 * 1024, 64 * 1024},
+                {"large_from_malware.xml", 20 * 1024, 56 * 1024, 224 * 1024},
+                {"qihoo_jiagu_issue8.xml", 48 * 1024, 192 * 1024, 448 * 1024},
+        };
+
+        private com.sun.management.ThreadMXBean allocationCounter() {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "No per thread allocation counter");
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) bean;
+            assumeTrue(counter.isThreadAllocatedMemorySupported(), "Allocation counter not supported");
+            if (!counter.isThreadAllocatedMemoryEnabled()) {
+                counter.setThreadAllocatedMemoryEnabled(true);
+            }
+            return counter;
+        }
+
+        @Test
+        public void testAllocationBudgets() throws IOException {
+            com.sun.management.ThreadMXBean counter = allocationCounter();
+            long thread = Thread.currentThread().getId();
+
+            for (Object[] budget : budgets) {
+                String file = (String) budget[0];
+                byte[] data = ResourceFiles.load(file);
+                AXMLResource resource = new AXMLResource();
+                ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 2);
+
+                long read = Long.MAX_VALUE;
+                long render = Long.MAX_VALUE;
+                long write = Long.MAX_VALUE;
+                for (int i = 0; i < ITERATIONS; i++) {
+                    ByteArrayInputStream input = new ByteArrayInputStream(data);
+                    output.reset();
+
+                    long start = counter.getThreadAllocatedBytes(thread);
+                    resource.read(input);
+                    long afterRead = counter.getThreadAllocatedBytes(thread);
+                    resource.toXML();
+                    long afterRender = counter.getThreadAllocatedBytes(thread);
+                    resource.write(output);
+                    long afterWrite = counter.getThreadAllocatedBytes(thread);
+
+                    read = Math.min(read, afterRead - start);
+                    render = Math.min(render, afterRender - afterRead);
+                    write = Math.min(write, afterWrite - afterRender);
+                }
+
+                assertTrue(read <= (int) budget[1], file + " read allocated " + read + " bytes");
+                assertTrue(render <= (int) budget[2], file + " toXML allocated " + render + " bytes");
+                assertTrue(write <= (int) budget[3], file + " write allocated " + write + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package android.content.res;
+
+import android.content.res.chunk.ChunkType;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class TestAnomalyListener {
+
+    @Nested
+    class FunctionalTest {
+
+        List<String> anomalies = new ArrayList<>();
+
+        AnomalyListener recorder = (kind, offset, value) -> anomalies.add(kind + "@" + offset + "=" + value);
+
+        private void read(byte[] data) throws IOException {
+            read(data, ParseLimits.DEFAULT);
+        }
+
+        private void read(byte[] data, ParseLimits limits) throws IOException {
+            AXMLResource resource = new AXMLResource();
+            resource.setLimits(limits);
+            resource.setAnomalyListener(recorder);
+            resource.read(new ByteArrayInputStream(data));
+        }
+
+        private int find(byte[] data, ChunkType type) {
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            for (int offset = 8; offset + 8 <= data.length; offset += 4) {
+                if (buffer.getInt(offset) == type.getIntType()) {
+                    return offset;
+                }
+            }
+            throw new AssertionError("No " + type);
+        }
+
+        @Test
+        public void testCleanFile() throws IOException {
+            read(ResourceFiles.load("large_from_malware.xml"));
+
+            assertEquals(new ArrayList<String>(), anomalies);
+        }
+
+        @Test
+        public void testMangledNames() throws IOException {
+            read(ResourceFiles.load("qihoo_jiagu_issue8.xml"));
+
+            assertTrue(anomalies.stream().anyMatch(anomaly -> anomaly.startsWith("MANGLED_NAME@")), anomalies.toString());
+        }
+
+        @Test
+        public void testOutOfRangeIndex() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            int startTag = find(data, ChunkType.START_TAG);
+            // String data of the first attribute of the first start tag
+            ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(startTag + 36 + 8, 0x7FFF);
+
+            read(data);
+
+            assertEquals(Arrays.asList("INDEX_OUT_OF_RANGE@" + startTag + "=" + 0x7FFF), anomalies);
+        }
+
+        @Test
+        public void testParallelPoolReportsMisplacedStyles() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            int stringSection = find(data, ChunkType.STRING_SECTION);
+            // Turn the offset of the last string into that of a style, without saying where the styles start
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(stringSection + 8, buffer.getInt(stringSection + 8) - 1);
+            buffer.putInt(stringSection + 12, 1);
+            buffer.putInt(stringSection + 24, 0);
+
+            read(data, null);
+            List<String> serial = new ArrayList<>(anomalies);
+            assertTrue(serial.contains("INDEX_OUT_OF_RANGE@" + stringSection + "=0"), serial.toString());
+
+            anomalies.clear();
+            AXMLResource resource = new AXMLResource();
+            resource.setParallelThreshold(1);
+            resource.setAnomalyListener(recorder);
+            resource.read(new ByteArrayInputStream(data));
+            assertEquals(serial, anomalies);
+        }
+
+        @Test
+        public void testSizeMismatch() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(4, data.length + 16);
+
+            read(data);
+
+            assertEquals(Arrays.asList("SIZE_MISMATCH@0=" + data.length), anomalies);
+        }
+
+        @Test
+        public void testTruncatedFile() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            // Cut the file inside the string pool
+            int stringSection = find(data, ChunkType.STRING_SECTION);
+            byte[] truncated = Arrays.copyOf(data, stringSection + 64);
+
+            // Without limits nothing is thrown or printed, the anomaly is reported instead
+            read(truncated, null);
+
+            assertTrue(anomalies.get(0).startsWith("READ_ERROR@" + stringSection + "="), anomalies.toString());
+        }
+
+        @Test
+        public void testTruncatedInsideTags() throws IOException {
+            for (String file : new String[]{"test.xml", "test2.xml", "large_from_malware.xml"}) {
+                byte[] data = ResourceFiles.load(file);
+                int firstTag = find(data, ChunkType.START_TAG);
+
+                // Listening must not change the outcome of a read, wherever the cut falls in the elements
+                for (int length = firstTag; length < data.length; length += 4) {
+                    anomalies.clear();
+                    read(Arrays.copyOf(data, length), null);
+                    assertTrue(anomalies.stream().anyMatch(anomaly -> anomaly.startsWith("READ_ERROR@") ||
+                            anomaly.startsWith("SIZE_MISMATCH@")), file + " cut at " + length);
+                }
+            }
+        }
+    }
+}
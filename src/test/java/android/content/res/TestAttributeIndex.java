@@ -0,0 +1,128 @@
+package android.content.res;
+
+import android.content.res.chunk.TypedValue;
+import android.content.res.chunk.types.Attribute;
+import android.content.res.chunk.types.Chunk;
+import android.content.res.chunk.types.StartTag;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class TestAttributeIndex {
+
+    @Nested
+    class FunctionalTest {
+
+        private static final int NAME = 0x01010003;
+        private static final int VERSION_CODE = 0x0101021b;
+
+        private AXMLResource read(byte[] data) throws IOException {
+            AXMLResource resource = new AXMLResource();
+            resource.read(new ByteArrayInputStream(data));
+            return resource;
+        }
+
+        private StartTag tag(AXMLResource resource, String tagName) {
+            for (Chunk chunk : resource.chunks) {
+                if (chunk instanceof StartTag && ((StartTag) chunk).getName(resource.stringSection).equals(tagName)) {
+                    return (StartTag) chunk;
+                }
+            }
+            throw new AssertionError("No " + tagName);
+        }
+
+        /**
+         * Overwrite the characters of a UTF-16 pool string in place, the way a protector renames attributes.
+         */
+        private void rename(byte[] data, String from, char to) {
+            byte[] needle = new byte[2 + (from.length() * 2)];
+            needle[0] = (byte) from.length();
+            System.arraycopy(from.getBytes(StandardCharsets.UTF_16LE), 0, needle, 2, from.length() * 2);
+
+            for (int i = 0; i + needle.length <= data.length; i++) {
+                int j = 0;
+                while (j < needle.length && data[i + j] == needle[j]) {
+                    j++;
+                }
+                if (j == needle.length) {
+                    for (int k = 0; k < from.length(); k++) {
+                        data[i + 2 + (k * 2)] = (byte) to;
+                    }
+                    return;
+                }
+            }
+            throw new AssertionError("No " + from + " in the pool");
+        }
+
+        @Test
+        public void testIndexMatchesScan() throws IOException {
+            for (String file : new String[]{"test.xml", "large_from_malware.xml", "qihoo_jiagu_issue8.xml"}) {
+                AXMLResource resource = read(ResourceFiles.load(file));
+                AttributeIndex index = resource.getAttributeIndex();
+                assertSame(index, resource.getAttributeIndex());
+
+                int names = 0;
+                for (Chunk chunk : resource.chunks) {
+                    if (chunk instanceof StartTag) {
+                        Attribute attribute = ((StartTag) chunk).getAttributeByResourceId(resource.resourceSection,
+                                NAME);
+                        if (attribute != null) {
+                            assertTrue(index.getAttributes(NAME).contains(attribute), file);
+                            names++;
+                        }
+                    }
+                }
+                assertEquals(names, index.count(NAME), file);
+                assertEquals(names, index.getTags(NAME).size(), file);
+                assertFalse(index.contains(0x7f000000), file);
+                assertNull(index.getAttribute(0x7f000000), file);
+                assertTrue(index.getAttributes(0).isEmpty(), file);
+            }
+        }
+
+        @Test
+        public void testLookupSurvivesRenamedAttribute() throws IOException {
+            byte[] data = ResourceFiles.load("large_from_malware.xml");
+            AXMLResource original = read(data);
+            Attribute expected = original.getAttributeIndex().getAttribute(VERSION_CODE);
+            assertEquals(TypedValue.TYPE_INT_DEC, TypedValue.getDataType(expected.getAttributeType()));
+
+            rename(data, "versionCode", 'x');
+            AXMLResource renamed = read(data);
+            StartTag manifest = tag(renamed, "manifest");
+            Attribute attribute = manifest.getAttributeByResourceId(renamed.resourceSection, VERSION_CODE);
+            assertEquals("xxxxxxxxxxx", renamed.stringSection.getString(attribute.getNameIndex()));
+            assertEquals(expected.getData(), attribute.getData());
+
+            List<StartTag> tags = renamed.getAttributeIndex().getTags(VERSION_CODE);
+            assertEquals(1, tags.size());
+            assertSame(manifest, tags.get(0));
+            assertSame(attribute, renamed.getAttributeIndex().getAttribute(VERSION_CODE));
+        }
+
+        @Test
+        public void testIndexIsRebuiltAfterRead() throws IOException {
+            AXMLResource resource = read(ResourceFiles.load("test.xml"));
+            AttributeIndex first = resource.getAttributeIndex();
+
+            resource.read(new ByteArrayInputStream(ResourceFiles.load("qihoo_jiagu_issue8.xml")));
+            AttributeIndex second = resource.getAttributeIndex();
+            assertNotEquals(first, second);
+            assertSame(tag(resource, "manifest"), second.getTags(VERSION_CODE).get(0));
+        }
+    }
+}
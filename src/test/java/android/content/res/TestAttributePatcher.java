@@ -0,0 +1,175 @@
+package android.content.res;
+
+import android.content.res.chunk.ChunkType;
+import android.content.res.chunk.TypedValue;
+import android.content.res.chunk.types.Attribute;
+import android.content.res.chunk.types.StartTag;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class TestAttributePatcher {
+
+    @Nested
+    class FunctionalTest {
+
+        private static final int ALLOW_BACKUP = 0x01010280;
+
+        private AXMLResource read(byte[] data) throws IOException {
+            AXMLResource resource = new AXMLResource();
+            resource.read(new ByteArrayInputStream(data));
+            return resource;
+        }
+
+        private Attribute attribute(AXMLResource resource, String tagName, String attributeName) {
+            for (Object chunk : resource.chunks) {
+                if (chunk instanceof StartTag && ((StartTag) chunk).getName(resource.stringSection).equals(tagName)) {
+                    for (Attribute attribute : ((StartTag) chunk).getAttributes()) {
+                        if (resource.stringSection.getString(attribute.getNameIndex()).equals(attributeName)) {
+                            return attribute;
+                        }
+                    }
+                }
+            }
+            throw new AssertionError("No " + tagName + "/@" + attributeName);
+        }
+
+        /**
+         * Only the value words of the record may change.
+         */
+        private void assertOnlyValueChanged(byte[] original, byte[] patched, int offset) {
+            assertEquals(original.length, patched.length);
+            for (int i = 0; i < original.length; i++) {
+                if (i < offset + 8 || i >= offset + AttributePatcher.RECORD_SIZE) {
+                    assertEquals(original[i], patched[i], "Byte " + i + " changed");
+                }
+            }
+        }
+
+        @Test
+        public void testPatchBuffer() throws IOException {
+            byte[] original = ResourceFiles.load("qihoo_jiagu_issue8.xml");
+            byte[] data = original.clone();
+            AXMLResource resource = read(data);
+            AttributePatcher patcher = new AttributePatcher(resource);
+
+            int allowBackup = patcher.find("application", "allowBackup");
+            int versionCode = patcher.find("manifest", "versionCode");
+            int versionName = patcher.find("manifest", "versionName");
+            assertTrue(allowBackup > 0);
+            assertTrue(versionCode > 0);
+            assertTrue(versionName > 0);
+            assertEquals(-1, patcher.find("application", "noSuchAttribute"));
+            assertEquals(-1, patcher.find("noSuchTag", "name"));
+
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            AttributePatcher.setBoolean(buffer, allowBackup, false);
+            AttributePatcher.setInt(buffer, versionCode, 14801);
+            String existing = resource.stringSection.getString(0);
+            patcher.setString(buffer, versionName, existing);
+            assertEquals(0, buffer.position());
+
+            AXMLResource patched = read(data);
+            Attribute backup = attribute(patched, "application", "allowBackup");
+            assertEquals(TypedValue.TYPE_INT_BOOLEAN, TypedValue.getDataType(backup.getAttributeType()));
+            assertEquals(0, backup.getData());
+            assertEquals(14801, attribute(patched, "manifest", "versionCode").getData());
+            Attribute name = attribute(patched, "manifest", "versionName");
+            assertEquals(TypedValue.TYPE_STRING, TypedValue.getDataType(name.getAttributeType()));
+            assertEquals(existing, patched.stringSection.getString(name.getStringDataIndex()));
+            assertTrue(patched.toXML().contains("allowBackup=\"false\""));
+            assertTrue(patched.toXML().contains("versionCode=\"14801\""));
+
+            // Nothing but the value words of the three records changed
+            byte[] expected = original.clone();
+            for (int offset : new int[]{allowBackup, versionCode, versionName}) {
+                System.arraycopy(data, offset + 8, expected, offset + 8, AttributePatcher.RECORD_SIZE - 8);
+            }
+            assertArrayEquals(expected, data);
+        }
+
+        /**
+         * Blank a string of the pool in place, as protectors do with the names of framework attributes.
+         */
+        private void blank(byte[] data, int index) {
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            int pool = 8;
+            assertEquals(ChunkType.STRING_SECTION.getIntType(), buffer.getInt(pool));
+            int start = pool + buffer.getInt(pool + 20) + buffer.getInt(pool + 28 + (index * 4));
+            // Zero lengths and terminator, for both UTF-8 and UTF-16 pools
+            buffer.putShort(start, (short) 0).putShort(start + 2, (short) 0);
+        }
+
+        @Test
+        public void testFindByResourceId() throws IOException {
+            byte[] data = ResourceFiles.load("qihoo_jiagu_issue8.xml");
+            AXMLResource resource = read(data);
+            AttributePatcher patcher = new AttributePatcher(resource);
+            int allowBackup = patcher.find("application", "allowBackup");
+            assertEquals(allowBackup, patcher.find("application", ALLOW_BACKUP));
+            assertEquals(-1, patcher.find("application", 0x7f010000));
+            assertEquals(-1, patcher.find("noSuchTag", ALLOW_BACKUP));
+
+            // With its name blanked the attribute can only be found by its id
+            blank(data, attribute(resource, "application", "allowBackup").getNameIndex());
+            AttributePatcher blanked = new AttributePatcher(read(data));
+            assertEquals(-1, blanked.find("application", "allowBackup"));
+            assertEquals(allowBackup, blanked.find("application", ALLOW_BACKUP));
+
+            AttributePatcher.setBoolean(ByteBuffer.wrap(data), allowBackup, false);
+            assertEquals(0, read(data).getAttributeIndex().getAttribute(ALLOW_BACKUP).getData());
+        }
+
+        @Test
+        public void testPatchFileChannel() throws IOException {
+            byte[] original = ResourceFiles.load("large_from_malware.xml");
+            AXMLResource resource = read(original);
+            AttributePatcher patcher = new AttributePatcher(resource);
+            int versionCode = patcher.find("manifest", "versionCode");
+
+            Path file = Files.createTempFile("patch", ".xml");
+            try {
+                Files.write(file, original);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    AttributePatcher.setInt(channel, versionCode, 4000);
+                }
+
+                byte[] patched = Files.readAllBytes(file);
+                assertOnlyValueChanged(original, patched, versionCode);
+                assertEquals(4000, attribute(read(patched), "manifest", "versionCode").getData());
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        @Test
+        public void testRejectsWhatDoesNotFit() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            AXMLResource resource = read(data);
+            AttributePatcher patcher = new AttributePatcher(resource);
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+
+            assertThrows(IllegalArgumentException.class, () -> patcher.setString(buffer, 0, "not in the pool \u0000"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> AttributePatcher.setValue(buffer, 0, TypedValue.TYPE_STRING, 0));
+            assertThrows(IndexOutOfBoundsException.class, () -> AttributePatcher.setInt(buffer, data.length - 8, 1));
+            assertThrows(IndexOutOfBoundsException.class, () -> AttributePatcher.setInt(buffer, -1, 1));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package android.content.res;
+
+import android.content.res.chunk.sections.StringSection;
+import android.content.res.chunk.types.Chunk;
+import android.content.res.chunk.types.EndTag;
+import android.content.res.chunk.types.StartTag;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class TestChunkIndex {
+
+    @Nested
+    class FunctionalTest {
+
+        private final String[] files = {"test.xml", "test1.xml", "large_from_malware.xml", "qihoo_jiagu_issue8.xml"};
+
+        @Test
+        public void testOffsetsMatchFullParse() throws IOException {
+            for (String file : files) {
+                byte[] data = ResourceFiles.load(file);
+                ChunkIndex index = ChunkIndex.scan(data);
+                AXMLResource resource = new AXMLResource();
+                resource.read(new ByteArrayInputStream(data));
+
+                List<StartTag> tags = new ArrayList<StartTag>();
+                ArrayDeque<Integer> open = new ArrayDeque<Integer>();
+                for (Chunk chunk : resource.chunks) {
+                    if (chunk instanceof StartTag) {
+                        StartTag tag = (StartTag) chunk;
+                        assertEquals(tag.getStartPosition(), index.getStartOffset(tags.size()), file);
+                        assertEquals(open.isEmpty() ? ChunkIndex.NO_PARENT : (int) open.peek(),
+                                index.getParent(tags.size()), file);
+                        open.push(tags.size());
+                        tags.add(tag);
+                    } else if (chunk instanceof EndTag) {
+                        assertEquals(((EndTag) chunk).getStartPosition(), index.getEndOffset(open.pop()), file);
+                    }
+                }
+                assertEquals(tags.size(), index.getElementCount(), file);
+                assertEquals(8, index.getStringPoolOffset(), file);
+                assertEquals(data.length, index.getDocumentLength(), file);
+
+                ByteBuffer document = ByteBuffer.wrap(data);
+                StringSection strings = index.readStringSection(document);
+                for (int i = 0; i < tags.size(); i += 7) {
+                    StartTag tag = index.readStartTag(document, i);
+                    assertEquals(tags.get(i).getName(resource.stringSection), tag.getName(strings), file);
+                    assertEquals(tags.get(i).getStartPosition(), tag.getStartPosition(), file);
+                    assertArrayEquals(tags.get(i).toBytes(), tag.toBytes(), file);
+                }
+            }
+        }
+
+        @Test
+        public void testReadElement() throws IOException {
+            byte[] data = ResourceFiles.load("large_from_malware.xml");
+            ChunkIndex index = ChunkIndex.scan(data);
+            AXMLResource resource = new AXMLResource();
+            resource.read(new ByteArrayInputStream(data));
+
+            // The root covers every element chunk of the document
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data).flip();
+            List<Chunk> root = index.readElement(direct, 0);
+            assertEquals(rootChunkCount(resource), root.size());
+
+            for (int i = 0; i < index.getElementCount(); i++) {
+                List<Chunk> element = index.readElement(direct, i);
+                assertTrue(element.get(0) instanceof StartTag);
+                assertTrue(element.get(element.size() - 1) instanceof EndTag);
+                assertEquals(index.getEndOffset(i), ((EndTag) element.get(element.size() - 1)).getStartPosition());
+            }
+        }
+
+        private int rootChunkCount(AXMLResource resource) {
+            int count = 0;
+            int depth = 0;
+            for (Chunk chunk : resource.chunks) {
+                if (chunk instanceof StartTag) {
+                    depth++;
+                }
+                if (depth > 0) {
+                    count++;
+                }
+                if (chunk instanceof EndTag && --depth == 0) {
+                    return count;
+                }
+            }
+            return count;
+        }
+
+        @Test
+        public void testSavedIndex() throws IOException {
+            byte[] data = ResourceFiles.load("qihoo_jiagu_issue8.xml");
+            ChunkIndex index = ChunkIndex.scan(data);
+            byte[] saved = index.toBytes();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            index.writeTo(output);
+            assertArrayEquals(saved, output.toByteArray());
+
+            ChunkIndex loaded = ChunkIndex.readFrom(new ByteArrayInputStream(saved));
+            assertArrayEquals(saved, loaded.toBytes());
+            assertEquals(index.getElementCount(), loaded.getElementCount());
+            assertEquals(index.getResourceMapOffset(), loaded.getResourceMapOffset());
+
+            byte[] corrupt = saved.clone();
+            corrupt[0] = 0;
+            assertThrows(IOException.class, () -> ChunkIndex.fromBytes(corrupt));
+            assertThrows(IOException.class, () -> ChunkIndex.fromBytes(Arrays.copyOf(saved, saved.length - 4)));
+            // Header fields: document length, string pool offset and resource map offset
+            for (int[] field : new int[][]{{8, 7}, {8, -2}, {12, 0x7fff0000}, {12, 4}, {16, data.length}}) {
+                byte[] lying = saved.clone();
+                ByteBuffer.wrap(lying).order(ByteOrder.LITTLE_ENDIAN).putInt(field[0], field[1]);
+                assertThrows(IOException.class, () -> ChunkIndex.fromBytes(lying), Arrays.toString(field));
+            }
+            assertThrows(IOException.class,
+                    () -> loaded.readStartTag(ByteBuffer.wrap(Arrays.copyOf(data, data.length - 4)), 0));
+        }
+
+        @Test
+        public void testMalformedDocument() {
+            assertThrows(IOException.class, () -> ChunkIndex.scan(new byte[16]));
+            assertThrows(IOException.class, () -> {
+                byte[] data = ResourceFiles.load("test.xml");
+                ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(12, Integer.MAX_VALUE);
+                ChunkIndex.scan(data);
+            });
+        }
+    }
+}
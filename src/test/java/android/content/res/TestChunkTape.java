@@ -0,0 +1,178 @@
+package android.content.res;
+
+import android.content.res.chunk.ChunkType;
+import android.content.res.chunk.TypedValue;
+import android.content.res.chunk.types.Attribute;
+import android.content.res.chunk.types.Chunk;
+import android.content.res.chunk.types.EndTag;
+import android.content.res.chunk.types.GenericChunk;
+import android.content.res.chunk.types.NameSpace;
+import android.content.res.chunk.types.StartTag;
+import android.content.res.chunk.types.TextTag;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class TestChunkTape {
+
+    @Nested
+    class FunctionalTest {
+
+        private static final int VERSION_CODE = 0x0101021b;
+
+        private final String[] files = {"test.xml", "test1.xml", "test2.xml", "test3.xml", "large_from_malware.xml",
+                "qihoo_jiagu_issue8.xml"};
+
+        private List<Chunk> elementChunks(AXMLResource resource) {
+            List<Chunk> chunks = new ArrayList<Chunk>();
+            for (Chunk chunk : resource.chunks) {
+                if (chunk instanceof NameSpace || chunk instanceof StartTag || chunk instanceof EndTag ||
+                        chunk instanceof TextTag) {
+                    chunks.add(chunk);
+                }
+            }
+            return chunks;
+        }
+
+        @Test
+        public void testRecordsConvertBackToChunks() throws IOException {
+            for (String file : files) {
+                byte[] data = ResourceFiles.load(file);
+                ChunkTape tape = ChunkTape.read(data);
+                AXMLResource resource = new AXMLResource();
+                resource.read(new ByteArrayInputStream(data));
+
+                // The records hold the chunks as they are in the document, before any mangled name is repaired
+                List<Chunk> expected = elementChunks(resource);
+                List<Chunk> chunks = tape.toChunks();
+                assertEquals(expected.size(), chunks.size(), file);
+                for (int i = 0; i < chunks.size(); i++) {
+                    int start = ((GenericChunk) expected.get(i)).getStartPosition();
+                    byte[] original = Arrays.copyOfRange(data, start, start + expected.get(i).getSize());
+                    assertEquals(expected.get(i).getChunkType(), chunks.get(i).getChunkType(), file);
+                    assertArrayEquals(original, chunks.get(i).toBytes(), file + " chunk " + i);
+                }
+                assertTrue(tape.size() * 4 < data.length, file);
+                assertEquals(resource.stringSection.getStringCount(), tape.getStringSection().getStringCount(), file);
+            }
+        }
+
+        @Test
+        public void testIteration() throws IOException {
+            byte[] data = ResourceFiles.load("qihoo_jiagu_issue8.xml");
+            ChunkTape tape = ChunkTape.read(data);
+            AXMLResource resource = new AXMLResource();
+            resource.read(new ByteArrayInputStream(data));
+            List<Chunk> expected = elementChunks(resource);
+
+            int index = 0;
+            int depth = 0;
+            int root = -1;
+            for (int record = 0; record < tape.size(); record = tape.next(record)) {
+                Chunk chunk = expected.get(index++);
+                assertEquals(chunk.getChunkType(), tape.getType(record));
+                if (chunk instanceof StartTag) {
+                    StartTag tag = (StartTag) chunk;
+                    assertEquals(tag.getLineNumber(), tape.getLineNumber(record));
+                    // AXMLResource repairs mangled tag names, the tape keeps them as they are
+                    if (!tape.getStringSection().getString(tape.getNameIndex(record)).isEmpty()) {
+                        assertEquals(tag.getNameIndex(), tape.getNameIndex(record));
+                    }
+                    assertEquals(tag.getNamespaceUriIndex(), tape.getNamespaceUriIndex(record));
+                    assertEquals(tag.getAttributes().size(), tape.getAttributeCount(record));
+                    for (int i = 0; i < tag.getAttributes().size(); i++) {
+                        Attribute attribute = tag.getAttributes().get(i);
+                        assertEquals(attribute.getNameIndex(), tape.getAttributeNameIndex(record, i));
+                        assertEquals(attribute.getStringDataIndex(), tape.getAttributeStringIndex(record, i));
+                        assertEquals(TypedValue.getDataType(attribute.getAttributeType()),
+                                tape.getAttributeDataType(record, i));
+                        assertEquals(attribute.getData(), tape.getAttributeData(record, i));
+                    }
+                    if (root < 0) {
+                        root = record;
+                    }
+                    depth++;
+                } else if (chunk instanceof EndTag) {
+                    if (!tape.getStringSection().getString(tape.getNameIndex(record)).isEmpty()) {
+                        assertEquals(((EndTag) chunk).getNameIndex(), tape.getNameIndex(record));
+                    }
+                    depth--;
+                } else {
+                    assertEquals(tape.next(record), tape.skip(record));
+                }
+            }
+            assertEquals(expected.size(), index);
+            assertEquals(0, depth);
+
+            // The root skips to the END_NAMESPACE records after it, the manifest carries the version code
+            int afterRoot = tape.skip(root);
+            assertEquals(ChunkType.END_NAMESPACE, tape.getType(afterRoot));
+            int versionCode = tape.findAttribute(root, VERSION_CODE);
+            assertEquals(resource.getAttributeIndex().getAttribute(VERSION_CODE).getData(),
+                    tape.getAttributeData(root, versionCode));
+            assertEquals(ChunkTape.NO_ATTRIBUTE, tape.findAttribute(root, 0x7f000000));
+        }
+
+        @Test
+        public void testAttributeCountIgnoresIdIndex() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            ChunkTape tape = ChunkTape.read(data);
+            int record = 0;
+            while (tape.getType(record) != ChunkType.START_TAG) {
+                record = tape.next(record);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            int offset = 8;
+            while (buffer.getInt(offset) != ChunkType.START_TAG.getIntType()) {
+                offset += buffer.getInt(offset + 4);
+            }
+            int count = buffer.getInt(offset + 28);
+            assertTrue(count > 0);
+
+            // One attribute fewer than the chunk holds, with the id attribute at index 1
+            buffer.putInt(offset + 28, (1 << 16) | (count - 1));
+            assertEquals(count - 1, ChunkTape.read(data).getAttributeCount(record));
+        }
+
+        @Test
+        public void testSkipCoversSubtree() throws IOException {
+            ChunkTape tape = ChunkTape.read(ResourceFiles.load("large_from_malware.xml"));
+            for (int record = 0; record < tape.size(); record = tape.next(record)) {
+                if (tape.getType(record) == ChunkType.START_TAG) {
+                    int depth = 0;
+                    int inner = record;
+                    do {
+                        ChunkType type = tape.getType(inner);
+                        depth += (type == ChunkType.START_TAG) ? 1 : (type == ChunkType.END_TAG) ? -1 : 0;
+                        inner = tape.next(inner);
+                    } while (depth > 0);
+                    assertEquals(inner, tape.skip(record));
+                }
+            }
+        }
+
+        @Test
+        public void testMalformedDocument() {
+            assertThrows(IOException.class, () -> ChunkTape.read(new byte[4]));
+            assertThrows(IndexOutOfBoundsException.class, () -> {
+                ChunkTape tape = ChunkTape.read(ResourceFiles.load("test.xml"));
+                tape.getField(0, tape.getFieldCount(0));
+            });
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package android.content.res;
+
+import android.content.res.chunk.TypedValue;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class TestEditSet {
+
+    @Nested
+    class FunctionalTest {
+
+        String[] testFiles = {"test.xml", "test1.xml", "test2.xml", "test3.xml", "large_from_malware.xml",
+                "qihoo_jiagu_issue8.xml"};
+
+        private AXMLResource read(byte[] data) throws IOException {
+            AXMLResource resource = new AXMLResource();
+            resource.read(new ByteArrayInputStream(data));
+            return resource;
+        }
+
+        private int count(String text, String part) {
+            int count = 0;
+            for (int index = text.indexOf(part); index >= 0; index = text.indexOf(part, index + 1)) {
+                count++;
+            }
+            return count;
+        }
+
+        @Test
+        public void testNoEditsCopiesEverything() throws IOException {
+            for (String file : testFiles) {
+                byte[] data = ResourceFiles.load(file);
+                assertArrayEquals(data, new EditSet().apply(data), file);
+            }
+        }
+
+        @Test
+        public void testBatch() throws IOException {
+            byte[] data = ResourceFiles.load("large_from_malware.xml");
+            EditSet edits = new EditSet()
+                    .setAttribute("manifest", "package", 0, "com.example.renamed")
+                    .setAttribute("manifest", "versionCode", 0x0101021b, TypedValue.TYPE_INT_DEC, 4000)
+                    // Not in the document yet, so the name has to be mapped to its resource id
+                    .setAttribute("application", "debuggable", 0x0101000f, TypedValue.TYPE_INT_BOOLEAN, -1)
+                    .removeAttribute("application", "label")
+                    .addElement("manifest", "uses-permission", "android.permission.CAMERA")
+                    .removeElements("service", "com.faithcomesbyhearing.android.pt.bibleis.SyncAPIService");
+            assertEquals(6, edits.size());
+
+            AXMLResource original = read(data);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            edits.apply(data, output);
+            byte[] edited = output.toByteArray();
+            assertArrayEquals(edited, edits.apply(data));
+
+            AXMLResource resource = read(edited);
+            String xml = resource.toXML();
+            assertTrue(xml.contains("package=\"com.example.renamed\""));
+            assertTrue(xml.contains("android:versionCode=\"4000\""));
+            assertTrue(xml.contains("android:debuggable=\"true\""));
+            assertEquals(count(original.toXML(), "android:label=") - 1, count(xml, "android:label="));
+            assertTrue(xml.contains("<uses-permission\n\t\tandroid:name=\"android.permission.CAMERA\" />"));
+            assertFalse(xml.contains("SyncAPIService"));
+            assertTrue(xml.contains("DownloadService"));
+
+            assertEquals(original.resourceSection.getResourceCount() + 1, resource.resourceSection.getResourceCount());
+            int debuggable = resource.stringSection.getStringIndex("debuggable");
+            assertEquals(0x0101000f, resource.resourceSection.getResourceID(debuggable));
+        }
+
+        @Test
+        public void testUntouchedChunksAreCopied() throws IOException {
+            byte[] data = ResourceFiles.load("qihoo_jiagu_issue8.xml");
+            // Values and names already in the pool, so only the edited start tag changes
+            byte[] edited = new EditSet()
+                    .setAttribute("application", "allowBackup", 0x01010280, TypedValue.TYPE_INT_BOOLEAN, 0)
+                    .apply(data);
+
+            assertEquals(data.length, edited.length);
+            int first = 0;
+            while (data[first] == edited[first]) {
+                first++;
+            }
+            int last = data.length - 1;
+            while (data[last] == edited[last]) {
+                last--;
+            }
+            // Only the data word of the one attribute differs
+            assertTrue(last - first < 4, first + ".." + last);
+            assertTrue(read(edited).toXML().contains("android:allowBackup=\"false\""));
+        }
+
+        @Test
+        public void testRejectsOtherInput() {
+            assertThrows(IOException.class, () -> new EditSet().apply(new byte[16]));
+            byte[] truncated = Arrays.copyOf(new byte[]{0x03, 0x00, 0x08, 0x00}, 32);
+            assertThrows(IOException.class, () -> new EditSet().apply(truncated));
+            assertThrows(IllegalArgumentException.class,
+                    () -> new EditSet().setAttribute("manifest", "package", 0, TypedValue.TYPE_STRING, 0));
+        }
+    }
+}
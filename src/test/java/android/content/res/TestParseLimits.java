@@ -0,0 +1,167 @@
+package android.content.res;
+
+import android.content.res.chunk.ChunkType;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class TestParseLimits {
+
+    @Nested
+    class FunctionalTest {
+
+        String[] testFiles = {"test.xml", "test1.xml", "test2.xml", "test3.xml", "large_from_malware.xml",
+                "qihoo_jiagu_issue8.xml"};
+
+        private AXMLResource read(byte[] data, ParseLimits limits) throws IOException {
+            AXMLResource resource = new AXMLResource();
+            resource.setLimits(limits);
+            resource.read(new ByteArrayInputStream(data));
+            return resource;
+        }
+
+        /**
+         * @return the offset of the first chunk of the given type
+         */
+        private int find(byte[] data, ChunkType type) {
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            for (int offset = 8; offset + 8 <= data.length; offset += 4) {
+                if (buffer.getInt(offset) == type.getIntType()) {
+                    return offset;
+                }
+            }
+            throw new AssertionError("No " + type);
+        }
+
+        private void patch(byte[] data, int offset, int value) {
+            ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+        }
+
+        @Test
+        public void testDefaultLimitsAcceptRealFiles() throws IOException {
+            for (String file : testFiles) {
+                byte[] data = ResourceFiles.load(file);
+
+                assertEquals(read(data, ParseLimits.UNLIMITED).toXML(), read(data, ParseLimits.DEFAULT).toXML(),
+                        file);
+            }
+        }
+
+        @Test
+        public void testNoLimitsByDefault() throws IOException {
+            assertNull(new AXMLResource().getLimits());
+
+            // A truncated document is decoded as far as it goes unless limits are asked for
+            byte[] data = ResourceFiles.load("test.xml");
+            byte[] truncated = Arrays.copyOf(data, data.length - 64);
+            AXMLResource resource = new AXMLResource();
+            assertTrue(resource.read(new ByteArrayInputStream(truncated)));
+            assertTrue(resource.toXML().contains("<LinearLayout"));
+            assertThrows(ParseLimitException.class, () -> read(truncated, ParseLimits.UNLIMITED));
+        }
+
+        @Test
+        public void testIncompleteDocumentMessage() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            byte[] headerOnly = Arrays.copyOf(data, find(data, ChunkType.STRING_SECTION));
+
+            IOException exception = assertThrows(IOException.class, () -> BinaryXML.read(headerOnly));
+            assertEquals("Incomplete AXML document, no STRING_SECTION, RESOURCE_SECTION in the 8 of 8 bytes read",
+                    exception.getMessage());
+        }
+
+        @Test
+        public void testLyingChunkSize() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            patch(data, find(data, ChunkType.STRING_SECTION) + 4, Integer.MAX_VALUE);
+
+            ParseLimitException exception = assertThrows(ParseLimitException.class,
+                    () -> read(data, ParseLimits.UNLIMITED));
+            assertEquals("chunk size against the input", exception.getLimit());
+        }
+
+        @Test
+        public void testLyingChunkSizeWithoutLimits() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            patch(data, find(data, ChunkType.STRING_SECTION) + 4, 0x7FFFFFF0);
+
+            // Decoding in parallel must not allocate what the header claims, but run out of input like the serial
+            // decoding does
+            assertThrows(EOFException.class, () -> new AXMLResource().read(new ByteArrayInputStream(data)));
+            AXMLResource parallel = new AXMLResource();
+            parallel.setParallelThreshold(1);
+            assertThrows(EOFException.class, () -> parallel.read(new ByteArrayInputStream(data)));
+        }
+
+        @Test
+        public void testLyingPoolCount() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            patch(data, find(data, ChunkType.STRING_SECTION) + 8, 0x10000000);
+
+            ParseLimitException exception = assertThrows(ParseLimitException.class,
+                    () -> read(data, ParseLimits.DEFAULT));
+            assertEquals("pool entries", exception.getLimit());
+            // Even without a configured bound the count has to fit in the chunk
+            exception = assertThrows(ParseLimitException.class, () -> read(data, ParseLimits.UNLIMITED));
+            assertEquals("pool entries against the chunk", exception.getLimit());
+        }
+
+        @Test
+        public void testLyingAttributeCount() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            patch(data, find(data, ChunkType.START_TAG) + 28, 0xFFFF);
+
+            assertEquals("attributes", assertThrows(ParseLimitException.class,
+                    () -> read(data, ParseLimits.DEFAULT)).getLimit());
+            ParseLimitException exception = assertThrows(ParseLimitException.class,
+                    () -> read(data, ParseLimits.UNLIMITED));
+            assertEquals("attributes against the input", exception.getLimit());
+        }
+
+        @Test
+        public void testIdAttributeIndex() throws IOException {
+            byte[] data = ResourceFiles.load("test.xml");
+            String expected = read(data, null).toXML();
+
+            // The high 16 bits of the attribute count word are the id attribute index, not part of the count
+            int startTag = find(data, ChunkType.START_TAG);
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            patch(data, startTag + 28, (1 << 16) | buffer.getShort(startTag + 28));
+
+            AXMLResource resource = read(data, ParseLimits.DEFAULT);
+            assertEquals(expected, resource.toXML());
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            resource.write(output);
+            byte[] written = output.toByteArray();
+            assertEquals(1, ByteBuffer.wrap(written).order(ByteOrder.LITTLE_ENDIAN)
+                    .getShort(find(written, ChunkType.START_TAG) + 30));
+        }
+
+        @Test
+        public void testConfiguredLimits() throws IOException {
+            byte[] data = ResourceFiles.load("large_from_malware.xml");
+
+            assertEquals("element depth", assertThrows(ParseLimitException.class,
+                    () -> read(data, ParseLimits.DEFAULT.withMaxDepth(2))).getLimit());
+            assertEquals("decoded bytes", assertThrows(ParseLimitException.class,
+                    () -> read(data, ParseLimits.DEFAULT.withMaxDecodedBytes(1024))).getLimit());
+            assertEquals("chunk size", assertThrows(ParseLimitException.class,
+                    () -> read(data, ParseLimits.DEFAULT.withMaxChunkSize(64))).getLimit());
+        }
+    }
+}
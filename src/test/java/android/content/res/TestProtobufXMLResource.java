@@ -1,5 +1,13 @@
 package android.content.res;
 
+import com.android.aapt.Resources.Item;
+import com.android.aapt.Resources.Primitive;
+import com.android.aapt.Resources.Reference;
+import com.android.aapt.Resources.Reference_Type;
+import com.android.aapt.Resources.XmlAttribute;
+import com.android.aapt.Resources.XmlElement;
+import com.android.aapt.Resources.XmlNamespace;
+import com.android.aapt.Resources.XmlNode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -228,4 +236,128 @@ public class TestProtobufXMLResource {
             });
         }
     }
+
+    @Nested
+    class RenderingTest {
+
+        private static final String ANDROID = "http://schemas.android.com/apk/res/android";
+
+        @Test
+        public void testToXML_MatchesAXMLRendering() throws IOException {
+            XmlNode node = XmlNode.newBuilder()
+                    .setElement(XmlElement.newBuilder()
+                            .setName("manifest")
+                            .addNamespaceDeclaration(XmlNamespace.newBuilder()
+                                    .setPrefix("android")
+                                    .setUri(ANDROID))
+                            .addAttribute(XmlAttribute.newBuilder()
+                                    .setNamespaceUri(ANDROID)
+                                    .setName("versionCode")
+                                    .setValue("3133")
+                                    .setCompiledItem(Item.newBuilder()
+                                            .setPrim(Primitive.newBuilder().setIntDecimalValue(3133))))
+                            .addAttribute(XmlAttribute.newBuilder()
+                                    .setName("package")
+                                    .setValue("com.example"))
+                            .addChild(XmlNode.newBuilder()
+                                    .setElement(XmlElement.newBuilder()
+                                            .setName("application")
+                                            .addAttribute(XmlAttribute.newBuilder()
+                                                    .setNamespaceUri(ANDROID)
+                                                    .setName("debuggable")
+                                                    .setCompiledItem(Item.newBuilder()
+                                                            .setPrim(Primitive.newBuilder().setBooleanValue(1)))))))
+                    .build();
+
+            ProtobufXMLResource resource = new ProtobufXMLResource(new ByteArrayInputStream(node.toByteArray()));
+
+            assertEquals("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                    "<manifest\n" +
+                    "\txmlns:android=\"" + ANDROID + "\"\n" +
+                    "\tandroid:versionCode=\"3133\"\n" +
+                    "\tpackage=\"com.example\">\n" +
+                    "\t<application\n" +
+                    "\t\tandroid:debuggable=\"true\" />\n" +
+                    "</manifest>\n", resource.toXML());
+        }
+
+        @Test
+        public void testToXML_ScopedNamespaces() throws IOException {
+            String app = "http://schemas.android.com/apk/res-auto";
+            XmlNode node = XmlNode.newBuilder()
+                    .setElement(XmlElement.newBuilder()
+                            .setName("layout")
+                            .addNamespaceDeclaration(XmlNamespace.newBuilder().setPrefix("android").setUri(ANDROID))
+                            .addChild(XmlNode.newBuilder()
+                                    .setElement(XmlElement.newBuilder()
+                                            .setName("first")
+                                            .addNamespaceDeclaration(XmlNamespace.newBuilder()
+                                                    .setPrefix("app")
+                                                    .setUri(app))
+                                            // Already in scope, so not declared again
+                                            .addNamespaceDeclaration(XmlNamespace.newBuilder()
+                                                    .setPrefix("android")
+                                                    .setUri(ANDROID))
+                                            .addAttribute(XmlAttribute.newBuilder()
+                                                    .setNamespaceUri(app)
+                                                    .setName("layout")
+                                                    .setValue("a"))))
+                            .addChild(XmlNode.newBuilder()
+                                    .setElement(XmlElement.newBuilder()
+                                            .setName("second")
+                                            .addAttribute(XmlAttribute.newBuilder()
+                                                    .setNamespaceUri(app)
+                                                    .setName("layout")
+                                                    .setValue("b"))
+                                            .addAttribute(XmlAttribute.newBuilder()
+                                                    .setNamespaceUri(ANDROID)
+                                                    .setName("id")
+                                                    .setValue("c")))))
+                    .build();
+
+            ProtobufXMLResource resource = new ProtobufXMLResource(new ByteArrayInputStream(node.toByteArray()));
+
+            // The app prefix went out of scope with the first child
+            assertEquals("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                    "<layout\n" +
+                    "\txmlns:android=\"" + ANDROID + "\">\n" +
+                    "\t<first\n" +
+                    "\t\txmlns:app=\"" + app + "\"\n" +
+                    "\t\tapp:layout=\"a\" />\n" +
+                    "\t<second\n" +
+                    "\t\tlayout=\"b\"\n" +
+                    "\t\tandroid:id=\"c\" />\n" +
+                    "</layout>\n", resource.toXML());
+        }
+
+        @Test
+        public void testToXML_TypedValues() throws IOException {
+            XmlNode node = XmlNode.newBuilder()
+                    .setElement(XmlElement.newBuilder()
+                            .setName("View")
+                            .addAttribute(XmlAttribute.newBuilder()
+                                    .setName("textColor")
+                                    .setCompiledItem(Item.newBuilder()
+                                            .setRef(Reference.newBuilder()
+                                                    .setType(Reference_Type.ATTRIBUTE)
+                                                    .setName("android:attr/textColorPrimary"))))
+                            .addAttribute(XmlAttribute.newBuilder()
+                                    .setName("background")
+                                    .setCompiledItem(Item.newBuilder()
+                                            .setPrim(Primitive.newBuilder().setColorRgb4Value(0xFFAABBCC))))
+                            .addAttribute(XmlAttribute.newBuilder()
+                                    .setName("width")
+                                    .setCompiledItem(Item.newBuilder()
+                                            .setPrim(Primitive.newBuilder().setDimensionValue((192 << 8) | (1 << 4) | 1)))))
+                    .build();
+
+            ProtobufXMLResource resource = new ProtobufXMLResource(new ByteArrayInputStream(node.toByteArray()));
+
+            assertEquals("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                    "<View\n" +
+                    "\ttextColor=\"?android:attr/textColorPrimary\"\n" +
+                    "\tbackground=\"#abc\"\n" +
+                    "\twidth=\"1.5dp\" />\n", resource.toXML());
+        }
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.cache;
+
+import android.content.res.AXMLResource;
+import android.content.res.BinaryXML;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author tstrazzere
+ */
+public class ResultCacheTest {
+
+    @Test
+    public void testHash() {
+        String first = ResultCache.hash(new byte[]{0x03, 0x00, 0x08, 0x00});
+        assertEquals(64, first.length());
+        assertEquals(first, ResultCache.hash(new byte[]{0x03, 0x00, 0x08, 0x00}));
+        assertNotEquals(first, ResultCache.hash(new byte[]{0x03, 0x00, 0x08, 0x01}));
+    }
+
+    @Test
+    public void testMemoryEvictsLeastRecentlyUsed() {
+        // Room for two of these values but not three
+        ResultCache underTest = new ResultCache(2 * (64 + 200));
+        String value = new String(new char[100]);
+
+        underTest.put("a", value);
+        underTest.put("b", value);
+        // Touch "a" so "b" becomes the eldest
+        underTest.get("a");
+        underTest.put("c", value);
+
+        assertEquals(2, underTest.getMemoryCount());
+        assertEquals(value, underTest.get("a"));
+        assertNull(underTest.get("b"));
+        assertEquals(value, underTest.get("c"));
+    }
+
+    @Test
+    public void testDiskTierSurvivesRestart() throws IOException {
+        File directory = Files.createTempDirectory("axml-cache-test").toFile();
+        directory.deleteOnExit();
+
+        ResultCache underTest = new ResultCache(1024, directory, 1024);
+        underTest.put("key.xml", "<manifest />");
+
+        ResultCache restarted = new ResultCache(1024, directory, 1024);
+        assertEquals(1, restarted.getDiskCount());
+        assertEquals("<manifest />", restarted.get("key.xml"));
+        assertEquals(1, restarted.getMemoryCount());
+
+        new File(directory, "key.xml").deleteOnExit();
+    }
+
+    @Test
+    public void testDiskEvictsBySize() throws IOException {
+        File directory = Files.createTempDirectory("axml-cache-test").toFile();
+        directory.deleteOnExit();
+
+        ResultCache underTest = new ResultCache(0, directory, 10);
+        underTest.put("first", "123456");
+        underTest.put("second", "123456");
+
+        assertEquals(1, underTest.getDiskCount());
+        assertEquals(6, underTest.getDiskBytes());
+        assertNull(underTest.get("first"));
+        assertEquals("123456", underTest.get("second"));
+
+        new File(directory, "second").deleteOnExit();
+    }
+
+    @Test
+    public void testLoadEvictsDirectoryOverBudget() throws IOException {
+        File directory = Files.createTempDirectory("axml-cache-test").toFile();
+        directory.deleteOnExit();
+
+        ResultCache underTest = new ResultCache(0, directory, 100);
+        underTest.put("first", "123456");
+        underTest.put("second", "123456");
+        new File(directory, "first").setLastModified(1000);
+
+        // A smaller budget leaves the directory too large, the eldest entry goes right away
+        ResultCache restarted = new ResultCache(0, directory, 10);
+        assertEquals(1, restarted.getDiskCount());
+        assertEquals(6, restarted.getDiskBytes());
+        assertFalse(new File(directory, "first").exists());
+        assertEquals("123456", restarted.get("second"));
+
+        new File(directory, "second").deleteOnExit();
+    }
+
+    @Test
+    public void testRejectsUnsafeKeys() {
+        ResultCache underTest = new ResultCache(1024);
+        assertThrows(IllegalArgumentException.class, () -> underTest.put("../escape", "value"));
+        assertThrows(IllegalArgumentException.class, () -> underTest.get(""));
+    }
+
+    @Test
+    public void testBinaryXMLUsesCache() throws IOException {
+        InputStream testStream = this.getClass().getClassLoader().getResourceAsStream("test.xml");
+        byte[] data = testStream.readAllBytes();
+        ResultCache underTest = new ResultCache(1024 * 1024);
+
+        String xml = BinaryXML.toXML(data, underTest);
+        assertEquals(new AXMLResource(new ByteArrayInputStream(data)).toXML(), xml);
+        assertSame(xml, BinaryXML.toXML(data, underTest));
+        assertEquals(1, underTest.getMemoryCount());
+    }
+
+    @Test
+    public void testBinaryXMLKeysCarryRenderVersion() throws IOException {
+        InputStream testStream = this.getClass().getClassLoader().getResourceAsStream("test.xml");
+        byte[] data = testStream.readAllBytes();
+        File directory = Files.createTempDirectory("axml-cache-test").toFile();
+
+        // A result left by a release with another output format is not served
+        ResultCache underTest = new ResultCache(1024 * 1024, directory, 1024 * 1024);
+        underTest.put(ResultCache.hash(data) + ".xml", "stale");
+        assertEquals(new AXMLResource(new ByteArrayInputStream(data)).toXML(), BinaryXML.toXML(data, underTest));
+        assertEquals("stale", underTest.get(ResultCache.hash(data) + ".xml"));
+
+        String key = ResultCache.hash(data) + ".v" + BinaryXML.RENDER_VERSION + ".json";
+        assertEquals(BinaryXML.toJSON(data, underTest), underTest.get(key));
+    }
+}
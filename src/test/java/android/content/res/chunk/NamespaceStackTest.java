@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.chunk;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author tstrazzere
+ */
+public class NamespaceStackTest {
+
+    private NamespaceStack underTest;
+
+    @BeforeEach
+    public void setUp() {
+        underTest = new NamespaceStack();
+    }
+
+    @Test
+    public void testScoping() {
+        assertEquals(NamespaceStack.NO_PREFIX, underTest.getPrefix(7));
+
+        underTest.push(7, 1);
+        assertEquals(1, underTest.getPrefix(7));
+
+        // A redeclaration shadows the outer prefix until it ends
+        underTest.push(7, 2);
+        assertEquals(2, underTest.getPrefix(7));
+        underTest.pop(7);
+        assertEquals(1, underTest.getPrefix(7));
+
+        underTest.pop(7);
+        assertEquals(NamespaceStack.NO_PREFIX, underTest.getPrefix(7));
+        assertEquals(0, underTest.depth());
+    }
+
+    @Test
+    public void testOutOfOrderAndUnmatchedEnds() {
+        underTest.push(3, 10);
+        underTest.push(4, 11);
+
+        // Ending the outer declaration first leaves the inner one alone
+        underTest.pop(3);
+        assertEquals(NamespaceStack.NO_PREFIX, underTest.getPrefix(3));
+        assertEquals(11, underTest.getPrefix(4));
+
+        underTest.pop(5);
+        underTest.pop(-1);
+        assertEquals(1, underTest.depth());
+    }
+
+    @Test
+    public void testManyUris() {
+        for (int uri = 0; uri < 1000; uri++) {
+            underTest.push(uri * 31, uri);
+        }
+        for (int uri = 0; uri < 1000; uri++) {
+            assertEquals(uri, underTest.getPrefix(uri * 31));
+        }
+        for (int uri = 999; uri >= 0; uri--) {
+            underTest.pop(uri * 31);
+        }
+        assertEquals(NamespaceStack.NO_PREFIX, underTest.getPrefix(31));
+        assertEquals(0, underTest.depth());
+
+        underTest.push(Integer.MAX_VALUE, 1);
+        assertEquals(1, underTest.getPrefix(Integer.MAX_VALUE));
+    }
+}
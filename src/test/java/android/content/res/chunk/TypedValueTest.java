@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.chunk;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * @author tstrazzere
+ */
+public class TypedValueTest {
+
+    private static String format(int dataType, int data) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        TypedValue.format(builder, dataType, data);
+        return builder.toString();
+    }
+
+    @Test
+    public void testReferences() throws Exception {
+        assertEquals("@7F060003", format(TypedValue.TYPE_REFERENCE, 0x7F060003));
+        assertEquals("?1010036", format(TypedValue.TYPE_ATTRIBUTE, 0x01010036));
+    }
+
+    @Test
+    public void testIntegers() throws Exception {
+        assertEquals("0", format(TypedValue.TYPE_INT_DEC, 0));
+        assertEquals("-42", format(TypedValue.TYPE_INT_DEC, -42));
+        assertEquals("2147483647", format(TypedValue.TYPE_INT_DEC, Integer.MAX_VALUE));
+        assertEquals("-2147483648", format(TypedValue.TYPE_INT_DEC, Integer.MIN_VALUE));
+        assertEquals("0x0", format(TypedValue.TYPE_INT_HEX, 0));
+        assertEquals("0x40000030", format(TypedValue.TYPE_INT_HEX, 0x40000030));
+        assertEquals("true", format(TypedValue.TYPE_INT_BOOLEAN, -1));
+        assertEquals("false", format(TypedValue.TYPE_INT_BOOLEAN, 0));
+    }
+
+    @Test
+    public void testFloats() throws Exception {
+        assertEquals("2.0", format(TypedValue.TYPE_FLOAT, Float.floatToRawIntBits(2.0f)));
+        assertEquals("1.5", format(TypedValue.TYPE_FLOAT, Float.floatToRawIntBits(1.5f)));
+        assertEquals("-0.25", format(TypedValue.TYPE_FLOAT, Float.floatToRawIntBits(-0.25f)));
+        assertEquals("1.0E9", format(TypedValue.TYPE_FLOAT, Float.floatToRawIntBits(1.0e9f)));
+    }
+
+    @Test
+    public void testComplexValues() throws Exception {
+        // 16 in radix 23p0, unit dp
+        assertEquals("16dp", format(TypedValue.TYPE_DIMENSION, (16 << 8) | 1));
+        // 1.5 in radix 16p7, unit sp
+        assertEquals("1.5sp", format(TypedValue.TYPE_DIMENSION, (192 << 8) | (1 << 4) | 2));
+        // The mantissa is signed
+        assertEquals("-8px", format(TypedValue.TYPE_DIMENSION, (-8 << 8)));
+        // 0.5 in radix 16p7
+        assertEquals("50.00%", format(TypedValue.TYPE_FRACTION, (64 << 8) | (1 << 4)));
+        assertEquals("50.00%p", format(TypedValue.TYPE_FRACTION, (64 << 8) | (1 << 4) | 1));
+        assertEquals(0.5f, TypedValue.complexToFloat((1 << 30) | (3 << 4)));
+    }
+
+    @Test
+    public void testColors() throws Exception {
+        assertEquals("#80aabbcc", format(TypedValue.TYPE_INT_COLOR_ARGB8, 0x80AABBCC));
+        assertEquals("#112233", format(TypedValue.TYPE_INT_COLOR_RGB8, 0xFF112233));
+        // Short colors are stored expanded
+        assertEquals("#8abc", format(TypedValue.TYPE_INT_COLOR_ARGB4, 0x88AABBCC));
+        assertEquals("#abc", format(TypedValue.TYPE_INT_COLOR_RGB4, 0xFFAABBCC));
+        // Which is only undone when no bits would be lost
+        assertEquals("#ffabcdef", format(TypedValue.TYPE_INT_COLOR_RGB4, 0xFFABCDEF));
+    }
+
+    @Test
+    public void testValuesNeedingTheCaller() throws Exception {
+        StringBuilder builder = new StringBuilder();
+
+        assertFalse(TypedValue.format(builder, TypedValue.TYPE_STRING, 5));
+        assertFalse(TypedValue.format(builder, TypedValue.TYPE_NULL, 0));
+        assertFalse(TypedValue.format(builder, 0x0F, 0));
+        assertEquals("", builder.toString());
+    }
+
+    @Test
+    public void testGetDataType() {
+        assertEquals(TypedValue.TYPE_STRING, TypedValue.getDataType(AttributeType.STRING.getIntType()));
+        assertEquals(TypedValue.TYPE_INT_COLOR_ARGB8, TypedValue.getDataType(0x1C000008));
+    }
+}
@@ -5,7 +5,13 @@ import android.content.res.chunk.ChunkType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -87,4 +93,51 @@ public class StringSectionTest {
         byte[] actual = underTest.toBytes();
         assertArrayEquals(expected, actual);
     }
-}
\ No newline at end of file
+
+    private StringSection read(byte[] data) throws IOException {
+        IntReader reader = new IntReader(new ByteArrayInputStream(data), false);
+        reader.readInt();
+        return new StringSection(ChunkType.STRING_SECTION, reader);
+    }
+
+    @Test
+    public void testStyleSpans() throws Exception {
+        // UTF-16 pool of "hello world", "b" and "i", with "hello world" styled as <b>hello</b> <i>world</i>
+        ByteBuffer buffer = ByteBuffer.allocate(124).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(ChunkType.STRING_SECTION.getIntType())
+                .putInt(124)
+                .putInt(3) // string count
+                .putInt(1) // style count
+                .putInt(0) // flags
+                .putInt(44) // string pool offset
+                .putInt(88) // style pool offset
+                .putInt(0).putInt(28).putInt(36) // string offsets
+                .putInt(0); // style offsets
+        buffer.putShort((short) 11);
+        for (char character : "hello world".toCharArray()) {
+            buffer.putShort((short) character);
+        }
+        buffer.putShort((short) 0).putShort((short) 0);
+        buffer.putShort((short) 1).putShort((short) 'b').putShort((short) 0).putShort((short) 0);
+        buffer.putShort((short) 1).putShort((short) 'i').putShort((short) 0).putShort((short) 0);
+        buffer.putInt(1).putInt(0).putInt(4)
+                .putInt(2).putInt(6).putInt(10)
+                .putInt(StringSection.END_SPAN)
+                .putInt(StringSection.END_SPAN).putInt(StringSection.END_SPAN);
+
+        StringSection section = read(buffer.array());
+        assertEquals("hello world", section.getString(0));
+        assertEquals("i", section.getString(2));
+        assertEquals(1, section.getStyleCount());
+        assertArrayEquals(new int[]{1, 0, 4, 2, 6, 10}, section.getStyleSpans(0));
+
+        // Written and read back, the spans survive as they were
+        byte[] written = section.toBytes();
+        assertEquals(section.getSize(), written.length);
+        StringSection reread = read(written);
+        assertEquals("hello world", reread.getString(0));
+        assertEquals("b", reread.getString(1));
+        assertArrayEquals(new int[]{1, 0, 4, 2, 6, 10}, reread.getStyleSpans(0));
+        assertArrayEquals(written, reread.toBytes());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.jfr;
+
+import android.content.res.AXMLResource;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class JfrEventsTest {
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testEventsAreRecorded() throws Exception {
+        Path file = Files.createTempFile("axml", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"Parse", "StringPool", "Chunk", "Render", "Write"}) {
+                recording.enable("android.content.res." + name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+
+            AXMLResource resource = new AXMLResource(
+                    this.getClass().getClassLoader().getResourceAsStream("large_from_malware.xml"));
+            String xml = resource.toXML();
+            resource.write(new ByteArrayOutputStream());
+
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+            RecordedEvent parse = named(events, "android.content.res.Parse").get(0);
+            assertTrue(parse.getBoolean("complete"));
+            assertTrue(parse.getLong("bytes") > 0);
+            assertEquals(parse.getInt("strings"), named(events, "android.content.res.StringPool").get(0)
+                    .getInt("strings"));
+
+            List<RecordedEvent> chunks = named(events, "android.content.res.Chunk");
+            assertTrue(chunks.stream().anyMatch(chunk -> "START_TAG".equals(chunk.getString("chunkType"))));
+
+            RecordedEvent render = named(events, "android.content.res.Render").get(0);
+            assertEquals("xml", render.getString("format"));
+            assertEquals(xml.length(), render.getLong("characters"));
+
+            assertEquals(1, named(events, "android.content.res.Write").size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
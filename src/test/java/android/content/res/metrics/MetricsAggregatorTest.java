@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.metrics;
+
+import android.content.res.AXMLResource;
+import android.content.res.chunk.ChunkType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class MetricsAggregatorTest {
+
+    @Test
+    public void testReadRenderWrite() throws Exception {
+        MetricsAggregator metrics = new MetricsAggregator();
+        AXMLResource resource = new AXMLResource();
+        resource.setMetricsListener(metrics);
+
+        resource.read(this.getClass().getClassLoader().getResourceAsStream("large_from_malware.xml"));
+        resource.toXML();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        resource.write(output);
+
+        assertEquals(1, metrics.getPhaseCount(Phase.HEADER));
+        assertEquals(1, metrics.getPhaseCount(Phase.STRING_POOL));
+        assertEquals(1, metrics.getPhaseCount(Phase.RENDER));
+        assertEquals(1, metrics.getPhaseCount(Phase.WRITE));
+        assertTrue(metrics.getPhaseNanos(Phase.STRING_POOL) > 0);
+        assertEquals(1, metrics.getChunkCount(ChunkType.STRING_SECTION));
+        assertEquals(metrics.getChunkCount(ChunkType.START_TAG), metrics.getChunkCount(ChunkType.END_TAG));
+        assertTrue(metrics.getBytesRead() > 0);
+        assertEquals(output.size(), metrics.getBytesWritten());
+        assertTrue(metrics.getStringsDecoded() > 0);
+        assertEquals(0, metrics.getChunksReused());
+    }
+
+    @Test
+    public void testReuseIsCounted() throws Exception {
+        MetricsAggregator metrics = new MetricsAggregator();
+        AXMLResource resource = new AXMLResource();
+        resource.setMetricsListener(metrics);
+
+        resource.read(this.getClass().getClassLoader().getResourceAsStream("test.xml"));
+        long chunks = metrics.getChunkCount(ChunkType.START_TAG);
+        resource.read(this.getClass().getClassLoader().getResourceAsStream("test.xml"));
+
+        assertEquals(2, metrics.getPhaseCount(Phase.ELEMENTS));
+        assertEquals(2 * chunks, metrics.getChunkCount(ChunkType.START_TAG));
+        // The second read refills every chunk of the first
+        assertTrue(metrics.getChunksReused() >= chunks);
+
+        metrics.reset();
+        assertEquals(0, metrics.getPhaseCount(Phase.ELEMENTS));
+        assertEquals(0, metrics.getBytesRead());
+    }
+}
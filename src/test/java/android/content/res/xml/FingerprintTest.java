@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.AXMLResource;
+import android.content.res.chunk.TypedValue;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * @author tstrazzere
+ */
+public class FingerprintTest {
+
+    private static final String ANDROID = "http://schemas.android.com/apk/res/android";
+
+    /**
+     * A one element document, laid out in one of two equivalent ways.
+     */
+    private static XmlEventSource manifest(boolean reordered, int versionCode) {
+        return handler -> {
+            handler.startDocument();
+            handler.startNamespace(reordered ? "a" : "android", ANDROID);
+            handler.startElement("", "", "manifest", reordered ? 7 : 2);
+            if (reordered) {
+                handler.attribute(ANDROID, "a", "", 0x0101021b, TypedValue.TYPE_INT_DEC, versionCode, null);
+                handler.attribute("", "", "package", 0, TypedValue.TYPE_STRING, 3, "com.example");
+                handler.attribute(ANDROID, "a", "versionName", 0x0101021c, TypedValue.TYPE_STRING, 1, "1.0");
+            } else {
+                handler.attribute(ANDROID, "android", "versionName", 0x0101021c, TypedValue.TYPE_STRING, 5, "1.0");
+                handler.attribute(ANDROID, "android", "versionCode", 0x0101021b, TypedValue.TYPE_INT_DEC,
+                        versionCode, null);
+                handler.attribute("", "", "package", 0, TypedValue.TYPE_STRING, 0, "com.example");
+            }
+            handler.text(reordered ? "\n    " : "\n", 3);
+            handler.endElement("", "", "manifest");
+            handler.endNamespace(reordered ? "a" : "android", ANDROID);
+            handler.endDocument();
+        };
+    }
+
+    @Test
+    public void testLayoutDoesNotMatter() {
+        // Different prefixes, string indexes, attribute order, stripped attribute name, line numbers and whitespace
+        assertEquals(Fingerprint.toHex(Fingerprint.of(manifest(false, 1))),
+                Fingerprint.toHex(Fingerprint.of(manifest(true, 1))));
+    }
+
+    @Test
+    public void testContentMatters() {
+        assertFalse(Fingerprint.toHex(Fingerprint.of(manifest(false, 1)))
+                .equals(Fingerprint.toHex(Fingerprint.of(manifest(false, 2)))));
+    }
+
+    @Test
+    public void testFrontEndsAgree() throws Exception {
+        AXMLResource resource = new AXMLResource(
+                this.getClass().getClassLoader().getResourceAsStream("large_from_malware.xml"));
+
+        byte[] fingerprint = Fingerprint.of(resource);
+        assertEquals(32, fingerprint.length);
+        // Replaying the decoded document gives the same fingerprint as walking the chunks
+        assertArrayEquals(fingerprint, Fingerprint.of(XmlDocument.from(resource)));
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        Fingerprint fingerprint = new Fingerprint(Fingerprint.MD5);
+
+        manifest(false, 1).accept(fingerprint);
+        byte[] first = fingerprint.digest();
+        manifest(true, 1).accept(fingerprint);
+        byte[] second = fingerprint.digest();
+
+        assertEquals(16, first.length);
+        assertArrayEquals(first, second);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class FrameStackTest {
+
+    private static class Frame {
+        int value;
+    }
+
+    @Test
+    public void testPushPop() {
+        FrameStack<Frame> underTest = new FrameStack<Frame>(Frame::new);
+        assertTrue(underTest.isEmpty());
+        assertNull(underTest.peek());
+        assertNull(underTest.pop());
+
+        for (int i = 0; i < 100; i++) {
+            underTest.push().value = i;
+        }
+        assertEquals(100, underTest.depth());
+
+        for (int i = 99; i >= 0; i--) {
+            assertEquals(i, underTest.peek().value);
+            assertEquals(i, underTest.pop().value);
+        }
+        assertTrue(underTest.isEmpty());
+    }
+
+    @Test
+    public void testFramesAreReused() {
+        FrameStack<Frame> underTest = new FrameStack<Frame>(Frame::new);
+        Frame first = underTest.push();
+        Frame second = underTest.push();
+        underTest.clear();
+
+        assertSame(first, underTest.push());
+        assertSame(second, underTest.push());
+    }
+}
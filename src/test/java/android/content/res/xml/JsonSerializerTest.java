@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.AXMLResource;
+import android.content.res.chunk.TypedValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class JsonSerializerTest {
+
+    private static final String ANDROID = "http://schemas.android.com/apk/res/android";
+
+    private StringBuilder output;
+    private JsonSerializer underTest;
+
+    @BeforeEach
+    public void setUp() {
+        output = new StringBuilder();
+        underTest = new JsonSerializer(output);
+    }
+
+    @Test
+    public void testStructure() throws Exception {
+        underTest.startDocument();
+        underTest.startNamespace("android", ANDROID);
+        underTest.startElement("", "", "manifest", 2);
+        underTest.attribute(ANDROID, "android", "versionCode", 0x0101021b, TypedValue.TYPE_INT_DEC, 3133, null);
+        underTest.attribute("", "", "package", 0, TypedValue.TYPE_STRING, 0, "com.example");
+        underTest.startElement("", "", "application", 3);
+        underTest.endElement("", "", "application");
+        underTest.text("hello", -1);
+        underTest.endElement("", "", "manifest");
+        underTest.endNamespace("android", ANDROID);
+        underTest.endDocument();
+
+        assertEquals("{\"elements\":[{\"name\":\"manifest\",\"line\":2," +
+                "\"namespaces\":[{\"prefix\":\"android\",\"uri\":\"" + ANDROID + "\"}]," +
+                "\"attributes\":[" +
+                "{\"name\":\"versionCode\",\"namespaceUri\":\"" + ANDROID + "\",\"prefix\":\"android\"," +
+                "\"resourceId\":16843291,\"type\":\"int\",\"data\":3133,\"value\":\"3133\"}," +
+                "{\"name\":\"package\",\"type\":\"string\",\"value\":\"com.example\"}]," +
+                "\"children\":[{\"name\":\"application\",\"line\":3},{\"text\":\"hello\"}]}]}\n", output.toString());
+    }
+
+    @Test
+    public void testTypedValuesAndEscaping() throws Exception {
+        underTest.startDocument();
+        underTest.startElement("", "", "View", -1);
+        underTest.attribute("", "", "style", 0, TypedValue.TYPE_REFERENCE, 0x7F070000, "style/Theme");
+        underTest.attribute("", "", "width", 0, TypedValue.TYPE_DIMENSION, (16 << 8) | 1, null);
+        underTest.attribute("", "", "protectionLevel", 0, TypedValue.TYPE_INT_HEX, 2, null);
+        underTest.attribute("", "", "text", 0, TypedValue.TYPE_STRING, 0, "a \"b\"\\\n\u0001");
+        underTest.endElement("", "", "View");
+        underTest.endDocument();
+
+        assertEquals("{\"elements\":[{\"name\":\"View\",\"attributes\":[" +
+                "{\"name\":\"style\",\"type\":\"reference\",\"data\":2131165184,\"value\":\"@style/Theme\"}," +
+                "{\"name\":\"width\",\"type\":\"dimension\",\"data\":4097,\"value\":\"16dp\"}," +
+                "{\"name\":\"protectionLevel\",\"type\":\"hex\",\"data\":2,\"value\":\"signature\"}," +
+                "{\"name\":\"text\",\"type\":\"string\",\"value\":\"a \\\"b\\\"\\\\\\n\\u0001\"}]}]}\n",
+                output.toString());
+    }
+
+    @Test
+    public void testTruncatedDocumentIsClosed() throws Exception {
+        underTest.startDocument();
+        underTest.startElement("", "", "a", -1);
+        underTest.startElement("", "", "b", -1);
+        underTest.endDocument();
+
+        assertEquals("{\"elements\":[{\"name\":\"a\",\"children\":[{\"name\":\"b\"}]}]}\n", output.toString());
+    }
+
+    @Test
+    public void testRealDocument() throws Exception {
+        AXMLResource resource = new AXMLResource(
+                this.getClass().getClassLoader().getResourceAsStream("large_from_malware.xml"));
+
+        String json = JsonSerializer.toJSON(resource);
+
+        assertTrue(json.startsWith("{\"elements\":[{\"name\":\"manifest\""));
+        assertTrue(json.contains("{\"name\":\"versionName\",\"namespaceUri\":\"" + ANDROID +
+                "\",\"prefix\":\"android\",\"resourceId\":16843292,\"type\":\"string\",\"value\":\"1.9.3\"}"));
+        assertTrue(json.endsWith("]}]}\n"));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.AXMLResource;
+import android.content.res.chunk.TypedValue;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author tstrazzere
+ */
+public class XmlDiffTest {
+
+    private static final String ANDROID = XmlDiff.ANDROID_NAMESPACE;
+
+    /**
+     * A small manifest, with the permissions and the target sdk given.
+     */
+    private static XmlDocument manifest(int targetSdk, boolean exported, String... permissions) throws IOException {
+        return XmlDocument.from(handler -> {
+            handler.startDocument();
+            handler.startNamespace("android", ANDROID);
+            handler.startElement("", "", "manifest", 1);
+            handler.attribute("", "", "package", 0, TypedValue.TYPE_STRING, 7, "com.example");
+            for (String permission : permissions) {
+                handler.startElement("", "", "uses-permission", 2);
+                handler.attribute(ANDROID, "android", "name", 0x01010003, TypedValue.TYPE_STRING, 0, permission);
+                handler.endElement("", "", "uses-permission");
+            }
+            handler.startElement("", "", "uses-sdk", 3);
+            handler.attribute(ANDROID, "android", "targetSdkVersion", 0x01010270, TypedValue.TYPE_INT_DEC, targetSdk,
+                    null);
+            handler.endElement("", "", "uses-sdk");
+            handler.startElement("", "", "application", 4);
+            handler.startElement("", "", "activity", 5);
+            handler.attribute(ANDROID, "android", "name", 0x01010003, TypedValue.TYPE_STRING, 0, "a.Main");
+            if (exported) {
+                handler.attribute(ANDROID, "android", "exported", 0x01010010, TypedValue.TYPE_INT_BOOLEAN, -1, null);
+            }
+            handler.endElement("", "", "activity");
+            handler.endElement("", "", "application");
+            handler.endElement("", "", "manifest");
+            handler.endNamespace("android", ANDROID);
+            handler.endDocument();
+        });
+    }
+
+    @Test
+    public void testIdenticalDocuments() throws Exception {
+        AXMLResource first = new AXMLResource(
+                this.getClass().getClassLoader().getResourceAsStream("large_from_malware.xml"));
+        AXMLResource second = new AXMLResource(
+                this.getClass().getClassLoader().getResourceAsStream("large_from_malware.xml"));
+
+        assertTrue(XmlDiff.diff(first, second).isEmpty());
+    }
+
+    @Test
+    public void testReorderingIsNotAChange() throws Exception {
+        XmlDocument before = manifest(28, false, "a.CAMERA", "a.INTERNET");
+        XmlDocument after = manifest(28, false, "a.INTERNET", "a.CAMERA");
+
+        assertTrue(XmlDiff.diff(before, after).isEmpty());
+    }
+
+    @Test
+    public void testChanges() throws Exception {
+        XmlDocument before = manifest(28, false, "a.CAMERA", "a.INTERNET");
+        XmlDocument after = manifest(30, true, "a.INTERNET", "a.SMS");
+
+        List<XmlDiff.Change> changes = XmlDiff.diff(before, after);
+
+        assertEquals(4, changes.size(), changes.toString());
+        assertEquals("+ /manifest/uses-permission[@android:name='a.SMS']", changes.get(0).toString());
+        assertEquals(XmlDiff.Change.Type.ELEMENT_ADDED, changes.get(0).getType());
+        assertEquals("- /manifest/uses-permission[@android:name='a.CAMERA']", changes.get(1).toString());
+        assertEquals(XmlDiff.Change.Type.ELEMENT_REMOVED, changes.get(1).getType());
+        assertEquals("~ /manifest/uses-sdk/@android:targetSdkVersion : 28 -> 30", changes.get(2).toString());
+        assertEquals(30, changes.get(2).getNewAttribute().getData());
+        assertEquals("/manifest/application/activity[@android:name='a.Main']/@android:exported",
+                changes.get(3).getPath());
+        assertEquals(XmlDiff.Change.Type.ATTRIBUTE_ADDED, changes.get(3).getType());
+    }
+
+    /**
+     * A single uses-sdk element with one attribute.
+     */
+    private static XmlDocument usesSdk(String name, int resourceId, int targetSdk) throws IOException {
+        return XmlDocument.from(handler -> {
+            handler.startDocument();
+            handler.startElement("", "", "uses-sdk", 1);
+            handler.attribute(ANDROID, "android", name, resourceId, TypedValue.TYPE_INT_DEC, targetSdk, null);
+            handler.endElement("", "", "uses-sdk");
+            handler.endDocument();
+        });
+    }
+
+    @Test
+    public void testAttributesMatchOnResourceId() throws Exception {
+        XmlDocument named = usesSdk("targetSdkVersion", 0x01010270, 28);
+
+        // Renamed by an obfuscator, but still the same attribute
+        assertTrue(XmlDiff.diff(named, usesSdk("a", 0x01010270, 28)).isEmpty());
+        assertEquals("~ /uses-sdk/@android:a : 28 -> 30",
+                XmlDiff.diff(named, usesSdk("a", 0x01010270, 30)).get(0).toString());
+
+        // Same name, different resource, so a different attribute
+        List<XmlDiff.Change> changes = XmlDiff.diff(named, usesSdk("targetSdkVersion", 0x0101020c, 28));
+        assertEquals(2, changes.size(), changes.toString());
+        assertEquals(XmlDiff.Change.Type.ATTRIBUTE_ADDED, changes.get(0).getType());
+        assertEquals(XmlDiff.Change.Type.ATTRIBUTE_REMOVED, changes.get(1).getType());
+
+        // Without an id on one side the name still decides
+        assertTrue(XmlDiff.diff(named, usesSdk("targetSdkVersion", 0, 28)).isEmpty());
+    }
+
+    /**
+     * A single application element carrying android:debuggable twice, as protectors like to write it.
+     */
+    private static XmlDocument duplicated(boolean first, boolean second) throws IOException {
+        return XmlDocument.from(handler -> {
+            handler.startDocument();
+            handler.startElement("", "", "application", 1);
+            handler.attribute(ANDROID, "android", "debuggable", 0x0101000f, TypedValue.TYPE_INT_BOOLEAN,
+                    first ? -1 : 0, null);
+            handler.attribute(ANDROID, "android", "debuggable", 0x0101000f, TypedValue.TYPE_INT_BOOLEAN,
+                    second ? -1 : 0, null);
+            handler.endElement("", "", "application");
+            handler.endDocument();
+        });
+    }
+
+    @Test
+    public void testDuplicatedAttributesPairInOrder() throws Exception {
+        XmlDocument before = duplicated(false, true);
+
+        assertTrue(XmlDiff.diff(before, duplicated(false, true)).isEmpty());
+        List<XmlDiff.Change> changes = XmlDiff.diff(before, duplicated(false, false));
+        assertEquals(1, changes.size(), changes.toString());
+        assertEquals(XmlDiff.Change.Type.ATTRIBUTE_CHANGED, changes.get(0).getType());
+        assertEquals(-1, changes.get(0).getOldAttribute().getData());
+        assertEquals(0, changes.get(0).getNewAttribute().getData());
+    }
+
+    @Test
+    public void testSubtreeHash() throws Exception {
+        XmlDocument before = manifest(28, false, "a.CAMERA");
+        XmlDocument same = manifest(28, false, "a.CAMERA");
+        XmlDocument after = manifest(29, false, "a.CAMERA");
+
+        assertEquals(before.getRoot().getSubtreeHash(), same.getRoot().getSubtreeHash());
+        assertNotEquals(before.getRoot().getSubtreeHash(), after.getRoot().getSubtreeHash());
+        // Only the changed branch differs
+        assertEquals(before.getElements("application").get(0).getSubtreeHash(),
+                after.getElements("application").get(0).getSubtreeHash());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.AXMLResource;
+import android.content.res.chunk.TypedValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author tstrazzere
+ */
+public class XmlDocumentTest {
+
+    private static final String ANDROID = "http://schemas.android.com/apk/res/android";
+
+    private AXMLResource resource;
+    private XmlDocument underTest;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        resource = new AXMLResource(this.getClass().getClassLoader().getResourceAsStream("qihoo_jiagu_issue8.xml"));
+        underTest = XmlDocument.from(resource);
+    }
+
+    @Test
+    public void testRendersLikeSource() {
+        assertEquals(resource.toXML(), underTest.toString());
+    }
+
+    @Test
+    public void testQuery() {
+        XmlDocument.Element manifest = underTest.getRoot();
+        assertEquals("manifest", manifest.getName());
+        assertEquals(1, manifest.getNamespaces().size());
+
+        XmlDocument.Attribute versionCode = manifest.getAttribute(ANDROID, "versionCode");
+        assertNotNull(versionCode);
+        assertEquals(TypedValue.TYPE_INT_DEC, versionCode.getDataType());
+        assertEquals(14800, versionCode.getData());
+
+        // The mangled tags were repaired while reading, not while rendering
+        int repaired = 0;
+        for (XmlDocument.Element element : underTest.getElements("uses-permission")) {
+            if (element.getAttribute(ANDROID, "protectionLevel") != null) {
+                repaired++;
+            }
+        }
+        assertEquals(5, repaired);
+    }
+
+    @Test
+    public void testImmutable() {
+        assertThrows(UnsupportedOperationException.class, () -> underTest.getRoot().getChildren().clear());
+        assertThrows(UnsupportedOperationException.class, () -> underTest.getRoot().getAttributes().clear());
+    }
+
+    @Test
+    public void testConcurrentRendering() throws Exception {
+        String expected = underTest.toString();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> XmlSerializer.toXML(underTest)));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDeepNesting() throws Exception {
+        // Far deeper than a recursive walk could go on a default thread stack
+        final int depth = 200000;
+        XmlEventSource deep = handler -> {
+            handler.startDocument();
+            for (int i = 0; i < depth; i++) {
+                handler.startElement("", "", (i == depth - 1) ? "leaf" : "node", i);
+            }
+            for (int i = 0; i < depth; i++) {
+                handler.endElement("", "", "node");
+            }
+            handler.endDocument();
+        };
+
+        XmlDocument document = XmlDocument.from(deep);
+        assertEquals(1, document.getElements("leaf").size());
+        assertEquals(depth - 1, document.getElements("node").size());
+
+        // Replaying it must not recurse either
+        ElementCounter counter = new ElementCounter();
+        document.accept(counter);
+        assertEquals(depth, counter.started);
+        assertEquals(depth, counter.ended);
+    }
+
+    private static class ElementCounter implements XmlEventHandler {
+        int started;
+        int ended;
+
+        @Override
+        public void startDocument() {
+        }
+
+        @Override
+        public void startNamespace(String prefix, String uri) {
+        }
+
+        @Override
+        public void endNamespace(String prefix, String uri) {
+        }
+
+        @Override
+        public void startElement(String namespaceUri, String prefix, String name, int lineNumber) {
+            started++;
+        }
+
+        @Override
+        public void attribute(String namespaceUri, String prefix, String name, int resourceId, int dataType, int data,
+                              String rawValue) {
+        }
+
+        @Override
+        public void text(String text, int lineNumber) {
+        }
+
+        @Override
+        public void endElement(String namespaceUri, String prefix, String name) {
+            ended++;
+        }
+
+        @Override
+        public void endDocument() {
+        }
+    }
+}
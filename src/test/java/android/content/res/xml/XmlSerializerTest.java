@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2025 Red Naga
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.content.res.xml;
+
+import android.content.res.chunk.TypedValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author tstrazzere
+ */
+public class XmlSerializerTest {
+
+    private static final String ANDROID = "http://schemas.android.com/apk/res/android";
+
+    private StringBuilder output;
+    private XmlSerializer underTest;
+
+    @BeforeEach
+    public void setUp() {
+        output = new StringBuilder();
+        underTest = new XmlSerializer(output);
+    }
+
+    @Test
+    public void testNestingAndSelfClosing() throws Exception {
+        underTest.startDocument();
+        underTest.startNamespace("android", ANDROID);
+        underTest.startElement("", "", "manifest", 1);
+        underTest.attribute(ANDROID, "android", "versionCode", 0x0101021b, TypedValue.TYPE_INT_DEC, 3133, null);
+        underTest.startElement("", "", "application", 2);
+        underTest.startElement("", "", "activity", 3);
+        underTest.endElement("", "", "activity");
+        underTest.endElement("", "", "application");
+        underTest.endElement("", "", "manifest");
+        underTest.endNamespace("android", ANDROID);
+        underTest.endDocument();
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                "<manifest\n" +
+                "\txmlns:android=\"" + ANDROID + "\"\n" +
+                "\tandroid:versionCode=\"3133\">\n" +
+                "\t<application>\n" +
+                "\t\t<activity />\n" +
+                "\t</application>\n" +
+                "</manifest>\n", output.toString());
+    }
+
+    @Test
+    public void testEscaping() throws Exception {
+        underTest.startDocument();
+        underTest.startElement("", "", "string", -1);
+        underTest.attribute("", "", "name", 0, TypedValue.TYPE_STRING, 0, "a<b & \"c\"");
+        underTest.text("x > 'y'", -1);
+        underTest.endElement("", "", "string");
+        underTest.endDocument();
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                "<string\n" +
+                "\tname=\"a&lt;b &amp; &quot;c&quot;\">\n" +
+                "\tx &gt; &apos;y&apos;\n" +
+                "</string>\n", output.toString());
+    }
+
+    @Test
+    public void testTypedValues() throws Exception {
+        underTest.startDocument();
+        underTest.startElement("", "", "View", -1);
+        underTest.attribute("", "", "id", 0, TypedValue.TYPE_REFERENCE, 0x7F060003, null);
+        underTest.attribute("", "", "style", 0, TypedValue.TYPE_REFERENCE, 0x7F070000, "style/Theme");
+        underTest.attribute("", "", "enabled", 0, TypedValue.TYPE_INT_BOOLEAN, -1, null);
+        underTest.attribute("", "", "background", 0, TypedValue.TYPE_INT_COLOR_ARGB8, 0xFFAABBCC, null);
+        underTest.attribute("", "", "width", 0, TypedValue.TYPE_DIMENSION, 0x00004D00, null);
+        underTest.attribute("", "", "protectionLevel", 0, TypedValue.TYPE_INT_HEX, 2, null);
+        underTest.endElement("", "", "View");
+        underTest.endDocument();
+
+        assertEquals("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+                "<View\n" +
+                "\tid=\"@7F060003\"\n" +
+                "\tstyle=\"@style/Theme\"\n" +
+                "\tenabled=\"true\"\n" +
+                "\tbackground=\"#ffaabbcc\"\n" +
+                "\twidth=\"77px\"\n" +
+                "\tprotectionLevel=\"signature\" />\n", output.toString());
+    }
+}